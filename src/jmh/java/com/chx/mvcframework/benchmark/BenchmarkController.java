@@ -0,0 +1,104 @@
+package com.chx.mvcframework.benchmark;
+
+import com.chx.mvcframework.annotation.GPController;
+import com.chx.mvcframework.annotation.GPExceptionHandler;
+import com.chx.mvcframework.annotation.GPPathVariable;
+import com.chx.mvcframework.annotation.GPRequestMapping;
+import com.chx.mvcframework.annotation.GPRequestParam;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试用的Controller
+ * query只使用request/response，v2和v3都能处理；其他方法使用v3的参数绑定和返回值序列化，
+ * fail抛出的异常由GPExceptionHandler处理
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+@GPController
+@GPRequestMapping("/bench")
+public class BenchmarkController {
+
+    @GPRequestMapping("/query")
+    public void query(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.getWriter().write("My name is " + request.getParameter("name"));
+    }
+
+    @GPRequestMapping("/param")
+    public String param(@GPRequestParam("name") String name, @GPRequestParam("age") int age) {
+        return name + age;
+    }
+
+    @GPRequestMapping("/ping")
+    public String ping() {
+        return "pong";
+    }
+
+    @GPRequestMapping("/sum")
+    public String sum(@GPRequestParam("a") int a, @GPRequestParam("b") long b, @GPRequestParam("c") boolean c) {
+        return c ? String.valueOf(a + b) : String.valueOf(a - b);
+    }
+
+    @GPRequestMapping("/item/{id:long}")
+    public String item(@GPPathVariable("id") long id) {
+        return String.valueOf(id);
+    }
+
+    @GPRequestMapping("/items")
+    public List<Item> items(@GPRequestParam("n") int n) {
+        return Item.list(n);
+    }
+
+    @GPRequestMapping("/fail")
+    public String fail(@GPRequestParam("name") String name) {
+        throw new IllegalStateException("Conflict: " + name);
+    }
+
+    @GPExceptionHandler(status = 409)
+    public String conflict(IllegalStateException e) {
+        return e.getMessage();
+    }
+
+    public static class Item {
+        private final long id;
+        private final String name;
+        private final double price;
+        private final boolean available;
+
+        public Item(long id, String name, double price, boolean available) {
+            this.id = id;
+            this.name = name;
+            this.price = price;
+            this.available = available;
+        }
+
+        public static List<Item> list(int n) {
+            List<Item> items = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                items.add(new Item(i, "item-" + i, i * 1.25, i % 2 == 0));
+            }
+            return items;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+        public boolean isAvailable() {
+            return available;
+        }
+    }
+}
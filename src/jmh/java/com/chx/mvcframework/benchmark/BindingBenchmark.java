@@ -0,0 +1,100 @@
+package com.chx.mvcframework.benchmark;
+
+import com.chx.mvcframework.convert.GPConversionService;
+import com.chx.mvcframework.convert.GPParameterConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 参数绑定和类型转换
+ *
+ * v2：遍历getParameterMap，Arrays.toString后用两次replaceAll拼接；
+ * v3：初始化时为每个参数生成的GPParameterConverter，直接转换getParameterValues
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BindingBenchmark {
+
+    private final MockHttp.Request request = MockHttp.get("/bench/param",
+            "name", "gp", "age", "18", "ids", "1,2,3,4,5", "date", "2019-04-20");
+
+    private GPParameterConverter string;
+
+    private GPParameterConverter primitiveInt;
+
+    private GPParameterConverter longList;
+
+    private GPParameterConverter date;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        GPConversionService service = new GPConversionService();
+        string = service.forParameter(String.class, String.class, "name");
+        primitiveInt = service.forParameter(int.class, int.class, "age");
+        date = service.forParameter(LocalDate.class, LocalDate.class, "date");
+        longList = service.forParameter(List.class,
+                BindingBenchmark.class.getDeclaredMethod("signature", List.class).getGenericParameterTypes()[0], "ids");
+    }
+
+    @SuppressWarnings("unused")
+    private void signature(List<Long> ids) {
+    }
+
+    /**
+     * 与v2 GPDispatcherServlet.doDispatch中的String参数处理相同
+     */
+    @Benchmark
+    public Object v2String() {
+        Object value = null;
+        Map<String, String[]> params = request.getParameterMap();
+        if (params.containsKey("name")) {
+            for (Map.Entry<String, String[]> param : params.entrySet()) {
+                value = Arrays.toString(param.getValue())
+                        .replaceAll("\\[|\\]", "")
+                        .replaceAll("\\s", ",");
+            }
+        }
+        return value;
+    }
+
+    @Benchmark
+    public Object v3String() {
+        return string.convert(request.getParameterValues("name"));
+    }
+
+    @Benchmark
+    public Object convertInt() {
+        return primitiveInt.convert(request.getParameterValues("age"));
+    }
+
+    @Benchmark
+    public Object convertLongList() {
+        return longList.convert(request.getParameterValues("ids"));
+    }
+
+    @Benchmark
+    public Object convertLocalDate() {
+        return date.convert(request.getParameterValues("date"));
+    }
+}
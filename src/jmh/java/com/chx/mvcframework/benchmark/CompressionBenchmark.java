@@ -0,0 +1,108 @@
+package com.chx.mvcframework.benchmark;
+
+import com.chx.mvcframework.compress.GPDeflaterOutputStream;
+import com.chx.mvcframework.compress.GPDeflaterPool;
+import com.chx.mvcframework.json.GPJsonSerializers;
+import com.chx.mvcframework.json.GPJsonWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 响应压缩：各压缩级别的CPU开销和压缩后的字节数
+ * 压缩后的字节数在Setup中输出，与每次操作的耗时对照得出每节省1KB花费的CPU时间
+ *
+ * pooled为ResponseBodyWriter的做法（池中的Deflater，压缩到复用的缓冲区），
+ * gzipOutputStream为每次创建GZIPOutputStream（每次分配Deflater和本地内存）
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+    @Param({"1", "4", "6", "9"})
+    public int level;
+
+    @Param({"100", "1000"})
+    public int items;
+
+    private byte[] body;
+
+    private GPDeflaterPool pool;
+
+    private final byte[] buffer = new byte[8192];
+
+    private final ByteArrayOutputStream overflow = new ByteArrayOutputStream();
+
+    @Setup
+    public void setup() throws IOException {
+        GPJsonWriter out = new GPJsonWriter(new byte[1 << 20], () -> {
+            throw new IOException("Body too large");
+        });
+        new GPJsonSerializers().write(out, BenchmarkController.Item.list(items));
+        body = Arrays.copyOf(out.getBuffer(), out.size());
+        pool = new GPDeflaterPool(level, true, 1);
+        int compressed = pooled();
+        System.out.printf("%nlevel=%d items=%d: %d -> %d bytes, %.1f%% saved%n",
+                level, items, body.length, compressed, 100.0 * (body.length - compressed) / body.length);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.clear();
+    }
+
+    @Benchmark
+    public int pooled() throws IOException {
+        overflow.reset();
+        GPDeflaterOutputStream out = new GPDeflaterOutputStream(pool, buffer, () -> overflow);
+        out.write(body, 0, body.length);
+        out.finish();
+        return overflow.size() + out.size();
+    }
+
+    @Benchmark
+    public int gzipOutputStream() throws IOException {
+        overflow.reset();
+        GZIPOutputStream out = new GZIPOutputStream(overflow, 8192) {
+            {
+                def.setLevel(level);
+            }
+        };
+        out.write(body, 0, body.length);
+        out.close();
+        return overflow.size();
+    }
+
+    /**
+     * 不压缩时的基准：复制到输出缓冲区
+     */
+    @Benchmark
+    public int identity() {
+        overflow.reset();
+        overflow.write(body, 0, body.length);
+        return overflow.size();
+    }
+}
@@ -0,0 +1,148 @@
+package com.chx.mvcframework.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * v2和v3 GPDispatcherServlet端到端的请求处理：路由、参数绑定、调用和写出响应
+ *
+ * v2的init用getResource("/包路径")扫描，只能在Servlet容器的类加载器下工作，
+ * 这里跳过init，直接把Controller和映射放入v2的ioc和handleMapping；v2只支持query这种不绑定参数的方法
+ *
+ * metrics参数对比v3开启和关闭路由统计的吞吐量；
+ * v3BadParam、v3MappedError和v3NotFound是错误请求的处理，与正常请求对比
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    @Param({"on", "off"})
+    public String metrics;
+
+    private HttpServlet v2;
+
+    private HttpServlet v3;
+
+    private final MockHttp.Request query = MockHttp.get("/bench/query", "name", "gp");
+
+    private final MockHttp.Request param = MockHttp.get("/bench/param", "name", "gp", "age", "18");
+
+    private final MockHttp.Request item = MockHttp.get("/bench/item/12345");
+
+    private final MockHttp.Request items = MockHttp.get("/bench/items", "n", "20");
+
+    private final MockHttp.Request notFound = MockHttp.get("/bench/missing");
+
+    private final MockHttp.Request badParam = MockHttp.get("/bench/param", "name", "gp", "age", "abc");
+
+    private final MockHttp.Request fail = MockHttp.get("/bench/fail", "name", "gp");
+
+    private final MockHttp.Response response = new MockHttp.Response();
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception {
+        v3 = new com.chx.mvcframework.servlet.v3.GPDispatcherServlet();
+        v3.init(MockHttp.servletConfig("on".equals(metrics) ? "benchmark.properties" : "benchmark-nometrics.properties"));
+
+        v2 = new com.chx.mvcframework.servlet.v2.GPDispatcherServlet();
+        BenchmarkController controller = new BenchmarkController();
+        Method query = BenchmarkController.class.getMethod("query",
+                HttpServletRequest.class, HttpServletResponse.class);
+        ((Map<String, Object>) field(v2, "ioc")).put("benchmarkController", controller);
+        ((Map<String, Method>) field(v2, "handleMapping")).put("/bench/query", query);
+    }
+
+    private static Object field(Object target, String name) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(target);
+    }
+
+    @Benchmark
+    public long v2Query() throws Exception {
+        response.reset();
+        v2.service(query, response);
+        return response.getBytesWritten();
+    }
+
+    @Benchmark
+    public long v3Query() throws Exception {
+        response.reset();
+        v3.service(query, response);
+        return response.getBytesWritten();
+    }
+
+    @Benchmark
+    public long v3Param() throws Exception {
+        response.reset();
+        v3.service(param, response);
+        return response.getBytesWritten();
+    }
+
+    @Benchmark
+    public long v3PathVariable() throws Exception {
+        response.reset();
+        v3.service(item, response);
+        return response.getBytesWritten();
+    }
+
+    @Benchmark
+    public long v3JsonList() throws Exception {
+        response.reset();
+        v3.service(items, response);
+        return response.getBytesWritten();
+    }
+
+    @Benchmark
+    public long v3BadParam() throws Exception {
+        response.reset();
+        v3.service(badParam, response);
+        return response.getBytesWritten();
+    }
+
+    @Benchmark
+    public long v3MappedError() throws Exception {
+        response.reset();
+        v3.service(fail, response);
+        return response.getBytesWritten();
+    }
+
+    @Benchmark
+    public long v2NotFound() throws Exception {
+        response.reset();
+        v2.service(notFound, response);
+        return response.getBytesWritten();
+    }
+
+    @Benchmark
+    public long v3NotFound() throws Exception {
+        response.reset();
+        v3.service(notFound, response);
+        return response.getBytesWritten();
+    }
+}
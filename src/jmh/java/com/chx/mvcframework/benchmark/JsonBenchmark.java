@@ -0,0 +1,82 @@
+package com.chx.mvcframework.benchmark;
+
+import com.chx.mvcframework.json.GPJsonSerializers;
+import com.chx.mvcframework.json.GPJsonWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 返回值序列化：GPJsonSerializers写入复用的缓冲区，对比拼接字符串后再编码为UTF-8
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Param({"10", "1000"})
+    public int items;
+
+    private List<BenchmarkController.Item> list;
+
+    private GPJsonSerializers serializers;
+
+    private byte[] buffer;
+
+    private final ByteArrayOutputStream overflow = new ByteArrayOutputStream();
+
+    @Setup
+    public void setup() {
+        list = BenchmarkController.Item.list(items);
+        serializers = new GPJsonSerializers();
+        buffer = new byte[8192];
+    }
+
+    @Benchmark
+    public int serializers() throws IOException {
+        overflow.reset();
+        GPJsonWriter out = new GPJsonWriter(buffer, () -> overflow);
+        serializers.write(out, list);
+        out.finish();
+        return out.size() + overflow.size();
+    }
+
+    @Benchmark
+    public byte[] stringBuilder() {
+        StringBuilder json = new StringBuilder();
+        json.append('[');
+        for (int i = 0; i < list.size(); i++) {
+            BenchmarkController.Item item = list.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(item.getId())
+                    .append(",\"name\":\"").append(item.getName())
+                    .append("\",\"price\":").append(item.getPrice())
+                    .append(",\"available\":").append(item.isAvailable())
+                    .append('}');
+        }
+        json.append(']');
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,99 @@
+package com.chx.mvcframework.benchmark;
+
+import com.chx.mvcframework.aop.GPMemoizer;
+import com.chx.mvcframework.cache.GPCacheKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 64个线程并发调用GPMemoizer
+ *
+ * hit：结果都已缓存；
+ * expiring：有效期很短，同一个键过期后多个线程同时到达，只有一个线程执行loader；
+ * full：键的数量是容量的4倍，大部分调用未命中并触发淘汰
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(64)
+@Fork(1)
+public class MemoizerBenchmark {
+
+    @Param({"256"})
+    public int keyCount;
+
+    private GPMemoizer cached;
+
+    private GPMemoizer expiring;
+
+    private GPMemoizer full;
+
+    private GPCacheKey[] keys;
+
+    private GPCacheKey[] fullKeys;
+
+    private static final int FULL_CAPACITY = 10000;
+
+    /**
+     * 只看淘汰的开销，loader本身不耗时
+     */
+    private final Callable<Object> cheapLoader = () -> "value";
+
+    private final Callable<Object> loader = () -> {
+        // 模拟一次耗时的服务调用
+        Blackhole.consumeCPU(2000);
+        return "value";
+    };
+
+    @Setup
+    public void setup() throws Throwable {
+        cached = new GPMemoizer(0, keyCount * 2);
+        expiring = new GPMemoizer(1, keyCount * 2);
+        keys = new GPCacheKey[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = new GPCacheKey("get", new Object[]{"name-" + i});
+            cached.get(keys[i], loader);
+        }
+        full = new GPMemoizer(0, FULL_CAPACITY);
+        fullKeys = new GPCacheKey[FULL_CAPACITY * 4];
+        for (int i = 0; i < fullKeys.length; i++) {
+            fullKeys[i] = new GPCacheKey("get", new Object[]{"name-" + i});
+            full.get(fullKeys[i], cheapLoader);
+        }
+    }
+
+    @Benchmark
+    public Object hit() throws Throwable {
+        return cached.get(keys[ThreadLocalRandom.current().nextInt(keyCount)], loader);
+    }
+
+    @Benchmark
+    public Object expiring() throws Throwable {
+        return expiring.get(keys[ThreadLocalRandom.current().nextInt(keyCount)], loader);
+    }
+
+    @Benchmark
+    public Object full() throws Throwable {
+        return full.get(fullKeys[ThreadLocalRandom.current().nextInt(fullKeys.length)], cheapLoader);
+    }
+}
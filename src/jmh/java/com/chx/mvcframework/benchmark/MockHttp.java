@@ -0,0 +1,270 @@
+package com.chx.mvcframework.benchmark;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 内存中的请求和响应，用于基准测试
+ *
+ * 基于HttpServletRequestWrapper/HttpServletResponseWrapper，被包装的对象是一个所有方法都抛异常的代理，
+ * 这样只需要实现框架实际用到的方法，框架调用了其他方法时会立即失败而不是悄悄返回默认值
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public final class MockHttp {
+
+    private MockHttp() {
+    }
+
+    private static <T> T unsupported(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(MockHttp.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+                }));
+    }
+
+    public static ServletConfig servletConfig(String contextConfigLocation) {
+        return (ServletConfig) Proxy.newProxyInstance(MockHttp.class.getClassLoader(), new Class<?>[]{ServletConfig.class},
+                (proxy, method, args) -> {
+                    if ("getInitParameter".equals(method.getName()) && "contextConfigLocation".equals(args[0])) {
+                        return contextConfigLocation;
+                    }
+                    if ("getServletName".equals(method.getName())) {
+                        return "gpmvc";
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * GET请求，参数只解析一次，可以在多次调用之间复用
+     */
+    public static Request get(String uri, String... params) {
+        return new Request(uri, params);
+    }
+
+    public static class Request extends HttpServletRequestWrapper {
+        private final String uri;
+        private final Map<String, String[]> parameters = new HashMap<>();
+
+        Request(String uri, String[] params) {
+            super(unsupported(HttpServletRequest.class));
+            this.uri = uri;
+            for (int i = 0; i + 1 < params.length; i += 2) {
+                parameters.put(params[i], new String[]{params[i + 1]});
+            }
+        }
+
+        @Override
+        public String getMethod() {
+            return "GET";
+        }
+
+        @Override
+        public String getRequestURI() {
+            return uri;
+        }
+
+        @Override
+        public String getContextPath() {
+            return "";
+        }
+
+        @Override
+        public String getParameter(String name) {
+            String[] values = parameters.get(name);
+            return values == null ? null : values[0];
+        }
+
+        @Override
+        public String[] getParameterValues(String name) {
+            return parameters.get(name);
+        }
+
+        @Override
+        public Map<String, String[]> getParameterMap() {
+            return Collections.unmodifiableMap(parameters);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return null;
+        }
+
+        @Override
+        public boolean isAsyncSupported() {
+            return false;
+        }
+
+        @Override
+        public String getProtocol() {
+            return "HTTP/1.1";
+        }
+    }
+
+    /**
+     * 丢弃写入内容的响应，只记录字节数和状态，每次调用前reset
+     */
+    public static class Response extends HttpServletResponseWrapper {
+        private final CountingOutputStream out = new CountingOutputStream();
+        private final PrintWriter writer = new PrintWriter(new CountingWriter(out));
+        private int status = SC_OK;
+        private String contentType;
+
+        public Response() {
+            super(unsupported(HttpServletResponse.class));
+        }
+
+        public void reset() {
+            out.count = 0;
+            status = SC_OK;
+            contentType = null;
+        }
+
+        public long getBytesWritten() {
+            writer.flush();
+            return out.count;
+        }
+
+        @Override
+        public int getStatus() {
+            return status;
+        }
+
+        @Override
+        public void setStatus(int sc) {
+            status = sc;
+        }
+
+        @Override
+        public void sendError(int sc) {
+            status = sc;
+        }
+
+        @Override
+        public void sendError(int sc, String msg) {
+            status = sc;
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public void setContentType(String type) {
+            contentType = type;
+        }
+
+        @Override
+        public void setContentLength(int len) {
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+        }
+
+        @Override
+        public void setCharacterEncoding(String charset) {
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+        }
+
+        @Override
+        public void setDateHeader(String name, long date) {
+        }
+
+        @Override
+        public boolean containsHeader(String name) {
+            return false;
+        }
+
+        @Override
+        public boolean isCommitted() {
+            return false;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return out;
+        }
+
+        @Override
+        public PrintWriter getWriter() {
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() {
+            writer.flush();
+        }
+    }
+
+    private static class CountingOutputStream extends ServletOutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class CountingWriter extends Writer {
+        private final CountingOutputStream out;
+
+        CountingWriter(CountingOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            out.count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            out.count += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
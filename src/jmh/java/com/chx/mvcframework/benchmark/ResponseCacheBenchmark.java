@@ -0,0 +1,78 @@
+package com.chx.mvcframework.benchmark;
+
+import com.chx.mvcframework.cache.GPCacheKey;
+import com.chx.mvcframework.cache.GPResponseCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 64个线程并发读写GPResponseCache
+ *
+ * hit：所有键都在缓存中，测试查找路径上的竞争（引用标记、计数器）；
+ * churn：键的数量是容量的4倍，未命中时放入，测试CLOCK淘汰的竞争
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(64)
+@Fork(1)
+public class ResponseCacheBenchmark {
+
+    private static final int BODY_SIZE = 256;
+
+    @Param({"1024"})
+    public int capacity;
+
+    private GPResponseCache cache;
+
+    private GPCacheKey[] keys;
+
+    private byte[] body;
+
+    @Setup
+    public void setup() {
+        body = new byte[BODY_SIZE];
+        // 每个条目约占BODY_SIZE + 128 + 名称字节
+        cache = new GPResponseCache((long) capacity * (BODY_SIZE + 160));
+        keys = new GPCacheKey[capacity * 4];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new GPCacheKey("bench", new Object[]{i});
+        }
+        for (int i = 0; i < capacity; i++) {
+            cache.put(keys[i], "application/json;charset=UTF-8", body, 600000);
+        }
+    }
+
+    @Benchmark
+    public Object hit() {
+        return cache.get(keys[ThreadLocalRandom.current().nextInt(capacity)]);
+    }
+
+    @Benchmark
+    public Object churn() {
+        GPCacheKey key = keys[ThreadLocalRandom.current().nextInt(keys.length)];
+        GPResponseCache.Entry entry = cache.get(key);
+        if (entry == null) {
+            cache.put(key, "application/json;charset=UTF-8", body, 600000);
+        }
+        return entry;
+    }
+}
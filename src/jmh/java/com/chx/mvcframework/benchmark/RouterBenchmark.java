@@ -0,0 +1,93 @@
+package com.chx.mvcframework.benchmark;
+
+import com.chx.mvcframework.router.GPRouter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 路由查找，路由数量为10、1000、10000
+ *
+ * v2：去掉contextPath后replaceAll("/+", "/")，再查HashMap；
+ * v3：GPRouter前缀树，包括字面量、路径模板和未命中三种情况
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouterBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int routes;
+
+    private final Map<String, Integer> v2 = new HashMap<>();
+
+    private final GPRouter<Integer> v3 = new GPRouter<>();
+
+    private int[] captures;
+
+    private String literal;
+
+    private String template;
+
+    private String missing;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < routes; i++) {
+            String url = "/module" + (i % 17) + "/resource" + i + "/query";
+            v2.put(url, i);
+            v3.addRoute(url, i);
+            v3.addRoute("/module" + (i % 17) + "/resource" + i + "/{id:long}", i);
+        }
+        int last = routes - 1;
+        literal = "/app/module" + (last % 17) + "//resource" + last + "/query";
+        template = "/app/module" + (last % 17) + "/resource" + last + "/98765";
+        missing = "/app/module" + (last % 17) + "/resource" + last + "/a/b";
+        captures = v3.newCaptures();
+    }
+
+    @Benchmark
+    public Integer v2Literal() {
+        String url = literal.replace("/app", "").replaceAll("/+", "/");
+        return v2.get(url);
+    }
+
+    @Benchmark
+    public Integer v3Literal() {
+        return v3.match(literal, 4, captures);
+    }
+
+    @Benchmark
+    public Integer v3Template() {
+        return v3.match(template, 4, captures);
+    }
+
+    @Benchmark
+    public Integer v2Miss() {
+        String url = missing.replace("/app", "").replaceAll("/+", "/");
+        return v2.get(url);
+    }
+
+    @Benchmark
+    public Integer v3Miss() {
+        return v3.match(missing, 4, captures);
+    }
+}
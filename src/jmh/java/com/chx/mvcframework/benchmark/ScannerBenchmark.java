@@ -0,0 +1,190 @@
+package com.chx.mvcframework.benchmark;
+
+import com.chx.mvcframework.annotation.GPController;
+import com.chx.mvcframework.annotation.GPService;
+import com.chx.mvcframework.scan.GPClassScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * 扫描20000个类（每20个中有一个加了GPController），类文件在目录或jar中
+ *
+ * scanHeaders：GPClassScanner只读常量池；
+ * loadAndReflect：v2的方式，逐个Class.forName后用isAnnotationPresent判断，每次使用新的类加载器
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ScannerBenchmark {
+
+    private static final String PACKAGE = "com/chx/bench/gen";
+
+    private static final String ANNOTATION = "Lcom/chx/mvcframework/annotation/GPController;";
+
+    @Param({"20000"})
+    public int classes;
+
+    @Param({"dir", "jar"})
+    public String layout;
+
+    private Path root;
+
+    private URL url;
+
+    private List<String> classNames;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("gp-scan");
+        classNames = new ArrayList<>(classes);
+        if ("dir".equals(layout)) {
+            for (int i = 0; i < classes; i++) {
+                String name = className(i);
+                Path file = root.resolve(name + ".class");
+                Files.createDirectories(file.getParent());
+                Files.write(file, classFile(name, i % 20 == 0));
+                classNames.add(name.replace('/', '.'));
+            }
+            url = root.toUri().toURL();
+        } else {
+            Path jar = root.resolve("classes.jar");
+            try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+                String lastDirectory = null;
+                for (int i = 0; i < classes; i++) {
+                    String name = className(i);
+                    String directory = name.substring(0, name.lastIndexOf('/') + 1);
+                    if (lastDirectory == null) {
+                        // getResources需要目录条目才能在jar中找到包
+                        for (String parent : new String[]{"com/", "com/chx/", "com/chx/bench/", PACKAGE + "/"}) {
+                            putDirectory(out, parent);
+                        }
+                    }
+                    if (!directory.equals(lastDirectory)) {
+                        putDirectory(out, directory);
+                        lastDirectory = directory;
+                    }
+                    out.putNextEntry(new JarEntry(name + ".class"));
+                    out.write(classFile(name, i % 20 == 0));
+                    out.closeEntry();
+                    classNames.add(name.replace('/', '.'));
+                }
+            }
+            url = jar.toUri().toURL();
+        }
+    }
+
+    private static void putDirectory(JarOutputStream out, String directory) throws IOException {
+        out.putNextEntry(new JarEntry(directory));
+        out.closeEntry();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> walk = Files.walk(root)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static String className(int i) {
+        // 每500个类一个子包
+        return PACKAGE + "/p" + (i / 500) + "/Generated" + i;
+    }
+
+    @Benchmark
+    public int scanHeaders() throws IOException {
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{url}, null)) {
+            return new GPClassScanner(loader, GPController.class, GPService.class).scan("com.chx.bench.gen").size();
+        }
+    }
+
+    @Benchmark
+    public int loadAndReflect() throws Exception {
+        int found = 0;
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{url}, GPController.class.getClassLoader())) {
+            for (String className : classNames) {
+                Class<?> clazz = Class.forName(className, false, loader);
+                if (clazz.isAnnotationPresent(GPController.class) || clazz.isAnnotationPresent(GPService.class)) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 生成一个最小的类文件，加上与普通类相近数量的常量池条目
+     */
+    static byte[] classFile(String name, boolean annotated) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(52);
+        int filler = 40;
+        // 1 this名称、2 this、3 父类名称、4 父类、5 注解描述符、6 属性名、之后为填充
+        out.writeShort(7 + filler);
+        writeUtf8(out, name);
+        out.writeByte(7);
+        out.writeShort(1);
+        writeUtf8(out, "java/lang/Object");
+        out.writeByte(7);
+        out.writeShort(3);
+        writeUtf8(out, annotated ? ANNOTATION : "Ljava/lang/Deprecated;");
+        writeUtf8(out, "RuntimeVisibleAnnotations");
+        for (int i = 0; i < filler; i++) {
+            writeUtf8(out, "generatedMember" + i + "()Ljava/lang/String;");
+        }
+        // public class，无接口、字段和方法
+        out.writeShort(0x0021);
+        out.writeShort(2);
+        out.writeShort(4);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(1);
+        out.writeShort(6);
+        out.writeInt(6);
+        out.writeShort(1);
+        out.writeShort(5);
+        out.writeShort(0);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeUtf8(DataOutputStream out, String value) throws IOException {
+        out.writeByte(1);
+        out.writeUTF(value);
+    }
+}
@@ -0,0 +1,76 @@
+package com.chx.mvcframework.benchmark;
+
+import com.chx.mvcframework.annotation.GPController;
+import com.chx.mvcframework.annotation.GPService;
+import com.chx.mvcframework.context.GPApplicationContext;
+import com.chx.mvcframework.index.GPComponentIndex;
+import com.chx.mvcframework.scan.GPClassScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动时获取组件：读取编译期索引，对比扫描类文件后加载并反射分析；以及创建并刷新容器
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StartupBenchmark {
+
+    private static final String PACKAGE = "com.chx";
+
+    @Benchmark
+    public GPComponentIndex readIndex() throws IOException {
+        GPComponentIndex index = new GPComponentIndex();
+        ClassLoader classLoader = getClass().getClassLoader();
+        for (Enumeration<URL> urls = classLoader.getResources(GPComponentIndex.LOCATION); urls.hasMoreElements(); ) {
+            try (Reader reader = new InputStreamReader(urls.nextElement().openStream(), StandardCharsets.UTF_8)) {
+                index.merge(GPComponentIndex.read(reader));
+            }
+        }
+        return index.filter(PACKAGE);
+    }
+
+    @Benchmark
+    public GPComponentIndex scanAndReflect() throws Exception {
+        ClassLoader classLoader = getClass().getClassLoader();
+        List<Class<?>> classes = new ArrayList<>();
+        for (String className : new GPClassScanner(classLoader, GPController.class, GPService.class).scan(PACKAGE)) {
+            classes.add(Class.forName(className, false, classLoader));
+        }
+        return GPComponentIndex.fromClasses(classes);
+    }
+
+    @Benchmark
+    public GPApplicationContext refreshContext() throws Exception {
+        GPComponentIndex index = readIndex().filter(BenchmarkController.class.getPackage().getName());
+        Properties config = new Properties();
+        config.setProperty("initThreads", "4");
+        GPApplicationContext context = new GPApplicationContext(index, config);
+        context.refresh();
+        return context;
+    }
+}
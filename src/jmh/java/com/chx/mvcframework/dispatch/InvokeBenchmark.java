@@ -0,0 +1,97 @@
+package com.chx.mvcframework.dispatch;
+
+import com.chx.mvcframework.benchmark.BenchmarkController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller方法调用：直接调用作为基准，对比Method.invoke（v2）和HandlerInvoker的两种方式（v3）
+ * shape：zeroArg无参数，param为(String, int)，threeArgs为(int, long, boolean)，基本类型参数需要拆箱
+ * 放在dispatch包中以访问包内的HandlerInvoker
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvokeBenchmark {
+
+    @Param({"zeroArg", "param", "threeArgs"})
+    public String shape;
+
+    private final BenchmarkController controller = new BenchmarkController();
+
+    private Object[] args;
+
+    private Method method;
+
+    private HandlerInvoker reflect;
+
+    private HandlerInvoker methodHandle;
+
+    @Setup
+    public void setup() throws Exception {
+        switch (shape) {
+            case "zeroArg":
+                method = BenchmarkController.class.getMethod("ping");
+                args = new Object[0];
+                break;
+            case "param":
+                method = BenchmarkController.class.getMethod("param", String.class, int.class);
+                args = new Object[]{"gp", 18};
+                break;
+            default:
+                method = BenchmarkController.class.getMethod("sum", int.class, long.class, boolean.class);
+                args = new Object[]{7, 18L, true};
+                break;
+        }
+        reflect = HandlerInvoker.create(controller, method, HandlerInvoker.MODE_REFLECT);
+        methodHandle = HandlerInvoker.create(controller, method, HandlerInvoker.MODE_METHOD_HANDLE);
+    }
+
+    /**
+     * 按参数个数区分，与HandlerInvoker一样从Object[]中取参数并拆箱
+     */
+    @Benchmark
+    public Object direct() {
+        switch (args.length) {
+            case 0:
+                return controller.ping();
+            case 2:
+                return controller.param((String) args[0], (Integer) args[1]);
+            default:
+                return controller.sum((Integer) args[0], (Long) args[1], (Boolean) args[2]);
+        }
+    }
+
+    @Benchmark
+    public Object v2MethodInvoke() throws Exception {
+        return method.invoke(controller, args);
+    }
+
+    @Benchmark
+    public Object v3Reflect() throws Exception {
+        return reflect.invoke(args);
+    }
+
+    @Benchmark
+    public Object v3MethodHandle() throws Exception {
+        return methodHandle.invoke(args);
+    }
+}
@@ -0,0 +1,174 @@
+package com.chx.mvcframework.dispatch;
+
+import com.chx.mvcframework.http.GPAsyncContext;
+import com.chx.mvcframework.http.GPHttpRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 查询参数绑定：Handler只声明了name，请求中另有junk个无关参数
+ *
+ * parameterMap：与容器相同，第一次读取参数时解码并保存全部参数；
+ * declared：QueryParameterBinder只扫描声明的参数
+ * 放在dispatch包中以访问包内的QueryParameterBinder
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBindingBenchmark {
+
+    @Param({"0", "30"})
+    public int junk;
+
+    private String query;
+
+    private final QueryParameterBinder binder = new QueryParameterBinder(Collections.singletonList("name"));
+
+    @Setup
+    public void setup() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < junk; i++) {
+            builder.append("utm_").append(i).append("=%E6%B5%8B%E8%AF%95+").append(i).append('&');
+        }
+        query = builder.append("name=gp%20mvc").toString();
+    }
+
+    @Benchmark
+    public Object parameterMap() {
+        return new QueryRequest(query).getParameterValues("name");
+    }
+
+    @Benchmark
+    public Object declared() {
+        return binder.bind(new QueryRequest(query))[0];
+    }
+
+    /**
+     * 只有查询参数的请求，getParameterValues与内嵌服务器相同：第一次调用时解析全部参数
+     */
+    private static final class QueryRequest implements GPHttpRequest {
+
+        private final String queryString;
+
+        private Map<String, String[]> parameters;
+
+        QueryRequest(String queryString) {
+            this.queryString = queryString;
+        }
+
+        @Override
+        public String getQueryString() {
+            return queryString;
+        }
+
+        @Override
+        public String getFormBody() {
+            return "";
+        }
+
+        @Override
+        public String getParameter(String name) {
+            String[] values = getParameterValues(name);
+            return values == null ? null : values[0];
+        }
+
+        @Override
+        public String[] getParameterValues(String name) {
+            return getParameterMap().get(name);
+        }
+
+        @Override
+        public Map<String, String[]> getParameterMap() {
+            if (parameters == null) {
+                parameters = new LinkedHashMap<>();
+                try {
+                    for (String pair : queryString.split("&")) {
+                        int eq = pair.indexOf('=');
+                        String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), "UTF-8");
+                        String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+                        String[] values = parameters.get(name);
+                        if (values == null) {
+                            values = new String[]{value};
+                        } else {
+                            values = Arrays.copyOf(values, values.length + 1);
+                            values[values.length - 1] = value;
+                        }
+                        parameters.put(name, values);
+                    }
+                } catch (UnsupportedEncodingException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return parameters;
+        }
+
+        @Override
+        public String getMethod() {
+            return "GET";
+        }
+
+        @Override
+        public String getRequestURI() {
+            return "/bench/param";
+        }
+
+        @Override
+        public String getContextPath() {
+            return "";
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return null;
+        }
+
+        @Override
+        public long getDateHeader(String name) {
+            return -1;
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isAsyncSupported() {
+            return false;
+        }
+
+        @Override
+        public GPAsyncContext startAsync() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> type) {
+            return null;
+        }
+    }
+}
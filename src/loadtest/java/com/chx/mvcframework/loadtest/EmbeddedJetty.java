@@ -0,0 +1,75 @@
+package com.chx.mvcframework.loadtest;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.webapp.WebAppContext;
+
+import java.io.File;
+import java.net.URL;
+
+/**
+ * 在回环地址的随机端口上启动嵌入式Jetty，按src/main/webapp/WEB-INF/web.xml部署应用
+ *
+ * 类从测试类路径加载（父加载器优先），不需要打war包；
+ * loadtest-web.xml覆盖DispatcherServlet的contextConfigLocation，让压测用的Controller也被加载
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class EmbeddedJetty {
+
+    private final Server server;
+
+    private final QueuedThreadPool threadPool;
+
+    private final ServerConnector connector;
+
+    /**
+     * @param webappDirectory 应用目录，包含WEB-INF/web.xml
+     * @param maxThreads Jetty线程池的最大线程数
+     */
+    public EmbeddedJetty(File webappDirectory, int maxThreads) {
+        threadPool = new QueuedThreadPool(maxThreads);
+        server = new Server(threadPool);
+        connector = new ServerConnector(server);
+        connector.setHost("127.0.0.1");
+        connector.setPort(0);
+        server.addConnector(connector);
+
+        WebAppContext webapp = new WebAppContext();
+        webapp.setContextPath("/");
+        webapp.setResourceBase(webappDirectory.getAbsolutePath());
+        webapp.setDescriptor(new File(webappDirectory, "WEB-INF/web.xml").getAbsolutePath());
+        URL override = EmbeddedJetty.class.getClassLoader().getResource("loadtest-web.xml");
+        if (override != null) {
+            webapp.addOverrideDescriptor(override.toExternalForm());
+        }
+        webapp.setParentLoaderPriority(true);
+        webapp.setThrowUnavailableOnStartupException(true);
+        server.setHandler(webapp);
+    }
+
+    /**
+     * @return 实际监听的端口
+     */
+    public int start() throws Exception {
+        server.start();
+        return connector.getLocalPort();
+    }
+
+    /**
+     * @return 正在处理任务的线程数，包括selector和acceptor占用的线程
+     */
+    public int getBusyThreads() {
+        return threadPool.getBusyThreads();
+    }
+
+    public int getMaxThreads() {
+        return threadPool.getMaxThreads();
+    }
+
+    public void stop() throws Exception {
+        server.stop();
+    }
+}
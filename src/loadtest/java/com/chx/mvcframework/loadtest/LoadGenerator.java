@@ -0,0 +1,244 @@
+package com.chx.mvcframework.loadtest;
+
+import com.chx.mvcframework.metrics.GPLatencyHistogram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntSupplier;
+
+/**
+ * 按场景发送请求并记录延迟
+ *
+ * 协调遗漏（coordinated omission）：服务变慢时压测线程也跟着等待，本该发出的请求没有发出，
+ * 只统计实际发出的请求会严重低估尾延迟。这里同时记录两种延迟：
+ * 服务时间（发出到收到响应），以及修正后的延迟：
+ * open模式从计划发出的时间算起，排队等待的时间也计入；
+ * closed模式按预热阶段的中位数作为期望间隔，一次耗时为T的请求额外补记T-间隔、T-2*间隔……直到小于间隔，
+ * 与HdrHistogram的recordValueWithExpectedInterval相同
+ *
+ * 测量阶段每10毫秒采样一次容器线程池的忙碌线程数，用来对比同步和异步Handler占用的容器线程
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class LoadGenerator {
+
+    private static final int CONNECT_TIMEOUT = 5000;
+
+    private static final int READ_TIMEOUT = 30000;
+
+    private static final long SAMPLE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final String baseUrl;
+
+    private final IntSupplier busyThreads;
+
+    /**
+     * @param busyThreads 容器线程池当前的忙碌线程数
+     */
+    public LoadGenerator(String baseUrl, IntSupplier busyThreads) {
+        this.baseUrl = baseUrl;
+        this.busyThreads = busyThreads;
+    }
+
+    /**
+     * 同时运行多个场景，预热和测量的时间取第一个场景的配置
+     * @return 与scenarios顺序相同的测量结果
+     */
+    public List<Result> run(List<Scenario> scenarios) throws Exception {
+        Scenario first = scenarios.get(0);
+        List<Result> warmup = phase(scenarios, first.getWarmup(), null);
+        long[] expectedIntervals = new long[scenarios.size()];
+        for (int i = 0; i < expectedIntervals.length; i++) {
+            expectedIntervals[i] = scenarios.get(i).isOpen() ? 0 : warmup.get(i).serviceTime.snapshot().percentile(0.5);
+        }
+        return phase(scenarios, first.getDuration(), expectedIntervals);
+    }
+
+    private List<Result> phase(List<Scenario> scenarios, long durationMillis, long[] expectedIntervals) throws Exception {
+        List<Result> results = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        for (int s = 0; s < scenarios.size(); s++) {
+            Scenario scenario = scenarios.get(s);
+            URL url = new URL(baseUrl + scenario.getPath());
+            Result result = new Result(scenario);
+            results.add(result);
+            AtomicLong sequence = new AtomicLong();
+            long interval = scenario.isOpen() ? TimeUnit.SECONDS.toNanos(1) / scenario.getRate() : 0;
+            long expectedInterval = expectedIntervals == null ? 0 : expectedIntervals[s];
+            for (int i = 0; i < scenario.getConcurrency(); i++) {
+                Thread thread = new Thread(() -> {
+                    byte[] buffer = new byte[8192];
+                    if (scenario.isOpen()) {
+                        openLoop(url, result, buffer, start, end, interval, sequence);
+                    } else {
+                        closedLoop(url, result, buffer, end, expectedInterval);
+                    }
+                }, "load-" + scenario.getName() + "-" + i);
+                thread.start();
+                threads.add(thread);
+            }
+        }
+        long samples = 0;
+        long busySum = 0;
+        int busyMax = 0;
+        if (expectedIntervals != null) {
+            while (System.nanoTime() - end < 0) {
+                int busy = busyThreads.getAsInt();
+                busySum += busy;
+                busyMax = Math.max(busyMax, busy);
+                samples++;
+                LockSupport.parkNanos(SAMPLE_INTERVAL);
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        for (Result result : results) {
+            result.elapsedNanos = elapsed;
+            result.busyThreadsAverage = samples == 0 ? 0 : (double) busySum / samples;
+            result.busyThreadsMax = busyMax;
+        }
+        return results;
+    }
+
+    private void openLoop(URL url, Result result, byte[] buffer, long start, long end, long interval, AtomicLong sequence) {
+        while (true) {
+            long intended = start + sequence.getAndIncrement() * interval;
+            if (intended - end >= 0) {
+                return;
+            }
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long begin = System.nanoTime();
+            boolean ok = send(url, buffer);
+            long done = System.nanoTime();
+            result.record(ok, done - begin);
+            result.latency.record(done - intended);
+        }
+    }
+
+    private void closedLoop(URL url, Result result, byte[] buffer, long end, long expectedInterval) {
+        while (System.nanoTime() - end < 0) {
+            long begin = System.nanoTime();
+            boolean ok = send(url, buffer);
+            long took = System.nanoTime() - begin;
+            result.record(ok, took);
+            result.latency.record(took);
+            if (expectedInterval > 0) {
+                for (long missed = took - expectedInterval; missed >= expectedInterval; missed -= expectedInterval) {
+                    result.latency.record(missed);
+                }
+            }
+        }
+    }
+
+    /**
+     * 读完响应体再关闭流，连接才能被keep-alive复用
+     * @return 2xx/3xx且没有IO异常时为true
+     */
+    private boolean send(URL url, byte[] buffer) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setReadTimeout(READ_TIMEOUT);
+            int status = connection.getResponseCode();
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (in != null) {
+                try {
+                    while (in.read(buffer) >= 0) {
+                        // 丢弃响应体
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+            return status < 400;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 一个场景的结果
+     */
+    public static class Result {
+        private final Scenario scenario;
+        private final GPLatencyHistogram serviceTime = new GPLatencyHistogram();
+        private final GPLatencyHistogram latency = new GPLatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private long elapsedNanos;
+        private double busyThreadsAverage;
+        private int busyThreadsMax;
+
+        Result(Scenario scenario) {
+            this.scenario = scenario;
+        }
+
+        void record(boolean ok, long nanos) {
+            serviceTime.record(nanos);
+            if (!ok) {
+                errors.increment();
+            }
+        }
+
+        public Scenario getScenario() {
+            return scenario;
+        }
+
+        /**
+         * 实际发出的请求，不含修正时补记的值
+         */
+        public long getRequests() {
+            return serviceTime.getCount();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public double getErrorRate() {
+            long requests = getRequests();
+            return requests == 0 ? 0 : (double) getErrors() / requests;
+        }
+
+        public double getThroughput() {
+            return getRequests() * 1e9 / elapsedNanos;
+        }
+
+        public GPLatencyHistogram.Snapshot getServiceTime() {
+            return serviceTime.snapshot();
+        }
+
+        /**
+         * 测量期间容器线程池的平均忙碌线程数，同时运行的场景共用同一个线程池，结果相同
+         */
+        public double getBusyThreadsAverage() {
+            return busyThreadsAverage;
+        }
+
+        public int getBusyThreadsMax() {
+            return busyThreadsMax;
+        }
+
+        /**
+         * 修正协调遗漏后的延迟
+         */
+        public GPLatencyHistogram.Snapshot getLatency() {
+            return latency.snapshot();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.chx.mvcframework.loadtest;
+
+import com.chx.mvcframework.metrics.GPLatencyHistogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 压测入口：启动嵌入式Jetty，依次运行loadtest.properties中的场景，输出吞吐量、延迟分布和Jetty线程池的占用，
+ * 任何场景违反SLO时以状态码1退出，使构建失败
+ *
+ * 参数为key=value，覆盖loadtest.properties中的配置，如scenarios=query-open duration=10000
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Properties config = new Properties();
+        try (InputStream in = LoadTest.class.getClassLoader().getResourceAsStream("loadtest.properties")) {
+            if (in == null) {
+                throw new IOException("loadtest.properties not found on classpath");
+            }
+            config.load(in);
+        }
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                config.setProperty(arg.substring(0, eq).trim(), arg.substring(eq + 1).trim());
+            }
+        }
+
+        List<Scenario> scenarios = new ArrayList<>();
+        for (String name : config.getProperty("scenarios", "").split(",")) {
+            if (!name.trim().isEmpty()) {
+                scenarios.add(new Scenario(name.trim(), config));
+            }
+        }
+        int maxConcurrency = 0;
+        for (Scenario scenario : scenarios) {
+            int concurrency = scenario.getConcurrency();
+            for (String background : scenario.getBackground()) {
+                concurrency += new Scenario(background, config).getConcurrency();
+            }
+            maxConcurrency = Math.max(maxConcurrency, concurrency);
+        }
+        // HttpURLConnection默认每个地址只保留5个空闲连接，超出的每次都要重新建立
+        System.setProperty("http.maxConnections", String.valueOf(Math.max(5, maxConcurrency)));
+
+        EmbeddedJetty jetty = new EmbeddedJetty(new File(config.getProperty("webapp", "src/main/webapp")),
+                Integer.parseInt(config.getProperty("jettyThreads", "200")));
+        int port = jetty.start();
+        List<String> breaches = new ArrayList<>();
+        try {
+            LoadGenerator generator = new LoadGenerator("http://127.0.0.1:" + port, jetty::getBusyThreads);
+            System.out.println("Load test against http://127.0.0.1:" + port);
+            for (Scenario scenario : scenarios) {
+                List<Scenario> concurrent = new ArrayList<>();
+                concurrent.add(scenario);
+                for (String background : scenario.getBackground()) {
+                    concurrent.add(new Scenario(background, config));
+                }
+                List<LoadGenerator.Result> results = generator.run(concurrent);
+                for (int i = 0; i < results.size(); i++) {
+                    report(results.get(i), i > 0);
+                }
+                System.out.printf("  jetty threads  busy avg=%.1f max=%d of %d%n", results.get(0).getBusyThreadsAverage(),
+                        results.get(0).getBusyThreadsMax(), jetty.getMaxThreads());
+                breaches.addAll(check(results.get(0)));
+            }
+        } finally {
+            jetty.stop();
+        }
+
+        if (!breaches.isEmpty()) {
+            System.out.println("SLO breached:");
+            for (String breach : breaches) {
+                System.out.println("  " + breach);
+            }
+            System.exit(1);
+        }
+        System.out.println("All SLOs met");
+        System.exit(0);
+    }
+
+    private static void report(LoadGenerator.Result result, boolean background) {
+        Scenario scenario = result.getScenario();
+        System.out.println();
+        System.out.printf("%s%s  %s %s, concurrency=%d%s%n", scenario.getName(), background ? " (background)" : "",
+                scenario.isOpen() ? "open" : "closed",
+                scenario.getPath(), scenario.getConcurrency(),
+                scenario.isOpen() ? ", rate=" + scenario.getRate() + "/s" : "");
+        System.out.printf("  requests=%d errors=%d (%.3f%%) throughput=%.1f/s%n", result.getRequests(),
+                result.getErrors(), result.getErrorRate() * 100, result.getThroughput());
+        System.out.printf("  %-14s", "");
+        for (String percentile : Scenario.percentiles()) {
+            System.out.printf("%10s", percentile);
+        }
+        System.out.println("  (ms)");
+        row("service time", result.getServiceTime());
+        row("latency", result.getLatency());
+    }
+
+    private static void row(String label, GPLatencyHistogram.Snapshot snapshot) {
+        System.out.printf("  %-14s", label);
+        for (String percentile : Scenario.percentiles()) {
+            System.out.printf("%10.3f", millis(snapshot, percentile));
+        }
+        System.out.println();
+    }
+
+    private static double millis(GPLatencyHistogram.Snapshot snapshot, String percentile) {
+        return snapshot.percentile(Scenario.percentile(percentile)) / 1e6;
+    }
+
+    /**
+     * SLO按修正后的延迟检查
+     */
+    private static List<String> check(LoadGenerator.Result result) {
+        Scenario scenario = result.getScenario();
+        List<String> breaches = new ArrayList<>();
+        GPLatencyHistogram.Snapshot latency = result.getLatency();
+        for (Map.Entry<String, Double> slo : scenario.getLatencySlo().entrySet()) {
+            double actual = millis(latency, slo.getKey());
+            if (actual > slo.getValue()) {
+                breaches.add(String.format("%s %s %.3fms > %sms", scenario.getName(), slo.getKey(), actual, slo.getValue()));
+            }
+        }
+        if (result.getErrorRate() > scenario.getErrorRateSlo()) {
+            breaches.add(String.format("%s errorRate %.5f > %s", scenario.getName(), result.getErrorRate(),
+                    scenario.getErrorRateSlo()));
+        }
+        if (result.getThroughput() < scenario.getMinThroughputSlo()) {
+            breaches.add(String.format("%s throughput %.1f/s < %s/s", scenario.getName(), result.getThroughput(),
+                    scenario.getMinThroughputSlo()));
+        }
+        if (scenario.getMaxBusyThreadsSlo() > 0 && result.getBusyThreadsMax() > scenario.getMaxBusyThreadsSlo()) {
+            breaches.add(String.format("%s busy threads %d > %d", scenario.getName(), result.getBusyThreadsMax(),
+                    scenario.getMaxBusyThreadsSlo()));
+        }
+        if (result.getRequests() == 0) {
+            breaches.add(scenario.getName() + " sent no requests");
+        }
+        return breaches;
+    }
+}
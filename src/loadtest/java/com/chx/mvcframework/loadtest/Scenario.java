@@ -0,0 +1,152 @@
+package com.chx.mvcframework.loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 一个压测场景，配置项为"场景名.键"，没有配置时使用不带前缀的默认值
+ *
+ * closed：concurrency个线程各自循环发送请求，上一个返回后才发下一个；
+ * open：按rate（每秒请求数）的固定节奏发送，concurrency为同时进行的请求数上限
+ *
+ * slo.p50、slo.p99、slo.p999、slo.max的单位为毫秒，slo.errorRate为允许的失败比例，
+ * slo.minThroughput为每秒完成请求数的下限，slo.maxBusyThreads为测量期间容器忙碌线程数峰值的上限
+ *
+ * background为同时运行的其他场景（逗号分隔），与本场景同时预热和测量，只报告结果不检查SLO，
+ * 用来观察一个路由过载时其他路由是否受影响
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class Scenario {
+
+    private static final String[] PERCENTILES = {"p50", "p90", "p99", "p999", "max"};
+
+    private final String name;
+    private final String path;
+    private final boolean open;
+    private final int concurrency;
+    private final int rate;
+    private final long warmup;
+    private final long duration;
+    /**
+     * 百分位 -> 延迟上限（毫秒）
+     */
+    private final Map<String, Double> latencySlo = new LinkedHashMap<>();
+    private final double errorRateSlo;
+    private final double minThroughputSlo;
+    private final int maxBusyThreadsSlo;
+    private final String[] background;
+
+    Scenario(String name, Properties config) {
+        this.name = name;
+        this.path = require(config, name, "path");
+        String mode = get(config, name, "mode", "closed");
+        if (!"closed".equals(mode) && !"open".equals(mode)) {
+            throw new IllegalArgumentException(name + ".mode must be closed or open: " + mode);
+        }
+        this.open = "open".equals(mode);
+        this.concurrency = Integer.parseInt(get(config, name, "concurrency", "16"));
+        this.rate = Integer.parseInt(get(config, name, "rate", "0"));
+        if (open && rate <= 0) {
+            throw new IllegalArgumentException(name + ".rate is required in open mode");
+        }
+        this.warmup = Long.parseLong(get(config, name, "warmup", "2000"));
+        this.duration = Long.parseLong(get(config, name, "duration", "5000"));
+        for (String percentile : PERCENTILES) {
+            String value = get(config, name, "slo." + percentile, null);
+            if (value != null) {
+                latencySlo.put(percentile, Double.parseDouble(value));
+            }
+        }
+        this.errorRateSlo = Double.parseDouble(get(config, name, "slo.errorRate", "0"));
+        this.minThroughputSlo = Double.parseDouble(get(config, name, "slo.minThroughput", "0"));
+        this.maxBusyThreadsSlo = Integer.parseInt(get(config, name, "slo.maxBusyThreads", "0"));
+        String names = config.getProperty(name + ".background", "").trim();
+        this.background = names.isEmpty() ? new String[0] : names.split("\\s*,\\s*");
+    }
+
+    private static String get(Properties config, String name, String key, String defaultValue) {
+        String value = config.getProperty(name + "." + key);
+        return value != null ? value.trim() : config.getProperty(key, defaultValue);
+    }
+
+    private static String require(Properties config, String name, String key) {
+        String value = get(config, name, key, null);
+        if (value == null) {
+            throw new IllegalArgumentException(name + "." + key + " is required");
+        }
+        return value.trim();
+    }
+
+    static double percentile(String percentile) {
+        switch (percentile) {
+            case "p50":
+                return 0.5;
+            case "p90":
+                return 0.9;
+            case "p99":
+                return 0.99;
+            case "p999":
+                return 0.999;
+            default:
+                return 1.0;
+        }
+    }
+
+    static String[] percentiles() {
+        return PERCENTILES.clone();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getRate() {
+        return rate;
+    }
+
+    public long getWarmup() {
+        return warmup;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public Map<String, Double> getLatencySlo() {
+        return latencySlo;
+    }
+
+    public double getErrorRateSlo() {
+        return errorRateSlo;
+    }
+
+    public double getMinThroughputSlo() {
+        return minThroughputSlo;
+    }
+
+    /**
+     * @return 0表示不检查
+     */
+    public int getMaxBusyThreadsSlo() {
+        return maxBusyThreadsSlo;
+    }
+
+    public String[] getBackground() {
+        return background.clone();
+    }
+}
@@ -0,0 +1,95 @@
+package com.chx.mvcframework.loadtest;
+
+import com.chx.mvcframework.annotation.GPController;
+import com.chx.mvcframework.annotation.GPRequestMapping;
+import com.chx.mvcframework.annotation.GPRequestParam;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 压测用的Controller，分别覆盖文本、JSON、阻塞和异步几种处理方式
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+@GPController
+@GPRequestMapping("/load")
+public class SyntheticController {
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "load-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @GPRequestMapping("/echo")
+    public String echo(@GPRequestParam("msg") String msg) {
+        return msg;
+    }
+
+    @GPRequestMapping("/items")
+    public List<Item> items(@GPRequestParam("n") int n) {
+        List<Item> items = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            items.add(new Item(i, "item-" + i, i * 1.25));
+        }
+        return items;
+    }
+
+    /**
+     * 模拟阻塞IO，占用处理线程
+     */
+    @GPRequestMapping("/sleep")
+    public String sleep(@GPRequestParam("ms") long ms) throws InterruptedException {
+        Thread.sleep(ms);
+        return "slept " + ms;
+    }
+
+    /**
+     * 模拟变慢的下游，最多同时处理8个请求，超出的直接返回503
+     */
+    @GPRequestMapping(value = "/slow", maxConcurrency = 8)
+    public String slow(@GPRequestParam("ms") long ms) throws InterruptedException {
+        Thread.sleep(ms);
+        return "slow " + ms;
+    }
+
+    /**
+     * 模拟异步IO，不占用处理线程
+     */
+    @GPRequestMapping("/async")
+    public CompletableFuture<String> async(@GPRequestParam("ms") long ms) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        TIMER.schedule(() -> future.complete("waited " + ms), ms, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    public static class Item {
+        private final long id;
+        private final String name;
+        private final double price;
+
+        Item(long id, String name, double price) {
+            this.id = id;
+            this.name = name;
+            this.price = price;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+    }
+}
@@ -10,7 +10,7 @@ import java.lang.annotation.Target;
  * @author cheng.huaxing
  * @date 2019-04-20
  */
-@Target({ElementType.FIELD})
+@Target({ElementType.FIELD, ElementType.CONSTRUCTOR})
 @Retention(RetentionPolicy.RUNTIME)
 @Documented
 public @interface GPAutowired {
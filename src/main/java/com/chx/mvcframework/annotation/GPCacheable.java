@@ -0,0 +1,24 @@
+package com.chx.mvcframework.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 缓存GPRequestMapping方法渲染后的响应，相同路径和参数的请求直接返回缓存内容，不再调用Controller
+ * 只用于幂等、有返回值的方法；缓存键为合并'/'后的请求路径加上绑定后的参数值
+ * 方法不能有request、response参数：缓存键不包含请求头等其他内容，命中时也只按200重放响应体
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface GPCacheable {
+    /**
+     * 缓存有效期（毫秒）
+     */
+    long ttl() default 60000;
+}
@@ -0,0 +1,23 @@
+package com.chx.mvcframework.annotation;
+
+import com.chx.mvcframework.etag.GPETagProvider;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * GET/HEAD请求在绑定参数和调用方法之前，先由GPETagProvider取得ETag，
+ * 与If-None-Match匹配时直接返回304
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface GPETag {
+    Class<? extends GPETagProvider> value();
+}
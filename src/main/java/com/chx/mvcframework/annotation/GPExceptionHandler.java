@@ -0,0 +1,33 @@
+package com.chx.mvcframework.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标注在Controller的public方法上，处理Handler（包括参数绑定和异步结果）抛出的异常，对所有路由生效，
+ * 多个方法都能处理时使用异常类型最接近的一个
+ *
+ * 方法参数可以是异常、GPHttpRequest、GPHttpResponse以及容器原生的请求和响应；
+ * 返回值与普通Handler一样写入响应，void方法自己写响应
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface GPExceptionHandler {
+
+    /**
+     * 处理的异常类型，为空时取方法中异常类型的参数
+     */
+    Class<? extends Throwable>[] value() default {};
+
+    /**
+     * 响应状态码，在调用方法之前设置，方法中可以再修改
+     */
+    int status() default 500;
+}
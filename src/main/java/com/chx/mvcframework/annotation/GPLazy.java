@@ -0,0 +1,18 @@
+package com.chx.mvcframework.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 延迟初始化，容器启动时不创建，第一次getBean或被依赖时才创建
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface GPLazy {
+}
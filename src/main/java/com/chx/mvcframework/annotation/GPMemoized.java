@@ -0,0 +1,42 @@
+package com.chx.mvcframework.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 缓存GPService方法的返回值，相同参数的调用直接返回缓存结果
+ * 同一个参数同时只有一个线程执行方法，其他线程等待它的结果；方法抛出异常时不缓存
+ * bean通过接口代理实现，必须按接口注入
+ *
+ * 只适合耗时的纯函数，如查询远程配置、复杂计算；开销很小的方法加上后反而多了代理和查表的开销，
+ * 并且在ttl内返回旧结果：
+ * <pre>
+ * &#64;GPService
+ * public class RateServiceImpl implements RateService {
+ *     &#64;Override
+ *     &#64;GPMemoized(ttl = 10000)
+ *     public BigDecimal rate(String currency) {
+ *         return remoteClient.fetchRate(currency);
+ *     }
+ * }
+ * </pre>
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface GPMemoized {
+    /**
+     * 缓存有效期（毫秒），0表示不过期
+     */
+    long ttl() default 60000;
+
+    /**
+     * 最多缓存的参数组合个数
+     */
+    int maxEntries() default 10000;
+}
@@ -0,0 +1,19 @@
+package com.chx.mvcframework.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 绑定路径模板变量，如@GPRequestMapping("/{id}")中的id
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+@Target({ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface GPPathVariable {
+    String value() default "";
+}
@@ -15,4 +15,9 @@ import java.lang.annotation.Target;
 @Documented
 public @interface GPRequestMapping {
     String value() default "";
+
+    /**
+     * 同一个方法同时处理的请求数上限，超出的请求直接返回503；0表示使用配置routeMaxConcurrency
+     */
+    int maxConcurrency() default 0;
 }
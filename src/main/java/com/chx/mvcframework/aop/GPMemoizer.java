@@ -0,0 +1,186 @@
+package com.chx.mvcframework.aop;
+
+import com.chx.mvcframework.cache.GPCacheKey;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个方法的返回值缓存
+ *
+ * 每个参数组合对应一个Memo，第一个调用者放入未完成的Memo后执行方法，
+ * 同时到达的其他调用者拿到同一个Memo并等待结果，避免缓存失效时大量请求同时穿透（stampede）；
+ * 执行方法不在ConcurrentHashMap的锁内，不会阻塞同一个bin中的其他参数
+ *
+ * 条目数超过上限时与GPResponseCache一样使用CLOCK算法淘汰：Memo按放入顺序排在无锁队列中，
+ * 从队头取出，过期的删除，被访问过或还在执行的放回队尾，其余淘汰，每次未命中的淘汰开销均摊为O(1)
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class GPMemoizer {
+
+    private final Map<GPCacheKey, Memo> memos = new ConcurrentHashMap<>();
+
+    /**
+     * CLOCK队列，可能包含已经被替换或删除的Memo，取出时跳过
+     */
+    private final Queue<Memo> clock = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final long ttlNanos;
+
+    private final int maxEntries;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param ttl 有效期（毫秒），0表示不过期
+     * @param maxEntries 最多缓存的条目数
+     */
+    public GPMemoizer(long ttl, int maxEntries) {
+        this.ttlNanos = ttl > 0 ? TimeUnit.MILLISECONDS.toNanos(ttl) : 0;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 返回缓存的结果，没有或已过期时由当前线程执行loader，其他线程等待
+     * @throws Throwable loader抛出的异常，等待的线程收到同一个异常
+     */
+    public Object get(GPCacheKey key, Callable<Object> loader) throws Throwable {
+        while (true) {
+            Memo memo = memos.get(key);
+            if (memo != null && !memo.isExpired(System.nanoTime())) {
+                // 已经标记过就不再写，避免多个线程反复写同一个缓存行
+                if (!memo.referenced) {
+                    memo.referenced = true;
+                }
+                hits.increment();
+                return memo.await();
+            }
+            Memo created = new Memo(key);
+            boolean owner = memo == null ? memos.putIfAbsent(key, created) == null : memos.replace(key, memo, created);
+            if (!owner) {
+                // 其他线程抢先放入了新的Memo，重新读取
+                continue;
+            }
+            misses.increment();
+            clock.offer(created);
+            // 被替换或删除的Memo留在队列中，数量过多时清理一次
+            if (queued.incrementAndGet() > memos.size() * 2 + 64) {
+                purge();
+            }
+            Object value;
+            try {
+                value = loader.call();
+            } catch (Throwable e) {
+                memos.remove(key, created);
+                created.future.completeExceptionally(e);
+                throw e;
+            }
+            created.expiresAt = ttlNanos > 0 ? System.nanoTime() + ttlNanos : Long.MAX_VALUE;
+            created.future.complete(value);
+            if (memos.size() > maxEntries) {
+                evict();
+            }
+            return value;
+        }
+    }
+
+    public void clear() {
+        memos.clear();
+        clock.clear();
+        queued.set(0);
+    }
+
+    private void evict() {
+        // 最多扫描两轮：第一轮清除引用标记，第二轮淘汰
+        int budget = queued.get() * 2 + 1;
+        while (memos.size() > maxEntries && budget-- > 0) {
+            Memo memo = clock.poll();
+            if (memo == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            if (memos.get(memo.key) != memo) {
+                continue;
+            }
+            if (!memo.future.isDone() || (memo.referenced && !memo.isExpired(System.nanoTime()))) {
+                // 执行中的Memo有线程在等待，不能淘汰
+                memo.referenced = false;
+                clock.offer(memo);
+                queued.incrementAndGet();
+            } else if (memos.remove(memo.key, memo)) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private void purge() {
+        int removed = 0;
+        for (Iterator<Memo> it = clock.iterator(); it.hasNext(); ) {
+            Memo memo = it.next();
+            if (memos.get(memo.key) != memo) {
+                it.remove();
+                removed++;
+            }
+        }
+        queued.addAndGet(-removed);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        return memos.size();
+    }
+
+    private static final class Memo {
+        private final GPCacheKey key;
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+        private volatile boolean referenced;
+        /**
+         * System.nanoTime()表示的过期时间，执行中的Memo不过期
+         */
+        private volatile long expiresAt = Long.MAX_VALUE;
+
+        Memo(GPCacheKey key) {
+            this.key = key;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt != Long.MAX_VALUE && now - expiresAt >= 0;
+        }
+
+        Object await() throws Throwable {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.chx.mvcframework.aop;
+
+import com.chx.mvcframework.annotation.GPMemoized;
+import com.chx.mvcframework.cache.GPCacheKey;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GPService bean的JDK动态代理，加了GPMemoized注解的方法经过GPMemoizer缓存，其他方法直接调用原对象
+ * 注解可以加在实现类或接口的方法上；每个方法的GPMemoizer在创建代理时生成，调用时只查一次表
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class GPMemoizingProxy implements InvocationHandler {
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final Object target;
+
+    /**
+     * 接口方法与缓存的对应关系
+     */
+    private final Map<Method, GPMemoizer> memoizers;
+
+    private GPMemoizingProxy(Object target, Map<Method, GPMemoizer> memoizers) {
+        this.target = target;
+        this.memoizers = memoizers;
+    }
+
+    /**
+     * 为target生成代理，没有需要缓存的方法时返回null
+     * @param interfaces 代理实现的接口
+     */
+    public static Object wrap(Object target, List<Class<?>> interfaces) {
+        Map<Method, GPMemoizer> memoizers = new HashMap<>();
+        for (Class<?> anInterface : interfaces) {
+            for (Method method : anInterface.getMethods()) {
+                GPMemoized memoized = findAnnotation(target.getClass(), method);
+                if (memoized != null) {
+                    memoizers.put(method, new GPMemoizer(memoized.ttl(), memoized.maxEntries()));
+                }
+            }
+        }
+        if (memoizers.isEmpty()) {
+            return null;
+        }
+        return Proxy.newProxyInstance(target.getClass().getClassLoader(), interfaces.toArray(new Class<?>[0]),
+                new GPMemoizingProxy(target, memoizers));
+    }
+
+    /**
+     * 实现类是否有加了GPMemoized注解的public方法
+     */
+    public static boolean isMemoized(Class<?> clazz) {
+        for (Method method : clazz.getMethods()) {
+            if (method.isAnnotationPresent(GPMemoized.class)) {
+                return true;
+            }
+        }
+        for (Class<?> anInterface : clazz.getInterfaces()) {
+            if (isMemoized(anInterface)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static GPMemoized findAnnotation(Class<?> targetClass, Method interfaceMethod) {
+        try {
+            Method implementation = targetClass.getMethod(interfaceMethod.getName(), interfaceMethod.getParameterTypes());
+            if (implementation.isAnnotationPresent(GPMemoized.class)) {
+                return implementation.getAnnotation(GPMemoized.class);
+            }
+        } catch (NoSuchMethodException e) {
+            // default方法没有被实现类覆盖时getMethod也能找到，这里不会发生
+        }
+        return interfaceMethod.getAnnotation(GPMemoized.class);
+    }
+
+    /**
+     * 获取代理对象上某个方法的缓存，不是代理或方法没有缓存时返回null
+     */
+    public static GPMemoizer getMemoizer(Object proxy, Method method) {
+        if (!Proxy.isProxyClass(proxy.getClass())) {
+            return null;
+        }
+        InvocationHandler handler = Proxy.getInvocationHandler(proxy);
+        return handler instanceof GPMemoizingProxy ? ((GPMemoizingProxy) handler).memoizers.get(method) : null;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        GPMemoizer memoizer = memoizers.get(method);
+        if (memoizer == null) {
+            return invokeTarget(method, args);
+        }
+        GPCacheKey key = new GPCacheKey(method.getName(), args == null ? NO_ARGS : args.clone());
+        return memoizer.get(key, () -> {
+            try {
+                return invokeTarget(method, args);
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new InvocationTargetException(e);
+            }
+        });
+    }
+
+    private Object invokeTarget(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
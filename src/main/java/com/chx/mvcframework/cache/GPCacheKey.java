@@ -0,0 +1,50 @@
+package com.chx.mvcframework.cache;
+
+import java.util.Arrays;
+
+/**
+ * 缓存键：名称（如请求路径）加参数值，数组参数按内容比较
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public final class GPCacheKey {
+
+    private final String name;
+
+    private final Object[] args;
+
+    private final int hash;
+
+    public GPCacheKey(String name, Object[] args) {
+        this.name = name;
+        this.args = args;
+        this.hash = 31 * name.hashCode() + Arrays.deepHashCode(args);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GPCacheKey)) {
+            return false;
+        }
+        GPCacheKey other = (GPCacheKey) o;
+        return hash == other.hash && name.equals(other.name) && Arrays.deepEquals(args, other.args);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return name + Arrays.deepToString(args);
+    }
+}
@@ -0,0 +1,300 @@
+package com.chx.mvcframework.cache;
+
+import com.chx.mvcframework.compress.GPCompressor;
+import com.chx.mvcframework.etag.GPETags;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 渲染后的响应缓存，按占用的字节数限制大小
+ *
+ * 查找只读ConcurrentHashMap，命中时只在第一次访问后设置一次引用标记，不加锁也不移动链表节点；
+ * 淘汰使用CLOCK算法（近似LRU）：条目按插入顺序排在无锁队列中，
+ * 超出容量时从队头取出，最近被访问过的清除标记后放回队尾，没有被访问过的淘汰
+ * 过期的条目在查找或淘汰时删除
+ *
+ * 计数器使用LongAdder，高并发下不会集中竞争同一个变量
+ *
+ * 条目还可以保存按编码压缩后的内容，第一次需要时压缩一次，之后命中时直接写出；压缩结果计入占用的字节数
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class GPResponseCache {
+
+    /**
+     * 每个条目除响应内容外的估算开销（字节）
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final long maxBytes;
+
+    private final Map<GPCacheKey, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * CLOCK队列，可能包含已经被替换或删除的条目，取出时跳过
+     */
+    private final Queue<Entry> clock = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicLong weightedSize = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * @param maxBytes 所有条目占用的字节数上限
+     */
+    public GPResponseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return 没有缓存或已过期时返回null
+     */
+    public Entry get(GPCacheKey key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            if (remove(entry)) {
+                expirations.increment();
+            }
+            misses.increment();
+            return null;
+        }
+        // 已经标记过就不再写，避免多个线程反复写同一个缓存行
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        hits.increment();
+        return entry;
+    }
+
+    /**
+     * 放入缓存，超过容量时淘汰最近没有被访问的条目
+     * @param ttl 有效期（毫秒）
+     * @return 新的条目，超过容量上限不缓存时返回null
+     */
+    public Entry put(GPCacheKey key, String contentType, byte[] body, long ttl) {
+        int weight = body.length + key.getName().length() * 2 + ENTRY_OVERHEAD;
+        if (weight > maxBytes) {
+            return null;
+        }
+        Entry entry = new Entry(key, contentType, body, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttl), weight);
+        Entry old = entries.put(key, entry);
+        if (old != null) {
+            weightedSize.addAndGet(-old.release());
+        }
+        weightedSize.addAndGet(weight);
+        clock.offer(entry);
+        // 被替换的旧条目留在队列中，数量过多时清理一次
+        if (queued.incrementAndGet() > entries.size() * 2 + 64) {
+            purge();
+        }
+        evict();
+        return entry;
+    }
+
+    public void clear() {
+        for (Entry entry : entries.values()) {
+            remove(entry);
+        }
+    }
+
+    private void evict() {
+        // 最多扫描两轮：第一轮清除引用标记，第二轮淘汰
+        int budget = queued.get() * 2 + 1;
+        while (weightedSize.get() > maxBytes && budget-- > 0) {
+            Entry entry = clock.poll();
+            if (entry == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            if (entries.get(entry.key) != entry) {
+                continue;
+            }
+            if (entry.isExpired(System.nanoTime())) {
+                if (remove(entry)) {
+                    expirations.increment();
+                }
+            } else if (entry.referenced) {
+                entry.referenced = false;
+                clock.offer(entry);
+                queued.incrementAndGet();
+            } else if (remove(entry)) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private void purge() {
+        int removed = 0;
+        for (Iterator<Entry> it = clock.iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (entries.get(entry.key) != entry) {
+                it.remove();
+                removed++;
+            }
+        }
+        queued.addAndGet(-removed);
+    }
+
+    private boolean remove(Entry entry) {
+        if (entries.remove(entry.key, entry)) {
+            weightedSize.addAndGet(-entry.release());
+            return true;
+        }
+        return false;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getWeightedSize() {
+        return weightedSize.get();
+    }
+
+    @Override
+    public String toString() {
+        return "GPResponseCache{size=" + size() + ", bytes=" + getWeightedSize() + "/" + maxBytes
+                + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount() + ", expirations=" + getExpirationCount() + "}";
+    }
+
+    /**
+     * 一条缓存的响应
+     */
+    public final class Entry {
+        private final GPCacheKey key;
+        private final String contentType;
+        private final byte[] body;
+        /**
+         * System.nanoTime()表示的过期时间
+         */
+        private final long expiresAt;
+        /**
+         * 包括压缩结果在内占用的字节数，由this保护
+         */
+        private int weight;
+        /**
+         * 已经从缓存中删除或被替换，之后的压缩结果不再计入，由this保护
+         */
+        private boolean released;
+        /**
+         * CLOCK引用标记
+         */
+        private volatile boolean referenced;
+        /**
+         * 第一次用到时计算，并发计算的结果相同
+         */
+        private String etag;
+        /**
+         * 按编码缓存的压缩结果，目前只有gzip和deflate两种编码
+         */
+        private volatile byte[] gzip;
+        private volatile byte[] deflate;
+
+        Entry(GPCacheKey key, String contentType, byte[] body, long expiresAt, int weight) {
+            this.key = key;
+            this.contentType = contentType;
+            this.body = body;
+            this.expiresAt = expiresAt;
+            this.weight = weight;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * @return 响应内容的ETag，命中缓存时不必每次重新计算
+         */
+        public String getETag() {
+            String value = etag;
+            if (value == null) {
+                value = GPETags.compute(body, 0, body.length);
+                etag = value;
+            }
+            return value;
+        }
+
+        /**
+         * @return 按encoding压缩后的内容，还没有压缩过时返回null
+         */
+        public byte[] getEncoded(String encoding) {
+            return GPCompressor.GZIP.equals(encoding) ? gzip : GPCompressor.DEFLATE.equals(encoding) ? deflate : null;
+        }
+
+        /**
+         * 保存压缩后的内容并计入缓存大小，并发压缩时只保留第一个结果
+         */
+        public void putEncoded(String encoding, byte[] encoded) {
+            synchronized (this) {
+                if (released || getEncoded(encoding) != null) {
+                    return;
+                }
+                if (GPCompressor.GZIP.equals(encoding)) {
+                    gzip = encoded;
+                } else if (GPCompressor.DEFLATE.equals(encoding)) {
+                    deflate = encoded;
+                } else {
+                    return;
+                }
+                weight += encoded.length;
+            }
+            weightedSize.addAndGet(encoded.length);
+            evict();
+        }
+
+        /**
+         * 条目离开缓存时调用一次
+         * @return 应从缓存大小中减去的字节数
+         */
+        synchronized int release() {
+            released = true;
+            return weight;
+        }
+    }
+}
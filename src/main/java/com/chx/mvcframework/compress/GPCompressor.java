@@ -0,0 +1,146 @@
+package com.chx.mvcframework.compress;
+
+import com.chx.mvcframework.json.GPJsonWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * 响应压缩：按Accept-Encoding选择gzip或deflate，只压缩允许的内容类型和达到大小下限的响应
+ *
+ * 配置项：
+ * compression 是否开启，默认true
+ * compressionLevel 压缩级别1～9，默认1；动态内容每次都要压缩，高级别多花的CPU换来的字节不多
+ * compressionMinSize 小于此字节数的响应不压缩，压缩头尾和Deflater的开销抵不上节省的字节
+ * compressionTypes 允许压缩的内容类型前缀，逗号分隔
+ * compressionPoolSize 每种格式池中保留的Deflater个数
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class GPCompressor {
+
+    public static final String GZIP = "gzip";
+
+    public static final String DEFLATE = "deflate";
+
+    private final GPDeflaterPool gzipPool;
+
+    private final GPDeflaterPool deflatePool;
+
+    private final int minSize;
+
+    private final String[] types;
+
+    public GPCompressor(int level, int poolSize, int minSize, String[] types) {
+        this.gzipPool = new GPDeflaterPool(level, true, poolSize);
+        this.deflatePool = new GPDeflaterPool(level, false, poolSize);
+        this.minSize = minSize;
+        this.types = types;
+    }
+
+    /**
+     * @return compression=false时返回null
+     */
+    public static GPCompressor create(Properties config) {
+        if (!Boolean.parseBoolean(config.getProperty("compression", "true"))) {
+            return null;
+        }
+        List<String> types = new ArrayList<>();
+        for (String type : config.getProperty("compressionTypes", "application/json,text/").split(",")) {
+            type = type.trim().toLowerCase(Locale.ROOT);
+            if (!type.isEmpty()) {
+                types.add(type);
+            }
+        }
+        return new GPCompressor(
+                Integer.parseInt(config.getProperty("compressionLevel", "1").trim()),
+                Integer.parseInt(config.getProperty("compressionPoolSize", "16").trim()),
+                Integer.parseInt(config.getProperty("compressionMinSize", "1024").trim()),
+                types.toArray(new String[0]));
+    }
+
+    /**
+     * 响应是否值得压缩，与请求无关；值得压缩的响应需要加上Vary: Accept-Encoding
+     * @param length 未压缩的字节数，未知时为Integer.MAX_VALUE
+     */
+    public boolean isCompressible(String contentType, int length) {
+        if (length < minSize || contentType == null) {
+            return false;
+        }
+        for (String type : types) {
+            if (contentType.regionMatches(true, 0, type, 0, type.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析Accept-Encoding，q值相同时优先gzip，q=0表示不接受，*匹配没有列出的格式
+     * @return GZIP、DEFLATE，都不接受时返回null
+     */
+    public static String selectEncoding(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return null;
+        }
+        float gzip = -1;
+        float deflate = -1;
+        float any = -1;
+        for (String part : acceptEncoding.split(",")) {
+            int semicolon = part.indexOf(';');
+            String coding = (semicolon < 0 ? part : part.substring(0, semicolon)).trim();
+            float q = semicolon < 0 ? 1 : parseQuality(part.substring(semicolon + 1));
+            if (GZIP.equalsIgnoreCase(coding) || "x-gzip".equalsIgnoreCase(coding)) {
+                gzip = Math.max(gzip, q);
+            } else if (DEFLATE.equalsIgnoreCase(coding)) {
+                deflate = Math.max(deflate, q);
+            } else if ("*".equals(coding)) {
+                any = q;
+            }
+        }
+        if (gzip < 0) {
+            gzip = any;
+        }
+        if (deflate < 0) {
+            deflate = any;
+        }
+        if (gzip <= 0 && deflate <= 0) {
+            return null;
+        }
+        return gzip >= deflate ? GZIP : DEFLATE;
+    }
+
+    private static float parseQuality(String params) {
+        for (String param : params.split(";")) {
+            param = param.trim();
+            if (param.startsWith("q=") || param.startsWith("Q=")) {
+                try {
+                    return Float.parseFloat(param.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * @param encoding selectEncoding的返回值
+     * @param buffer 压缩结果的缓冲区
+     * @param target 缓冲区写满时调用
+     */
+    public GPDeflaterOutputStream open(String encoding, byte[] buffer, GPJsonWriter.Target target) {
+        return new GPDeflaterOutputStream(GZIP.equals(encoding) ? gzipPool : deflatePool, buffer, target);
+    }
+
+    /**
+     * 释放池中Deflater的本地内存，停止时调用
+     */
+    public void destroy() {
+        gzipPool.clear();
+        deflatePool.clear();
+    }
+}
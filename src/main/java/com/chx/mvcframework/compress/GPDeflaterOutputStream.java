@@ -0,0 +1,162 @@
+package com.chx.mvcframework.compress;
+
+import com.chx.mvcframework.json.GPJsonWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 使用池中Deflater的压缩输出流，输出gzip或zlib格式
+ *
+ * 与GPJsonWriter相同，压缩结果先写入调用方提供的缓冲区，写满时才打开真正的输出流；
+ * finish()后没有写满时可以由调用方设置Content-Length一次写出
+ * JDK的GZIPOutputStream每次创建自己的Deflater，所以这里自己写gzip头尾
+ *
+ * finish()或close()后Deflater归还到池中，同一个流不能再写入
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class GPDeflaterOutputStream extends OutputStream {
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private static final int GZIP_TRAILER_SIZE = 8;
+
+    private final GPDeflaterPool pool;
+
+    private final byte[] buffer;
+
+    private final GPJsonWriter.Target target;
+
+    /**
+     * gzip格式时计算未压缩内容的CRC32，zlib格式时为null
+     */
+    private final CRC32 crc;
+
+    private Deflater deflater;
+
+    private OutputStream out;
+
+    private int count;
+
+    /**
+     * @param buffer 压缩结果的缓冲区，长度不能小于16
+     * @param target 缓冲区写满时调用
+     */
+    public GPDeflaterOutputStream(GPDeflaterPool pool, byte[] buffer, GPJsonWriter.Target target) {
+        if (buffer.length < 16) {
+            throw new IllegalArgumentException("Buffer too small: " + buffer.length);
+        }
+        this.pool = pool;
+        this.buffer = buffer;
+        this.target = target;
+        this.deflater = pool.acquire();
+        if (pool.isNowrap()) {
+            crc = new CRC32();
+            System.arraycopy(GZIP_HEADER, 0, buffer, 0, GZIP_HEADER.length);
+            count = GZIP_HEADER.length;
+        } else {
+            crc = null;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (deflater == null) {
+            throw new IOException("Stream finished");
+        }
+        if (len == 0) {
+            return;
+        }
+        if (crc != null) {
+            crc.update(b, off, len);
+        }
+        deflater.setInput(b, off, len);
+        // Deflater持有输入数组的引用，返回前必须全部消费
+        while (!deflater.needsInput()) {
+            deflate();
+        }
+    }
+
+    /**
+     * 写出剩余的压缩数据和gzip尾部，归还Deflater；不关闭输出流
+     */
+    public void finish() throws IOException {
+        if (deflater == null) {
+            return;
+        }
+        try {
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflate();
+            }
+            if (crc != null) {
+                if (buffer.length - count < GZIP_TRAILER_SIZE) {
+                    flushBuffer();
+                }
+                writeIntLE((int) crc.getValue());
+                writeIntLE((int) deflater.getBytesRead());
+            }
+            if (out != null && count > 0) {
+                flushBuffer();
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * 归还Deflater，没有finish()时已写入的内容作废
+     */
+    @Override
+    public void close() {
+        if (deflater != null) {
+            pool.release(deflater);
+            deflater = null;
+        }
+    }
+
+    /**
+     * @return 缓冲区曾经写满，内容已经部分写入输出流
+     */
+    public boolean isStreaming() {
+        return out != null;
+    }
+
+    /**
+     * @return 缓冲区中尚未刷出的字节数，没有写满过时即压缩后的全部内容
+     */
+    public int size() {
+        return count;
+    }
+
+    private void deflate() throws IOException {
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+        count += deflater.deflate(buffer, count, buffer.length - count);
+    }
+
+    private void writeIntLE(int value) {
+        buffer[count++] = (byte) value;
+        buffer[count++] = (byte) (value >>> 8);
+        buffer[count++] = (byte) (value >>> 16);
+        buffer[count++] = (byte) (value >>> 24);
+    }
+
+    private void flushBuffer() throws IOException {
+        if (out == null) {
+            out = target.open();
+        }
+        out.write(buffer, 0, count);
+        count = 0;
+    }
+}
@@ -0,0 +1,64 @@
+package com.chx.mvcframework.compress;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Deflater池，每个Deflater持有约几百KB的本地内存，不能每个请求创建一个
+ * 池空时临时创建；归还时reset后放回，池满时调用end()立即释放本地内存，不依赖finalize
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class GPDeflaterPool {
+
+    private final int level;
+
+    private final boolean nowrap;
+
+    private final ArrayBlockingQueue<Deflater> deflaters;
+
+    /**
+     * @param level 压缩级别，1～9
+     * @param nowrap true为不带zlib头尾的原始deflate数据（用于gzip），false为zlib格式（Content-Encoding: deflate）
+     * @param capacity 池中最多保留的Deflater个数
+     */
+    public GPDeflaterPool(int level, boolean nowrap, int capacity) {
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        this.level = level;
+        this.nowrap = nowrap;
+        this.deflaters = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    }
+
+    public Deflater acquire() {
+        Deflater deflater = deflaters.poll();
+        return deflater != null ? deflater : new Deflater(level, nowrap);
+    }
+
+    public void release(Deflater deflater) {
+        deflater.reset();
+        if (!deflaters.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 释放池中所有Deflater的本地内存
+     */
+    public void clear() {
+        Deflater deflater;
+        while ((deflater = deflaters.poll()) != null) {
+            deflater.end();
+        }
+    }
+
+    public boolean isNowrap() {
+        return nowrap;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+}
@@ -0,0 +1,409 @@
+package com.chx.mvcframework.context;
+
+import com.chx.mvcframework.aop.GPMemoizingProxy;
+import com.chx.mvcframework.index.GPComponentIndex;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * IOC容器，从GPDispatcherServlet中拆分出来，不依赖Servlet
+ *
+ * 根据构造器参数建立bean之间的依赖图，按拓扑顺序分批（wave）初始化：
+ * 同一批的bean互不依赖，在线程池中并行创建，下一批在上一批全部完成后开始；
+ * 构造器依赖出现环时启动失败。GPAutowired字段在所有非延迟bean创建完成后注入，字段之间允许循环引用。
+ * 加了GPLazy注解的bean不参与启动时的初始化，第一次getBean或被依赖时才创建；
+ * 初始化期间作为构造器参数被创建的延迟bean也等所有批次完成后才注入字段，避免提前创建后面批次中的bean
+ * 有GPMemoized方法的GPService bean对外暴露为接口代理，字段注入仍然作用于原对象
+ *
+ * 配置项initThreads为并行初始化的线程数，默认为CPU核数
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class GPApplicationContext {
+
+    /**
+     * beanName与定义的对应关系，按注册顺序保存
+     */
+    private final Map<String, GPComponentIndex.BeanDefinition> definitions = new LinkedHashMap<>();
+
+    /**
+     * 类名、接口名与beanName的对应关系，用于按类型注入
+     */
+    private final Map<String, String> aliases = new HashMap<>();
+
+    /**
+     * 每个类的GPAutowired字段
+     */
+    private final Map<String, List<GPComponentIndex.InjectionPoint>> injections = new HashMap<>();
+
+    /**
+     * 已经完成初始化的bean
+     */
+    private final Map<String, Object> singletons = new ConcurrentHashMap<>();
+
+    /**
+     * 被代理的bean的原对象，用于字段注入
+     */
+    private final Map<String, Object> targets = new ConcurrentHashMap<>();
+
+    /**
+     * 正在注入字段的延迟bean，只有持有creationLock的线程能看到
+     */
+    private final Map<String, Object> earlySingletons = new HashMap<>();
+
+    /**
+     * 延迟bean的创建锁，统一一把锁避免字段循环引用时两个线程互相等待
+     */
+    private final Object creationLock = new Object();
+
+    /**
+     * 分批初始化期间创建的延迟bean，字段在所有批次完成后注入，由creationLock保护
+     */
+    private final List<String> deferredInjections = new ArrayList<>();
+
+    /**
+     * 分批初始化是否正在进行，由creationLock保护
+     */
+    private boolean creatingWaves;
+
+    private final ClassLoader classLoader;
+
+    private final int initThreads;
+
+    public GPApplicationContext(GPComponentIndex index, Properties config) {
+        this.classLoader = GPApplicationContext.class.getClassLoader();
+        this.initThreads = Integer.parseInt(config.getProperty("initThreads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        for (GPComponentIndex.BeanDefinition bean : index.getBeans()) {
+            if (definitions.putIfAbsent(bean.getBeanName(), bean) != null) {
+                throw new IllegalStateException("The bean " + bean.getBeanName() + " is exist!");
+            }
+            aliases.put(bean.getClassName(), bean.getBeanName());
+        }
+        for (GPComponentIndex.BeanDefinition bean : index.getBeans()) {
+            // 根据类型自动赋值（投机取巧的方式）
+            for (String anInterface : bean.getInterfaces()) {
+                if (aliases.containsKey(anInterface)) {
+                    // 接口有多个实现
+                    throw new IllegalStateException("The " + anInterface + " is exist!");
+                }
+                aliases.put(anInterface, bean.getBeanName());
+            }
+        }
+        for (GPComponentIndex.InjectionPoint injection : index.getInjections()) {
+            injections.computeIfAbsent(injection.getClassName(), k -> new ArrayList<>()).add(injection);
+        }
+    }
+
+    /**
+     * 按依赖关系分批并行创建所有非延迟bean，然后注入字段
+     */
+    public void refresh() {
+        List<List<String>> waves = sortWaves();
+        synchronized (creationLock) {
+            creatingWaves = true;
+        }
+        AtomicInteger count = new AtomicInteger();
+        ExecutorService pool = initThreads > 1 ? Executors.newFixedThreadPool(initThreads, r -> {
+            Thread thread = new Thread(r, "gp-init-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        try {
+            for (List<String> wave : waves) {
+                List<Callable<Object>> tasks = new ArrayList<>();
+                for (String beanName : wave) {
+                    GPComponentIndex.BeanDefinition bean = definitions.get(beanName);
+                    if (!bean.isLazy()) {
+                        tasks.add(() -> createEagerBean(bean));
+                    }
+                }
+                runWave(pool, tasks);
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+
+        List<String> deferred;
+        synchronized (creationLock) {
+            creatingWaves = false;
+            deferred = new ArrayList<>(deferredInjections);
+            deferredInjections.clear();
+        }
+        for (GPComponentIndex.BeanDefinition bean : definitions.values()) {
+            if (!bean.isLazy() || deferred.contains(bean.getBeanName())) {
+                autowireFields(bean, targets.getOrDefault(bean.getBeanName(), singletons.get(bean.getBeanName())));
+            }
+        }
+    }
+
+    /**
+     * 批次中的任务：构造器在锁外执行，同一批的bean可以并行创建；
+     * 登记时与createBean一样先检查，已经存在的实例不覆盖
+     */
+    private Object createEagerBean(GPComponentIndex.BeanDefinition bean) {
+        Object instance = singletons.get(bean.getBeanName());
+        if (instance != null) {
+            return instance;
+        }
+        Object target = instantiate(bean);
+        synchronized (creationLock) {
+            instance = singletons.get(bean.getBeanName());
+            if (instance == null) {
+                instance = expose(bean, target);
+                singletons.put(bean.getBeanName(), instance);
+            }
+            return instance;
+        }
+    }
+
+    private void runWave(ExecutorService pool, List<Callable<Object>> tasks) {
+        try {
+            // 只有一个bean时直接在当前线程创建
+            if (pool == null || tasks.size() < 2) {
+                for (Callable<Object> task : tasks) {
+                    task.call();
+                }
+                return;
+            }
+            for (Future<Object> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Bean initialization interrupted", e);
+        } catch (ExecutionException e) {
+            throw asUnchecked(e.getCause());
+        } catch (Exception e) {
+            throw asUnchecked(e);
+        }
+    }
+
+    private static RuntimeException asUnchecked(Throwable e) {
+        return e instanceof RuntimeException ? (RuntimeException) e : new IllegalStateException(e);
+    }
+
+    /**
+     * Kahn算法按构造器依赖分层，每一层只依赖前面的层；延迟bean也参与排序，用于检查循环依赖
+     */
+    private List<List<String>> sortWaves() {
+        Map<String, Integer> inDegree = new LinkedHashMap<>();
+        Map<String, List<String>> dependents = new HashMap<>();
+        for (GPComponentIndex.BeanDefinition bean : definitions.values()) {
+            inDegree.put(bean.getBeanName(), 0);
+        }
+        for (GPComponentIndex.BeanDefinition bean : definitions.values()) {
+            for (String type : bean.getConstructorArguments()) {
+                String dependency = requireBeanName(type, bean);
+                dependents.computeIfAbsent(dependency, k -> new ArrayList<>()).add(bean.getBeanName());
+                inDegree.merge(bean.getBeanName(), 1, Integer::sum);
+            }
+        }
+
+        List<List<String>> waves = new ArrayList<>();
+        List<String> wave = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : inDegree.entrySet()) {
+            if (entry.getValue() == 0) {
+                wave.add(entry.getKey());
+            }
+        }
+        int sorted = 0;
+        while (!wave.isEmpty()) {
+            waves.add(wave);
+            sorted += wave.size();
+            List<String> next = new ArrayList<>();
+            for (String beanName : wave) {
+                for (String dependent : dependents.getOrDefault(beanName, Collections.<String>emptyList())) {
+                    if (inDegree.merge(dependent, -1, Integer::sum) == 0) {
+                        next.add(dependent);
+                    }
+                }
+            }
+            wave = next;
+        }
+        if (sorted < definitions.size()) {
+            List<String> cycle = new ArrayList<>();
+            for (Map.Entry<String, Integer> entry : inDegree.entrySet()) {
+                if (entry.getValue() > 0) {
+                    cycle.add(entry.getKey());
+                }
+            }
+            throw new IllegalStateException("Circular constructor dependency between beans " + cycle);
+        }
+        return waves;
+    }
+
+    private String requireBeanName(String type, GPComponentIndex.BeanDefinition bean) {
+        String beanName = aliases.get(type);
+        if (beanName == null) {
+            throw new IllegalStateException("No bean of type " + type + " for constructor of " + bean.getClassName());
+        }
+        return beanName;
+    }
+
+    /**
+     * 按beanName、类名或接口名获取bean，延迟bean在这里创建
+     * @return 没有定义时返回null
+     */
+    public Object getBean(String name) {
+        Object instance = singletons.get(name);
+        if (instance != null) {
+            return instance;
+        }
+        String beanName = definitions.containsKey(name) ? name : aliases.get(name);
+        if (beanName == null) {
+            return null;
+        }
+        instance = singletons.get(beanName);
+        return instance != null ? instance : createBean(definitions.get(beanName));
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T getBean(Class<T> type) {
+        return (T) getBean(type.getName());
+    }
+
+    /**
+     * 获取所有类型匹配的bean，会创建匹配的延迟bean
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> getBeansOfType(Class<T> type) {
+        List<T> beans = new ArrayList<>();
+        for (GPComponentIndex.BeanDefinition bean : definitions.values()) {
+            if (type.isAssignableFrom(loadClass(bean.getClassName()))) {
+                beans.add((T) getBean(bean.getBeanName()));
+            }
+        }
+        return beans;
+    }
+
+    public List<GPComponentIndex.BeanDefinition> getBeanDefinitions() {
+        return new ArrayList<>(definitions.values());
+    }
+
+    private Object createBean(GPComponentIndex.BeanDefinition bean) {
+        synchronized (creationLock) {
+            String beanName = bean.getBeanName();
+            Object instance = singletons.get(beanName);
+            if (instance == null) {
+                // 同一线程中字段循环引用时返回尚未注入完成的实例
+                instance = earlySingletons.get(beanName);
+            }
+            if (instance != null) {
+                return instance;
+            }
+            Object target = instantiate(bean);
+            instance = expose(bean, target);
+            if (creatingWaves) {
+                // 字段可能引用后面批次中还没有创建的bean，等所有批次完成后由refresh注入
+                singletons.put(beanName, instance);
+                deferredInjections.add(beanName);
+                return instance;
+            }
+            earlySingletons.put(beanName, instance);
+            try {
+                autowireFields(bean, target);
+            } finally {
+                earlySingletons.remove(beanName);
+            }
+            singletons.put(beanName, instance);
+            return instance;
+        }
+    }
+
+    /**
+     * 有GPMemoized方法的GPService返回接口代理，其他bean返回原对象
+     */
+    private Object expose(GPComponentIndex.BeanDefinition bean, Object target) {
+        if (!GPComponentIndex.SERVICE.equals(bean.getKind()) || !GPMemoizingProxy.isMemoized(target.getClass())) {
+            return target;
+        }
+        if (bean.getInterfaces().isEmpty()) {
+            throw new IllegalStateException("@GPMemoized bean " + bean.getBeanName() + " must implement an interface");
+        }
+        List<Class<?>> interfaces = new ArrayList<>();
+        for (String anInterface : bean.getInterfaces()) {
+            interfaces.add(loadClass(anInterface));
+        }
+        Object proxy = GPMemoizingProxy.wrap(target, interfaces);
+        if (proxy == null) {
+            return target;
+        }
+        targets.put(bean.getBeanName(), target);
+        return proxy;
+    }
+
+    /**
+     * 调用构造器创建实例，构造器参数按类型注入
+     */
+    private Object instantiate(GPComponentIndex.BeanDefinition bean) {
+        Class<?> clazz = loadClass(bean.getClassName());
+        List<String> argumentTypes = bean.getConstructorArguments();
+        Class<?>[] parameterTypes = new Class<?>[argumentTypes.size()];
+        Object[] args = new Object[argumentTypes.size()];
+        for (int i = 0; i < args.length; i++) {
+            parameterTypes[i] = loadClass(argumentTypes.get(i));
+            args[i] = getBean(requireBeanName(argumentTypes.get(i), bean));
+        }
+        try {
+            Constructor<?> constructor = clazz.getDeclaredConstructor(parameterTypes);
+            constructor.setAccessible(true);
+            return constructor.newInstance(args);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Can not create bean " + bean.getBeanName(), e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Can not create bean " + bean.getBeanName(), e);
+        }
+    }
+
+    private void autowireFields(GPComponentIndex.BeanDefinition bean, Object instance) {
+        for (GPComponentIndex.InjectionPoint injection : injections.getOrDefault(bean.getClassName(),
+                Collections.<GPComponentIndex.InjectionPoint>emptyList())) {
+            Object value = getBean(injection.getBeanName());
+            if (value == null) {
+                throw new IllegalStateException("No bean " + injection.getBeanName() + " for field "
+                        + bean.getClassName() + "." + injection.getFieldName());
+            }
+            try {
+                Field field = instance.getClass().getDeclaredField(injection.getFieldName());
+                if (!field.getType().isInstance(value)) {
+                    throw new IllegalStateException("Bean " + injection.getBeanName() + " is a proxy, inject "
+                            + bean.getClassName() + "." + injection.getFieldName() + " by interface");
+                }
+                field.setAccessible(true);
+                // 反射动态给字段赋值
+                field.set(instance, value);
+            } catch (NoSuchFieldException | IllegalAccessException e) {
+                throw new IllegalStateException("Can not inject " + bean.getClassName() + "."
+                        + injection.getFieldName(), e);
+            }
+        }
+    }
+
+    private Class<?> loadClass(String name) {
+        try {
+            return GPComponentIndex.resolveType(name, classLoader);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Can not load " + name, e);
+        }
+    }
+}
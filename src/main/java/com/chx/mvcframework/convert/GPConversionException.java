@@ -0,0 +1,21 @@
+package com.chx.mvcframework.convert;
+
+/**
+ * 参数缺失或格式错误，由GPDispatcher转换为400响应
+ * 错误来自请求而不是代码，不记录堆栈，错误请求很多时创建异常的开销与普通对象相同
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class GPConversionException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public GPConversionException(String message) {
+        super(message, null, false, false);
+    }
+
+    public GPConversionException(String message, Throwable cause) {
+        super(message, cause, false, false);
+    }
+}
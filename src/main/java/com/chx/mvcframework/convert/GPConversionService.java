@@ -0,0 +1,435 @@
+package com.chx.mvcframework.convert;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.text.ParsePosition;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 类型转换注册表，替代原来GPDispatcherServlet.convert中的if判断
+ * 每个方法参数在初始化时调用一次forParameter得到转换器，请求时不再查表
+ *
+ * 支持：String、基本类型及其包装类、BigDecimal、BigInteger、枚举、java.time常用类型，
+ * 以及上述类型的数组和List（多值参数，或者用逗号分隔的单个值）；
+ * char[]不是多值参数，与JSON输出一致按整个字符串转换，如密码参数
+ *
+ * 内置转换器先检查格式，格式错误时抛出不带堆栈的异常，错误请求不会创建JDK的NumberFormatException、DateTimeParseException
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class GPConversionService {
+
+    private static final Map<Class<?>, Class<?>> PRIMITIVES = new HashMap<>();
+
+    static {
+        PRIMITIVES.put(int.class, Integer.class);
+        PRIMITIVES.put(long.class, Long.class);
+        PRIMITIVES.put(short.class, Short.class);
+        PRIMITIVES.put(byte.class, Byte.class);
+        PRIMITIVES.put(double.class, Double.class);
+        PRIMITIVES.put(float.class, Float.class);
+        PRIMITIVES.put(boolean.class, Boolean.class);
+        PRIMITIVES.put(char.class, Character.class);
+    }
+
+    /**
+     * 与Duration.parse使用的格式相同
+     */
+    private static final Pattern DURATION = Pattern.compile("[-+]?P(?:[-+]?[0-9]+D)?"
+            + "(T(?:[-+]?[0-9]+H)?(?:[-+]?[0-9]+M)?(?:[-+]?[0-9]+(?:[.,][0-9]{0,9})?S)?)?", Pattern.CASE_INSENSITIVE);
+
+    private final Map<Class<?>, GPConverter<?>> converters = new ConcurrentHashMap<>();
+
+    public GPConversionService() {
+        register(String.class, value -> value);
+        register(Integer.class, value -> Integer.valueOf(integral(value)));
+        register(Long.class, value -> Long.valueOf(integral(value)));
+        register(Short.class, value -> Short.valueOf(integral(value)));
+        register(Byte.class, value -> Byte.valueOf(integral(value)));
+        register(Double.class, value -> Double.valueOf(decimal(value, true)));
+        register(Float.class, value -> Float.valueOf(decimal(value, true)));
+        register(Boolean.class, GPConversionService::parseBoolean);
+        register(Character.class, GPConversionService::parseChar);
+        register(char[].class, String::toCharArray);
+        register(BigDecimal.class, value -> new BigDecimal(decimal(value, false)));
+        register(BigInteger.class, value -> new BigInteger(integral(value)));
+        register(LocalDate.class, value -> LocalDate.parse(temporal(DateTimeFormatter.ISO_LOCAL_DATE, value)));
+        register(LocalDateTime.class,
+                value -> LocalDateTime.parse(temporal(DateTimeFormatter.ISO_LOCAL_DATE_TIME, value)));
+        register(LocalTime.class, value -> LocalTime.parse(temporal(DateTimeFormatter.ISO_LOCAL_TIME, value)));
+        register(OffsetDateTime.class,
+                value -> OffsetDateTime.parse(temporal(DateTimeFormatter.ISO_OFFSET_DATE_TIME, value)));
+        register(ZonedDateTime.class,
+                value -> ZonedDateTime.parse(temporal(DateTimeFormatter.ISO_ZONED_DATE_TIME, value)));
+        register(Instant.class, value -> Instant.parse(temporal(DateTimeFormatter.ISO_INSTANT, value)));
+        register(Duration.class, GPConversionService::parseDuration);
+    }
+
+    public <T> void register(Class<T> type, GPConverter<? extends T> converter) {
+        converters.put(type, converter);
+    }
+
+    /**
+     * 注册转换器，目标类型从实现类的GPConverter泛型参数中获取
+     */
+    @SuppressWarnings("unchecked")
+    public void register(GPConverter<?> converter) {
+        for (Class<?> clazz = converter.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+            for (Type type : clazz.getGenericInterfaces()) {
+                if (type instanceof ParameterizedType
+                        && ((ParameterizedType) type).getRawType() == GPConverter.class) {
+                    Type target = ((ParameterizedType) type).getActualTypeArguments()[0];
+                    if (target instanceof Class) {
+                        register((Class<Object>) target, (GPConverter<Object>) converter);
+                        return;
+                    }
+                }
+            }
+        }
+        throw new IllegalArgumentException("Can not resolve target type of " + converter.getClass().getName());
+    }
+
+    /**
+     * 获取单个值的转换器，枚举按需生成并缓存
+     * @return 不支持的类型返回null
+     */
+    public GPConverter<?> getConverter(Class<?> type) {
+        Class<?> boxed = PRIMITIVES.getOrDefault(type, type);
+        GPConverter<?> converter = converters.get(boxed);
+        if (converter == null && boxed.isEnum()) {
+            converter = converters.computeIfAbsent(boxed, GPConversionService::enumConverter);
+        }
+        return converter;
+    }
+
+    /**
+     * 按常量名查表，与Enum.valueOf相同区分大小写，不存在时不经过valueOf的IllegalArgumentException
+     */
+    private static GPConverter<?> enumConverter(Class<?> enumType) {
+        Map<String, Object> constants = new HashMap<>();
+        for (Object constant : enumType.getEnumConstants()) {
+            constants.put(((Enum<?>) constant).name(), constant);
+        }
+        return value -> {
+            Object constant = constants.get(value);
+            if (constant == null) {
+                throw new InvalidValueException("No constant " + value + " in " + enumType.getSimpleName());
+            }
+            return constant;
+        };
+    }
+
+    /**
+     * 为方法参数生成转换器
+     * @param type 参数类型
+     * @param genericType 参数的泛型类型，用于获取List的元素类型
+     * @param name 参数名，用于错误信息
+     */
+    public GPParameterConverter forParameter(Class<?> type, Type genericType, String name) {
+        // char[]使用上面注册的转换器，不按数组拆分
+        if (type.isArray() && type != char[].class) {
+            Class<?> componentType = type.getComponentType();
+            return new ArrayConverter(name, componentType, requireConverter(componentType, name));
+        }
+        if (type == List.class || type == Collection.class) {
+            Class<?> elementType = String.class;
+            if (genericType instanceof ParameterizedType) {
+                Type arg = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+                if (!(arg instanceof Class)) {
+                    throw new IllegalStateException("Unsupported element type " + arg + " of parameter " + name);
+                }
+                elementType = (Class<?>) arg;
+            }
+            return new ListConverter(name, requireConverter(elementType, name));
+        }
+        return new ScalarConverter(name, type, requireConverter(type, name));
+    }
+
+    private GPConverter<?> requireConverter(Class<?> type, String name) {
+        GPConverter<?> converter = getConverter(type);
+        if (converter == null) {
+            throw new IllegalStateException("No converter for type " + type.getName() + " of parameter " + name);
+        }
+        return converter;
+    }
+
+    /**
+     * 先检查是否是十进制整数，不是时抛出不带堆栈的异常，只有超出范围时才由valueOf抛出NumberFormatException
+     */
+    private static String integral(String value) {
+        int length = value.length();
+        int start = length > 1 && (value.charAt(0) == '-' || value.charAt(0) == '+') ? 1 : 0;
+        if (start == length) {
+            throw new InvalidValueException("Not a number: " + value);
+        }
+        for (int i = start; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new InvalidValueException("Not a number: " + value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 检查是否是十进制小数（可以有指数），special为true时还允许NaN和Infinity，与Double.valueOf相比不支持十六进制和类型后缀
+     */
+    private static String decimal(String value, boolean special) {
+        int length = value.length();
+        int i = length > 1 && (value.charAt(0) == '-' || value.charAt(0) == '+') ? 1 : 0;
+        if (special && (value.startsWith("NaN", i) || value.startsWith("Infinity", i))
+                && length - i == (value.charAt(i) == 'N' ? 3 : 8)) {
+            return value;
+        }
+        int digits = 0;
+        for (; i < length && value.charAt(i) >= '0' && value.charAt(i) <= '9'; i++) {
+            digits++;
+        }
+        if (i < length && value.charAt(i) == '.') {
+            for (i++; i < length && value.charAt(i) >= '0' && value.charAt(i) <= '9'; i++) {
+                digits++;
+            }
+        }
+        if (digits > 0 && i < length && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+                i++;
+            }
+            int exponent = i;
+            for (; i < length && value.charAt(i) >= '0' && value.charAt(i) <= '9'; i++) {
+            }
+            if (i == exponent) {
+                digits = 0;
+            }
+        }
+        if (digits == 0 || i != length) {
+            throw new InvalidValueException("Not a number: " + value);
+        }
+        return value;
+    }
+
+    /**
+     * 先用parseUnresolved检查格式和字段范围，这一步出错不会抛出异常；
+     * 只有格式正确但日期不存在（如2月30日）时才由parse抛出DateTimeParseException
+     */
+    private static String temporal(DateTimeFormatter formatter, String value) {
+        ParsePosition position = new ParsePosition(0);
+        TemporalAccessor parsed = formatter.parseUnresolved(value, position);
+        if (parsed == null || position.getErrorIndex() >= 0 || position.getIndex() != value.length()) {
+            throw new InvalidValueException("Not a valid date or time: " + value);
+        }
+        for (ChronoField field : ChronoField.values()) {
+            if (parsed.isSupported(field) && !field.range().isValidValue(parsed.getLong(field))) {
+                throw new InvalidValueException("Invalid " + field + ": " + value);
+            }
+        }
+        return value;
+    }
+
+    private static Duration parseDuration(String value) {
+        if (!DURATION.matcher(value).matches()) {
+            throw new InvalidValueException("Not a duration: " + value);
+        }
+        return Duration.parse(value);
+    }
+
+    private static Boolean parseBoolean(String value) {
+        switch (value.toLowerCase(Locale.ROOT)) {
+            case "true":
+            case "1":
+            case "on":
+            case "yes":
+                return Boolean.TRUE;
+            case "false":
+            case "0":
+            case "off":
+            case "no":
+                return Boolean.FALSE;
+            default:
+                throw new InvalidValueException("Not a boolean: " + value);
+        }
+    }
+
+    private static Character parseChar(String value) {
+        if (value.length() != 1) {
+            throw new InvalidValueException("Not a single character: " + value);
+        }
+        return value.charAt(0);
+    }
+
+    private static Object convertValue(GPConverter<?> converter, String value, String name) {
+        try {
+            return converter.convert(value);
+        } catch (GPConversionException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new GPConversionException("Invalid value for parameter " + name + ": " + value, e);
+        }
+    }
+
+    /**
+     * 按逗号拆分，不使用正则
+     */
+    private static List<String> split(String value) {
+        if (value.indexOf(',') < 0) {
+            return Collections.singletonList(value);
+        }
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        for (int i = value.indexOf(','); i >= 0; i = value.indexOf(',', start)) {
+            parts.add(value.substring(start, i));
+            start = i + 1;
+        }
+        parts.add(value.substring(start));
+        return parts;
+    }
+
+    /**
+     * 内置转换器的格式错误，来自请求而不是代码，不记录堆栈
+     */
+    private static final class InvalidValueException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        InvalidValueException(String message) {
+            super(message);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    private static class ScalarConverter implements GPParameterConverter {
+        private final String name;
+        private final boolean primitive;
+        private final boolean string;
+        private final GPConverter<?> converter;
+
+        ScalarConverter(String name, Class<?> type, GPConverter<?> converter) {
+            this.name = name;
+            this.primitive = type.isPrimitive();
+            this.string = type == String.class;
+            this.converter = converter;
+        }
+
+        @Override
+        public Object convert(String value) {
+            if (value == null || (value.isEmpty() && !string)) {
+                if (primitive) {
+                    throw new GPConversionException("Missing required parameter " + name);
+                }
+                return null;
+            }
+            return convertValue(converter, value, name);
+        }
+
+        @Override
+        public Object convert(String[] values) {
+            if (values == null || values.length == 0) {
+                return convert((String) null);
+            }
+            // 字符串的多个值用逗号拼接，其他类型取第一个
+            if (string && values.length > 1) {
+                return String.join(",", values);
+            }
+            return convert(values[0]);
+        }
+    }
+
+    private static class ArrayConverter implements GPParameterConverter {
+        private final String name;
+        private final Class<?> componentType;
+        private final GPConverter<?> converter;
+
+        ArrayConverter(String name, Class<?> componentType, GPConverter<?> converter) {
+            this.name = name;
+            this.componentType = componentType;
+            this.converter = converter;
+        }
+
+        @Override
+        public Object convert(String value) {
+            if (value == null) {
+                return null;
+            }
+            List<String> parts = split(value);
+            return convert(parts.toArray(new String[0]));
+        }
+
+        @Override
+        public Object convert(String[] values) {
+            if (values == null) {
+                return null;
+            }
+            if (values.length == 1 && values[0].indexOf(',') >= 0) {
+                return convert(values[0]);
+            }
+            Object array = Array.newInstance(componentType, values.length);
+            for (int i = 0; i < values.length; i++) {
+                Array.set(array, i, convertValue(converter, values[i], name));
+            }
+            return array;
+        }
+    }
+
+    private static class ListConverter implements GPParameterConverter {
+        private final String name;
+        private final GPConverter<?> converter;
+
+        ListConverter(String name, GPConverter<?> converter) {
+            this.name = name;
+            this.converter = converter;
+        }
+
+        @Override
+        public Object convert(String value) {
+            if (value == null) {
+                return null;
+            }
+            List<String> parts = split(value);
+            List<Object> list = new ArrayList<>(parts.size());
+            for (String part : parts) {
+                list.add(convertValue(converter, part, name));
+            }
+            return list;
+        }
+
+        @Override
+        public Object convert(String[] values) {
+            if (values == null) {
+                return null;
+            }
+            if (values.length == 1) {
+                return convert(values[0]);
+            }
+            List<Object> list = new ArrayList<>(values.length);
+            for (String value : values) {
+                list.add(convertValue(converter, value, name));
+            }
+            return list;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.chx.mvcframework.convert;
+
+/**
+ * 把请求中的字符串转换为目标类型
+ * 实现类加上@GPService注解即可被自动注册，目标类型从泛型参数中获取
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+@FunctionalInterface
+public interface GPConverter<T> {
+
+    /**
+     * @param value 非空字符串
+     * @return 转换后的值
+     * @throws RuntimeException 格式错误，由框架统一转换为400
+     */
+    T convert(String value);
+}
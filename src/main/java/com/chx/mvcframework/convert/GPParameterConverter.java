@@ -0,0 +1,22 @@
+package com.chx.mvcframework.convert;
+
+/**
+ * 某个方法参数的转换器，初始化时由GPConversionService按参数类型生成，请求时直接调用
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public interface GPParameterConverter {
+
+    /**
+     * 转换单个值，如路径变量
+     * @param value 可能为null
+     */
+    Object convert(String value);
+
+    /**
+     * 转换多值参数，如request.getParameterValues的结果
+     * @param values 可能为null
+     */
+    Object convert(String[] values);
+}
@@ -0,0 +1,111 @@
+package com.chx.mvcframework.dispatch;
+
+import com.chx.mvcframework.convert.GPParameterConverter;
+import com.chx.mvcframework.http.GPHttpRequest;
+import com.chx.mvcframework.http.GPHttpResponse;
+
+import java.io.IOException;
+
+/**
+ * 方法参数解析器，初始化时为Handler的每个形参生成一个，请求时按位置依次调用
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+interface ArgumentResolver {
+
+    /**
+     * 没有注解、也不是request/response的参数传null
+     */
+    ArgumentResolver NULL = (req, resp, url, captures) -> null;
+
+    ArgumentResolver REQUEST = (req, resp, url, captures) -> req;
+
+    ArgumentResolver RESPONSE = (req, resp, url, captures) -> resp;
+
+    /**
+     * @param req 请求
+     * @param resp 响应
+     * @param url 请求URI，路径变量按captures中的位置从中截取
+     * @param captures 路由查找时记录的模板变量位置
+     * @return 参数值
+     */
+    Object resolve(GPHttpRequest req, GPHttpResponse resp, String url, int[] captures) throws IOException;
+
+    /**
+     * GPRequestParam参数，多值参数直接从String[]转换
+     */
+    static RequestParam requestParam(String name, GPParameterConverter converter) {
+        return new RequestParam(name, converter);
+    }
+
+    /**
+     * 容器原生的请求对象（如HttpServletRequest），内嵌服务器中为null
+     */
+    static ArgumentResolver nativeRequest(Class<?> type) {
+        return new Native(type, true);
+    }
+
+    /**
+     * 容器原生的响应对象（如HttpServletResponse），内嵌服务器中为null
+     */
+    static ArgumentResolver nativeResponse(Class<?> type) {
+        return new Native(type, false);
+    }
+
+    /**
+     * 是否为request/response参数，这些参数不参与缓存键
+     */
+    static boolean isContainerObject(ArgumentResolver resolver) {
+        return resolver == REQUEST || resolver == RESPONSE || resolver instanceof Native;
+    }
+
+    final class Native implements ArgumentResolver {
+        private final Class<?> type;
+        private final boolean request;
+
+        private Native(Class<?> type, boolean request) {
+            this.type = type;
+            this.request = request;
+        }
+
+        @Override
+        public Object resolve(GPHttpRequest req, GPHttpResponse resp, String url, int[] captures) {
+            return request ? req.unwrap(type) : resp.unwrap(type);
+        }
+    }
+
+    /**
+     * 默认从getParameterValues取值；Handler使用QueryParameterBinder时按index从绑定结果中取值
+     */
+    final class RequestParam implements ArgumentResolver {
+        private final String name;
+        private final GPParameterConverter converter;
+        private int index = -1;
+
+        private RequestParam(String name, GPParameterConverter converter) {
+            this.name = name;
+            this.converter = converter;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        void setIndex(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public Object resolve(GPHttpRequest req, GPHttpResponse resp, String url, int[] captures) {
+            return converter.convert(req.getParameterValues(name));
+        }
+
+        /**
+         * @param bound QueryParameterBinder.bind的结果
+         */
+        Object convert(String[][] bound) {
+            return converter.convert(bound[index]);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.chx.mvcframework.dispatch;
+
+import com.chx.mvcframework.http.GPAsyncContext;
+import com.chx.mvcframework.http.GPHttpResponse;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 异步请求超时返回503
+ * 超时和处理完成只有一个能写响应，处理方写响应前需要先调用tryComplete抢占
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+class AsyncTimeout implements GPAsyncContext.Listener {
+
+    private final AtomicBoolean completed = new AtomicBoolean();
+
+    private final GPAsyncContext asyncContext;
+
+    private final GPHttpResponse resp;
+
+    private AsyncTimeout(GPAsyncContext asyncContext, GPHttpResponse resp) {
+        this.asyncContext = asyncContext;
+        this.resp = resp;
+    }
+
+    static AsyncTimeout register(GPAsyncContext asyncContext, GPHttpResponse resp, long timeout) {
+        AsyncTimeout listener = new AsyncTimeout(asyncContext, resp);
+        asyncContext.setTimeout(timeout, listener);
+        return listener;
+    }
+
+    /**
+     * @return true表示由调用方负责写响应并调用asyncContext.complete()
+     */
+    boolean tryComplete() {
+        return completed.compareAndSet(false, true);
+    }
+
+    @Override
+    public void onTimeout() {
+        if (tryComplete()) {
+            resp.setStatus(GPHttpResponse.SC_SERVICE_UNAVAILABLE);
+            asyncContext.complete();
+        }
+    }
+
+    @Override
+    public void onError() {
+        completed.set(true);
+    }
+}
@@ -0,0 +1,182 @@
+package com.chx.mvcframework.dispatch;
+
+import com.chx.mvcframework.http.GPAsyncContext;
+import com.chx.mvcframework.http.GPHttpRequest;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 批量请求中的一个子请求，只存在于内存中
+ *
+ * 路径和查询参数来自请求体中的一行，contextPath和转发的请求头在容器线程上从外层请求复制一次，
+ * 子请求在batchExecutor的线程上执行时不再访问外层请求；
+ * 不支持异步，异步Handler在子请求线程上等待结果；
+ * 没有对应的容器原生请求，Controller中HttpServletRequest类型的参数为null
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+class BatchRequest implements GPHttpRequest {
+
+    /**
+     * 转发给子请求的外层请求头，其余请求头在子请求中为null；
+     * 条件请求头、Range和Accept-Encoding属于外层请求，子请求总是返回未压缩的完整内容
+     */
+    private static final String[] FORWARDED_HEADERS = {
+            "Accept", "Accept-Language", "Authorization", "Cookie", "User-Agent"
+    };
+
+    private final Outer outer;
+
+    private final String requestUri;
+
+    private final String queryString;
+
+    private final Map<String, String[]> parameters;
+
+    /**
+     * @param outer 外层批量请求的快照
+     * @param line 子请求，如/demo/query?name=a，相对于contextPath
+     * @throws IllegalArgumentException 查询参数编码错误
+     */
+    BatchRequest(Outer outer, String line) {
+        this.outer = outer;
+        int question = line.indexOf('?');
+        this.requestUri = outer.contextPath + (question < 0 ? line : line.substring(0, question));
+        this.queryString = question < 0 ? null : line.substring(question + 1);
+        this.parameters = parseQuery(queryString);
+    }
+
+    private static Map<String, String[]> parseQuery(String query) {
+        if (query == null || query.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, String[]> parameters = new LinkedHashMap<>();
+        try {
+            for (String pair : query.split("&")) {
+                if (pair.isEmpty()) {
+                    continue;
+                }
+                int eq = pair.indexOf('=');
+                String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), "UTF-8");
+                String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+                String[] values = parameters.get(name);
+                if (values == null) {
+                    parameters.put(name, new String[]{value});
+                } else {
+                    String[] appended = new String[values.length + 1];
+                    System.arraycopy(values, 0, appended, 0, values.length);
+                    appended[values.length] = value;
+                    parameters.put(name, appended);
+                }
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return parameters;
+    }
+
+    @Override
+    public String getMethod() {
+        return "GET";
+    }
+
+    @Override
+    public String getRequestURI() {
+        return requestUri;
+    }
+
+    @Override
+    public String getContextPath() {
+        return outer.contextPath;
+    }
+
+    @Override
+    public String getQueryString() {
+        return queryString;
+    }
+
+    @Override
+    public String getParameter(String name) {
+        String[] values = parameters.get(name);
+        return values == null ? null : values[0];
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        return parameters.get(name);
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        return Collections.unmodifiableMap(parameters);
+    }
+
+    /**
+     * 子请求没有请求体
+     */
+    @Override
+    public String getFormBody() {
+        return "";
+    }
+
+    @Override
+    public String getHeader(String name) {
+        for (int i = 0; i < FORWARDED_HEADERS.length; i++) {
+            if (FORWARDED_HEADERS[i].equalsIgnoreCase(name)) {
+                return outer.headers[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 转发的请求头都不是日期类型
+     */
+    @Override
+    public long getDateHeader(String name) {
+        return -1;
+    }
+
+    @Override
+    public BufferedReader getReader() {
+        return new BufferedReader(new StringReader(""));
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+        return false;
+    }
+
+    @Override
+    public GPAsyncContext startAsync() {
+        throw new IllegalStateException("Batch sub-requests do not support async");
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> type) {
+        return type.isInstance(this) ? type.cast(this) : null;
+    }
+
+    /**
+     * 外层批量请求中子请求需要的部分，在容器线程上创建，同一批的子请求共用
+     */
+    static final class Outer {
+        final String contextPath;
+
+        private final String[] headers = new String[FORWARDED_HEADERS.length];
+
+        Outer(GPHttpRequest req) {
+            this.contextPath = req.getContextPath();
+            for (int i = 0; i < FORWARDED_HEADERS.length; i++) {
+                headers[i] = req.getHeader(FORWARDED_HEADERS[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.chx.mvcframework.dispatch;
+
+import com.chx.mvcframework.http.GPHttpResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 批量请求中一个子请求的响应，状态、内容类型和响应体都保存在内存中，
+ * 所有子请求完成（或超时）后由批量请求按顺序写出；不会写入外层响应
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+class BatchResponse implements GPHttpResponse {
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    private int status = SC_OK;
+
+    private String contentType;
+
+    /**
+     * @return 响应体
+     */
+    byte[] getBody() {
+        return body.toByteArray();
+    }
+
+    String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        headers.put(name, value);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        headers.merge(name, value, (a, b) -> a + ", " + b);
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        setHeader(name, String.valueOf(date));
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+        return headers.containsKey(name);
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    @Override
+    public void setContentType(String type) {
+        contentType = type;
+    }
+
+    @Override
+    public void setContentLength(long length) {
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return body;
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return false;
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> type) {
+        return type.isInstance(this) ? type.cast(this) : null;
+    }
+}
@@ -0,0 +1,115 @@
+package com.chx.mvcframework.dispatch;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 根据dispatchMode创建执行阻塞Handler的线程池
+ * <ul>
+ *     <li>sync：默认，在容器线程上执行，返回null</li>
+ *     <li>executor：有界的平台线程池，线程数dispatchThreads，队列长度dispatchQueueSize</li>
+ *     <li>virtual：JDK 21+每个任务一个虚拟线程，低版本JDK退化为executor</li>
+ * </ul>
+ * 以及批量请求使用的线程池
+ * 虚拟线程通过反射获取，项目仍然可以按1.8编译和运行
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+class DispatchExecutors {
+
+    static final String MODE_SYNC = "sync";
+
+    static final String MODE_EXECUTOR = "executor";
+
+    static final String MODE_VIRTUAL = "virtual";
+
+    private DispatchExecutors() {
+    }
+
+    static ExecutorService create(Properties config) {
+        String mode = config.getProperty("dispatchMode", MODE_SYNC);
+        if (MODE_SYNC.equals(mode)) {
+            return null;
+        }
+        if (MODE_VIRTUAL.equals(mode)) {
+            ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+            if (virtual != null) {
+                return virtual;
+            }
+        } else if (!MODE_EXECUTOR.equals(mode)) {
+            throw new IllegalArgumentException("Unknown dispatchMode: " + mode);
+        }
+        int threads = Integer.parseInt(config.getProperty("dispatchThreads", "200"));
+        int queueSize = Integer.parseInt(config.getProperty("dispatchQueueSize", "1000"));
+        // 队列满时抛出RejectedExecutionException，由调用方返回503
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), new DispatchThreadFactory("gp-dispatch-"));
+    }
+
+    /**
+     * 执行批量请求中子请求的有界线程池，线程数batchThreads，队列长度batchQueueSize
+     */
+    static ExecutorService createBatch(Properties config) {
+        int threads = Integer.parseInt(config.getProperty("batchThreads", "16"));
+        int queueSize = Integer.parseInt(config.getProperty("batchQueueSize", "256"));
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), new DispatchThreadFactory("gp-batch-"));
+    }
+
+    /**
+     * @return 实际使用的调度方式，virtual退化为executor时注明原因，由init输出在启动日志中
+     */
+    static String describe(Properties config, ExecutorService executor) {
+        if (executor == null) {
+            return MODE_SYNC;
+        }
+        if (MODE_VIRTUAL.equals(config.getProperty("dispatchMode")) && executor instanceof ThreadPoolExecutor) {
+            return MODE_EXECUTOR + " (virtual threads not available on Java " + System.getProperty("java.version") + ")";
+        }
+        return config.getProperty("dispatchMode");
+    }
+
+    /**
+     * @return 不支持虚拟线程时返回null：JDK 21之前没有这个方法，JDK 19、20未开启预览特性时调用抛出UnsupportedOperationException
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof UnsupportedOperationException) {
+                return null;
+            }
+            throw new IllegalStateException("Can not create virtual thread executor", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Can not create virtual thread executor", e);
+        }
+    }
+
+    private static class DispatchThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+        private final String prefix;
+
+        DispatchThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
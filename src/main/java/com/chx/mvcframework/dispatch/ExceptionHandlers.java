@@ -0,0 +1,250 @@
+package com.chx.mvcframework.dispatch;
+
+import com.chx.mvcframework.annotation.GPExceptionHandler;
+import com.chx.mvcframework.convert.GPConversionException;
+import com.chx.mvcframework.http.GPHttpRequest;
+import com.chx.mvcframework.http.GPHttpResponse;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Handler抛出异常时的处理
+ *
+ * 初始化时收集Controller中GPExceptionHandler注解的方法，按异常类型注册；
+ * 请求时沿异常的父类查找最近的处理方法，结果按异常的Class缓存，之后同类异常不再查找
+ *
+ * 没有处理方法时：GPConversionException返回400和错误信息，其他异常返回500；
+ * 同一种异常在errorLogInterval（毫秒）内只打印一次堆栈，其余只计数，下次打印时一并输出，
+ * 避免大量错误请求都在System.err上排队
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+final class ExceptionHandlers {
+
+    private static final int ARG_EXCEPTION = 0;
+
+    private static final int ARG_REQUEST = 1;
+
+    private static final int ARG_RESPONSE = 2;
+
+    private static final int ARG_NATIVE_REQUEST = 3;
+
+    private static final int ARG_NATIVE_RESPONSE = 4;
+
+    private final ResponseBodyWriter responseBodyWriter;
+
+    private final String invokerMode;
+
+    private final long logInterval;
+
+    private final Map<Class<?>, HandlerMethod> handlers = new HashMap<>();
+
+    /**
+     * 按异常的Class缓存查找结果，注册完成后才会使用
+     */
+    private final ClassValue<Entry> entries = new ClassValue<Entry>() {
+        @Override
+        protected Entry computeValue(Class<?> type) {
+            HandlerMethod handler = null;
+            for (Class<?> c = type; c != null && handler == null; c = c.getSuperclass()) {
+                handler = handlers.get(c);
+            }
+            return new Entry(type, handler);
+        }
+    };
+
+    ExceptionHandlers(ResponseBodyWriter responseBodyWriter, String invokerMode, long logInterval) {
+        this.responseBodyWriter = responseBodyWriter;
+        this.invokerMode = invokerMode;
+        this.logInterval = logInterval;
+    }
+
+    /**
+     * 注册bean中所有GPExceptionHandler方法
+     * @throws IllegalStateException 方法签名不正确，或者同一种异常有多个处理方法
+     */
+    void register(Object bean) {
+        for (Method method : bean.getClass().getMethods()) {
+            GPExceptionHandler annotation = method.getAnnotation(GPExceptionHandler.class);
+            if (annotation == null) {
+                continue;
+            }
+            HandlerMethod handler = new HandlerMethod(bean, method, annotation.status());
+            Class<?>[] types = annotation.value();
+            if (types.length == 0) {
+                types = handler.exceptionTypes();
+            }
+            if (types.length == 0) {
+                throw new IllegalStateException("No exception type declared for @GPExceptionHandler " + method);
+            }
+            for (Class<?> type : types) {
+                HandlerMethod existing = handlers.put(type, handler);
+                if (existing != null) {
+                    throw new IllegalStateException("Ambiguous @GPExceptionHandler for " + type.getName()
+                            + ": " + existing.method + " and " + method);
+                }
+            }
+            if (method.getReturnType() != void.class) {
+                responseBodyWriter.prepare(method.getReturnType());
+            }
+        }
+    }
+
+    /**
+     * 写出异常对应的响应，响应已经提交时只能记录日志
+     */
+    void handle(GPHttpRequest req, GPHttpResponse resp, Throwable e) throws IOException {
+        Entry entry = entries.get(e.getClass());
+        if (entry.handler != null && !resp.isCommitted()) {
+            try {
+                entry.handler.invoke(req, resp, e, responseBodyWriter);
+                return;
+            } catch (InvocationTargetException ex) {
+                log(ex.getCause());
+            } catch (IllegalAccessException ex) {
+                log(ex);
+            }
+            if (!resp.isCommitted()) {
+                ResponseBodyWriter.writeStatus(resp, GPHttpResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+            return;
+        }
+        if (e instanceof GPConversionException) {
+            // 参数错误是客户端的问题，响应使用固定内容，不回显请求中的值；细节只进限流日志
+            entry.log(e);
+            if (!resp.isCommitted()) {
+                ResponseBodyWriter.writeStatus(resp, GPHttpResponse.SC_BAD_REQUEST);
+            }
+            return;
+        }
+        entry.log(e);
+        if (!resp.isCommitted()) {
+            ResponseBodyWriter.writeStatus(resp, GPHttpResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * 只记录日志，按异常类型限流，用于无法交给handle写响应的异常
+     */
+    void log(Throwable e) {
+        entries.get(e.getClass()).log(e);
+    }
+
+    /**
+     * 一种异常类型的处理方法和日志限流状态
+     */
+    private final class Entry {
+        private final Class<?> type;
+        private final HandlerMethod handler;
+        private final AtomicLong nextLog = new AtomicLong();
+        private final AtomicLong suppressed = new AtomicLong();
+
+        Entry(Class<?> type, HandlerMethod handler) {
+            this.type = type;
+            this.handler = handler;
+        }
+
+        void log(Throwable e) {
+            long now = System.currentTimeMillis();
+            long next = nextLog.get();
+            if (now < next || !nextLog.compareAndSet(next, now + logInterval)) {
+                suppressed.incrementAndGet();
+                return;
+            }
+            long count = suppressed.getAndSet(0);
+            if (count > 0) {
+                System.err.println(count + " more " + type.getName() + " suppressed in the last " + logInterval + "ms");
+            }
+            e.printStackTrace();
+        }
+    }
+
+    private final class HandlerMethod {
+        private final Method method;
+        private final HandlerInvoker invoker;
+        private final int status;
+        private final int[] argKinds;
+        private final Class<?>[] argTypes;
+
+        HandlerMethod(Object bean, Method method, int status) {
+            this.method = method;
+            this.status = status;
+            this.argTypes = method.getParameterTypes();
+            this.argKinds = new int[argTypes.length];
+            for (int i = 0; i < argTypes.length; i++) {
+                Class<?> type = argTypes[i];
+                if (Throwable.class.isAssignableFrom(type)) {
+                    argKinds[i] = ARG_EXCEPTION;
+                } else if (type == GPHttpRequest.class) {
+                    argKinds[i] = ARG_REQUEST;
+                } else if (type == GPHttpResponse.class) {
+                    argKinds[i] = ARG_RESPONSE;
+                } else if (GPDispatcher.NATIVE_REQUEST_TYPES.contains(type.getName())) {
+                    argKinds[i] = ARG_NATIVE_REQUEST;
+                } else if (GPDispatcher.NATIVE_RESPONSE_TYPES.contains(type.getName())) {
+                    argKinds[i] = ARG_NATIVE_RESPONSE;
+                } else {
+                    throw new IllegalStateException("Unsupported parameter " + type.getName()
+                            + " of @GPExceptionHandler " + method);
+                }
+            }
+            try {
+                this.invoker = HandlerInvoker.create(bean, method, invokerMode);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Can not access " + method, e);
+            }
+        }
+
+        /**
+         * @return 方法参数中的异常类型
+         */
+        Class<?>[] exceptionTypes() {
+            int count = 0;
+            Class<?>[] types = new Class<?>[argTypes.length];
+            for (int i = 0; i < argTypes.length; i++) {
+                if (argKinds[i] == ARG_EXCEPTION) {
+                    types[count++] = argTypes[i];
+                }
+            }
+            Class<?>[] result = new Class<?>[count];
+            System.arraycopy(types, 0, result, 0, count);
+            return result;
+        }
+
+        void invoke(GPHttpRequest req, GPHttpResponse resp, Throwable e, ResponseBodyWriter writer)
+                throws IOException, InvocationTargetException, IllegalAccessException {
+            Object[] args = new Object[argKinds.length];
+            for (int i = 0; i < args.length; i++) {
+                switch (argKinds[i]) {
+                    case ARG_EXCEPTION:
+                        // 参数类型比实际异常更具体时（注解指定了多个类型）传null
+                        args[i] = argTypes[i].isInstance(e) ? e : null;
+                        break;
+                    case ARG_REQUEST:
+                        args[i] = req;
+                        break;
+                    case ARG_RESPONSE:
+                        args[i] = resp;
+                        break;
+                    case ARG_NATIVE_REQUEST:
+                        args[i] = req.unwrap(argTypes[i]);
+                        break;
+                    default:
+                        args[i] = resp.unwrap(argTypes[i]);
+                        break;
+                }
+            }
+            resp.setStatus(status);
+            Object result = invoker.invoke(args);
+            if (result != null) {
+                writer.write(req, resp, result);
+            }
+        }
+    }
+}
@@ -0,0 +1,1159 @@
+package com.chx.mvcframework.dispatch;
+
+import com.chx.mvcframework.annotation.GPCacheable;
+import com.chx.mvcframework.annotation.GPController;
+import com.chx.mvcframework.annotation.GPETag;
+import com.chx.mvcframework.annotation.GPPathVariable;
+import com.chx.mvcframework.annotation.GPRequestMapping;
+import com.chx.mvcframework.annotation.GPRequestParam;
+import com.chx.mvcframework.annotation.GPService;
+import com.chx.mvcframework.cache.GPCacheKey;
+import com.chx.mvcframework.cache.GPResponseCache;
+import com.chx.mvcframework.context.GPApplicationContext;
+import com.chx.mvcframework.convert.GPConversionException;
+import com.chx.mvcframework.convert.GPConversionService;
+import com.chx.mvcframework.convert.GPConverter;
+import com.chx.mvcframework.convert.GPParameterConverter;
+import com.chx.mvcframework.etag.GPETagProvider;
+import com.chx.mvcframework.etag.GPETags;
+import com.chx.mvcframework.http.GPAsyncContext;
+import com.chx.mvcframework.http.GPHttpRequest;
+import com.chx.mvcframework.http.GPHttpResponse;
+import com.chx.mvcframework.index.GPComponentIndex;
+import com.chx.mvcframework.index.GPStartupSnapshot;
+import com.chx.mvcframework.json.GPJsonSerializers;
+import com.chx.mvcframework.limit.GPAdaptiveLimit;
+import com.chx.mvcframework.limit.GPBulkhead;
+import com.chx.mvcframework.metrics.GPMetricsRegistry;
+import com.chx.mvcframework.metrics.GPRouteMetrics;
+import com.chx.mvcframework.router.GPRouter;
+import com.chx.mvcframework.router.PathTemplate;
+import com.chx.mvcframework.scan.GPClassScanner;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 与容器无关的请求处理：路由、参数绑定、调用Controller和写出响应
+ * 由servlet容器中的GPDispatcherServlet或内嵌的GPHttpServer创建，请求和响应通过GPHttpRequest/GPHttpResponse传入，
+ * 不引用servlet API，没有servlet jar时也可以运行
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class GPDispatcher {
+
+    /**
+     * 容器原生的请求和响应类型，Controller方法中这些类型的参数通过unwrap获取，按类名判断以免加载servlet API
+     */
+    static final Collection<String> NATIVE_REQUEST_TYPES = new HashSet<>(Arrays.asList(
+            "javax.servlet.ServletRequest", "javax.servlet.http.HttpServletRequest"));
+
+    static final Collection<String> NATIVE_RESPONSE_TYPES = new HashSet<>(Arrays.asList(
+            "javax.servlet.ServletResponse", "javax.servlet.http.HttpServletResponse"));
+
+    /**
+     * 保存配置文件application.properties的内容
+     * */
+    private Properties contextConfig = new Properties();
+
+    /**
+     * 配置文件的原始内容，计算启动快照的指纹
+     */
+    private byte[] configBytes = new byte[0];
+
+    /**
+     * 保存所有的类名
+     */
+    private List<String> classNames = new ArrayList<>();
+
+    /**
+     * ioc容器
+     */
+    private GPApplicationContext context;
+
+    /**
+     * 保存URL与method的对应关系，初始化时构建前缀树，查找与路由数量无关
+     */
+    private GPRouter<Handler> handleMapping = new GPRouter<>();
+
+    /**
+     * 参数类型转换，每个参数的转换器在初始化时确定
+     */
+    private GPConversionService conversionService = new GPConversionService();
+
+    /**
+     * 把返回值写入响应，初始化时创建
+     */
+    private ResponseBodyWriter responseBodyWriter;
+
+    /**
+     * 加了GPCacheable注解的方法渲染后的响应
+     */
+    private GPResponseCache responseCache;
+
+    /**
+     * 每个路由的请求数、失败数和各阶段延迟，metricsPath为空时为null
+     */
+    private GPMetricsRegistry metricsRegistry;
+
+    /**
+     * 输出统计数据的保留路径，对应配置metricsPath
+     */
+    private String metricsPath;
+
+    /**
+     * 被并发限制拒绝时Retry-After响应头的值（秒），对应配置retryAfter
+     */
+    private String retryAfter = "1";
+
+    /**
+     * 静态资源，在路由之前按路径前缀匹配，没有配置staticPath时为null
+     */
+    private StaticResourceHandler staticResources;
+
+    /**
+     * 批量请求的保留路径，对应配置batchPath，为空时为null
+     */
+    private String batchPath;
+
+    /**
+     * 执行批量请求中子请求的线程池，batchPath为空时为null
+     */
+    private ExecutorService batchExecutor;
+
+    /**
+     * 每个批量请求最多包含的子请求数，对应配置batchMaxItems
+     */
+    private int batchMaxItems = 50;
+
+    /**
+     * 整批的超时时间（毫秒），对应配置batchTimeout
+     */
+    private long batchTimeout = 5000;
+
+    /**
+     * 异步处理的超时时间（毫秒），对应配置asyncTimeout
+     */
+    private long asyncTimeout = 30000;
+
+    /**
+     * 执行阻塞Handler的线程池，dispatchMode=sync时为null
+     */
+    private ExecutorService dispatchExecutor;
+
+    /**
+     * Handler抛出异常时查找GPExceptionHandler并写出响应
+     */
+    private ExceptionHandlers exceptionHandlers;
+
+    /**
+     * 6、调用，运行阶段
+     */
+    public void dispatch(GPHttpRequest req, GPHttpResponse resp) throws IOException {
+        String url = req.getRequestURI();
+        String contextPath = req.getContextPath();
+        // 相对路径的起始位置，连续的'/'在路由查找时合并
+        int from = url.startsWith(contextPath) ? contextPath.length() : 0;
+        if (isPath(url, from, metricsPath)) {
+            writeMetrics(req, resp);
+            return;
+        }
+        if (isPath(url, from, batchPath)) {
+            doBatch(req, resp);
+            return;
+        }
+        if (staticResources != null && staticResources.matches(url, from)) {
+            staticResources.handle(req, resp, url, from);
+            return;
+        }
+
+        // 路径模板变量的位置，由路由查找时直接写入
+        int[] captures = handleMapping.newCaptures();
+        Handler handler = route(url, from, captures);
+        if (handler == null) {
+            ResponseBodyWriter.writeStatus(resp, GPHttpResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        // 超过路由的并发上限时在参数绑定之前拒绝
+        GPBulkhead.Permit permit = null;
+        if (handler.bulkhead != null) {
+            permit = handler.bulkhead.tryAcquire();
+            if (permit == null) {
+                reject(resp, handler.metrics);
+                return;
+            }
+        }
+
+        // 阻塞的Handler交给dispatchExecutor执行，容器线程直接返回
+        if (dispatchExecutor != null && !handler.async && req.isAsyncSupported()) {
+            dispatchToExecutor(req, resp, handler, url, captures, permit);
+            return;
+        }
+        try {
+            processHandler(req, resp, handler, url, captures, permit);
+        } finally {
+            if (permit != null) {
+                permit.close();
+            }
+        }
+    }
+
+    /**
+     * 返回503和Retry-After，不读取参数也不调用方法
+     */
+    private void reject(GPHttpResponse resp, GPRouteMetrics metrics) {
+        if (metrics != null) {
+            metrics.recordRejected();
+        }
+        resp.setStatus(GPHttpResponse.SC_SERVICE_UNAVAILABLE);
+        resp.setHeader("Retry-After", retryAfter);
+    }
+
+    private static boolean isPath(String url, int from, String path) {
+        return path != null && url.length() - from == path.length() && url.startsWith(path, from);
+    }
+
+    /**
+     * 查找Handler并记录路由耗时
+     */
+    private Handler route(String url, int from, int[] captures) {
+        long start = metricsRegistry != null ? System.nanoTime() : 0;
+        Handler handler = getHandler(url, from, captures);
+        if (metricsRegistry != null) {
+            GPRouteMetrics metrics = handler == null ? metricsRegistry.getUnmatched() : handler.metrics;
+            metrics.recordRouting(System.nanoTime() - start);
+        }
+        return handler;
+    }
+
+    /**
+     * 批量请求：POST请求体每行一个子请求，如/demo/query?name=a，路径相对于contextPath
+     * 子请求使用内存中的请求和响应，在batchExecutor中并行执行，与普通请求一样经过路由、参数绑定和缓存；
+     * 结果按请求顺序写成JSON数组，每项写完立即刷出，不等待后面的子请求；
+     * 整批超过batchTimeout时未完成的子请求返回504并被中断，线程池满时返回503
+     */
+    private void doBatch(GPHttpRequest req, GPHttpResponse resp) throws IOException {
+        if (!"POST".equals(req.getMethod())) {
+            resp.setHeader("Allow", "POST");
+            ResponseBodyWriter.writeStatus(resp, GPHttpResponse.SC_METHOD_NOT_ALLOWED);
+            return;
+        }
+        List<String> lines = new ArrayList<>();
+        BufferedReader reader = req.getReader();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            // 超过上限时不再读取剩余的请求体
+            if (lines.size() == batchMaxItems) {
+                resp.setStatus(GPHttpResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+                ResponseBodyWriter.writeText(resp, "413 Too many sub-requests: more than " + batchMaxItems);
+                return;
+            }
+            lines.add(line);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchTimeout);
+        List<Future<BatchResponse>> futures = new ArrayList<>(lines.size());
+        BatchRequest.Outer outer = new BatchRequest.Outer(req);
+        for (String subRequest : lines) {
+            try {
+                futures.add(batchExecutor.submit(() -> executeSubRequest(outer, subRequest)));
+            } catch (RejectedExecutionException e) {
+                futures.add(null);
+            }
+        }
+
+        resp.setContentType(ResponseBodyWriter.APPLICATION_JSON);
+        OutputStream os = resp.getOutputStream();
+        os.write('[');
+        boolean interrupted = false;
+        for (int i = 0; i < lines.size(); i++) {
+            Future<BatchResponse> future = futures.get(i);
+            BatchResponse result = null;
+            int status = GPHttpResponse.SC_SERVICE_UNAVAILABLE;
+            if (future != null) {
+                try {
+                    result = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    status = result.getStatus();
+                } catch (TimeoutException e) {
+                    future.cancel(true);
+                    status = GPHttpResponse.SC_GATEWAY_TIMEOUT;
+                } catch (InterruptedException e) {
+                    // 容器停止等情况，剩余的子请求全部取消
+                    interrupted = true;
+                    future.cancel(true);
+                } catch (ExecutionException e) {
+                    exceptionHandlers.log(e.getCause());
+                    status = GPHttpResponse.SC_INTERNAL_SERVER_ERROR;
+                }
+            }
+            responseBodyWriter.writeBatchItem(os, i == 0, lines.get(i), status,
+                    result == null ? null : result.getContentType(), result == null ? null : result.getBody());
+            os.flush();
+        }
+        os.write(']');
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 在batchExecutor中执行一个子请求，不访问外层请求，只使用容器线程上复制的快照
+     */
+    private BatchResponse executeSubRequest(BatchRequest.Outer outer, String subRequest) throws IOException {
+        BatchResponse subResp = new BatchResponse();
+        if (!subRequest.startsWith("/")) {
+            subResp.setStatus(GPHttpResponse.SC_BAD_REQUEST);
+            ResponseBodyWriter.writeText(subResp, "400 Bad Request: sub-request must start with '/'");
+            return subResp;
+        }
+        BatchRequest subReq;
+        try {
+            subReq = new BatchRequest(outer, subRequest);
+        } catch (IllegalArgumentException e) {
+            subResp.setStatus(GPHttpResponse.SC_BAD_REQUEST);
+            ResponseBodyWriter.writeText(subResp, "400 Bad Request: " + e.getMessage());
+            return subResp;
+        }
+        String url = subReq.getRequestURI();
+        int from = outer.contextPath.length();
+        if (isPath(url, from, batchPath)) {
+            subResp.setStatus(GPHttpResponse.SC_BAD_REQUEST);
+            ResponseBodyWriter.writeText(subResp, "400 Bad Request: nested batch");
+            return subResp;
+        }
+        if (isPath(url, from, metricsPath)) {
+            writeMetrics(subReq, subResp);
+            return subResp;
+        }
+        int[] captures = handleMapping.newCaptures();
+        Handler handler = route(url, from, captures);
+        if (handler == null) {
+            ResponseBodyWriter.writeStatus(subResp, GPHttpResponse.SC_NOT_FOUND);
+            return subResp;
+        }
+        GPBulkhead.Permit permit = null;
+        if (handler.bulkhead != null) {
+            permit = handler.bulkhead.tryAcquire();
+            if (permit == null) {
+                reject(subResp, handler.metrics);
+                return subResp;
+            }
+        }
+        try {
+            processHandler(subReq, subResp, handler, url, captures, permit);
+        } finally {
+            if (permit != null) {
+                permit.close();
+            }
+        }
+        return subResp;
+    }
+
+    /**
+     * 在dispatchExecutor中执行阻塞的Handler
+     * Handler开始执行后不能再由容器超时打断，所以不设置AsyncContext超时，
+     * 而是在任务开始时检查排队时间，超过asyncTimeout直接返回503
+     */
+    private void dispatchToExecutor(GPHttpRequest req, GPHttpResponse resp, Handler handler,
+                                    String url, int[] captures, GPBulkhead.Permit permit) {
+        GPAsyncContext asyncContext = req.startAsync();
+        asyncContext.setTimeout(0, null);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(asyncTimeout);
+        try {
+            dispatchExecutor.execute(() -> {
+                try {
+                    if (System.nanoTime() - deadline > 0) {
+                        resp.setStatus(GPHttpResponse.SC_SERVICE_UNAVAILABLE);
+                        return;
+                    }
+                    processHandler(req, resp, handler, url, captures, permit);
+                } catch (IOException e) {
+                    exceptionHandlers.log(e);
+                } catch (Throwable e) {
+                    // 工作线程中没有容器兜底，未捕获的异常也要返回500并记录
+                    try {
+                        exceptionHandlers.handle(req, resp, e);
+                    } catch (IOException ex) {
+                        exceptionHandlers.log(ex);
+                    }
+                } finally {
+                    if (permit != null) {
+                        permit.close();
+                    }
+                    asyncContext.complete();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (permit != null) {
+                permit.close();
+            }
+            resp.setStatus(GPHttpResponse.SC_SERVICE_UNAVAILABLE);
+            asyncContext.complete();
+        }
+    }
+
+    /**
+     * @param permit 并发许可，没有并发限制时为null；异步方法在结果完成时释放，其他由调用方释放
+     */
+    private void processHandler(GPHttpRequest req, GPHttpResponse resp, Handler handler,
+                                String url, int[] captures, GPBulkhead.Permit permit) throws IOException {
+        try {
+            invokeHandler(req, resp, handler, url, captures, permit);
+        } catch (GPConversionException e) {
+            // 参数绑定错误
+            recordError(handler.metrics);
+            exceptionHandlers.handle(req, resp, e);
+        } catch (InvocationTargetException e) {
+            recordError(handler.metrics);
+            exceptionHandlers.handle(req, resp, e.getCause());
+        } catch (IllegalAccessException e) {
+            recordError(handler.metrics);
+            exceptionHandlers.handle(req, resp, e);
+        }
+    }
+
+    private static void recordError(GPRouteMetrics metrics) {
+        if (metrics != null) {
+            metrics.recordError();
+        }
+    }
+
+    /**
+     * 记录一个阶段的耗时，返回当前时间作为下一个阶段的开始；没有开启统计时不取时间
+     */
+    private static long lap(GPRouteMetrics metrics, int phase, long start) {
+        if (metrics == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        metrics.record(phase, now - start);
+        return now;
+    }
+
+    private void invokeHandler(GPHttpRequest req, GPHttpResponse resp, Handler handler,
+                               String url, int[] captures, GPBulkhead.Permit permit) throws IOException, InvocationTargetException, IllegalAccessException {
+        // 资源没有变化时直接返回304，不绑定参数也不调用方法
+        if (handler.etagProvider != null && checkNotModified(req, resp, handler.etagProvider)) {
+            return;
+        }
+        GPRouteMetrics metrics = handler.metrics;
+        long start = metrics != null ? System.nanoTime() : 0;
+        // 按初始化时生成的绑定计划解析参数，只读取方法声明的参数
+        ArgumentResolver[] resolvers = handler.argumentResolvers;
+        Object[] paramValues = new Object[resolvers.length];
+        String[][] bound = handler.parameterBinder != null ? handler.parameterBinder.bind(req) : null;
+        for (int i = 0; i < resolvers.length; i++) {
+            ArgumentResolver resolver = resolvers[i];
+            paramValues[i] = bound != null && resolver instanceof ArgumentResolver.RequestParam
+                    ? ((ArgumentResolver.RequestParam) resolver).convert(bound)
+                    : resolver.resolve(req, resp, url, captures);
+        }
+        start = lap(metrics, GPRouteMetrics.BINDING, start);
+
+        // 命中缓存时直接写出，不调用Controller
+        GPCacheKey cacheKey = null;
+        if (handler.cacheTtl > 0) {
+            cacheKey = handler.cacheKey(req, url, paramValues);
+            GPResponseCache.Entry cached = responseCache.get(cacheKey);
+            if (cached != null) {
+                responseBodyWriter.write(req, resp, cached);
+                lap(metrics, GPRouteMetrics.WRITING, start);
+                return;
+            }
+        }
+
+        Object result = handler.invoker.invoke(paramValues);
+        start = lap(metrics, GPRouteMetrics.INVOCATION, start);
+        if (handler.async) {
+            // 下游仍在处理，许可保留到结果完成
+            if (permit != null && result != null) {
+                permit.deferTo((CompletionStage<?>) result);
+            }
+            // 异步结果的写出不计入统计，失败时计入失败数
+            handleAsyncResult(req, resp, (CompletionStage<?>) result, metrics);
+            return;
+        }
+        if (cacheKey != null && result != null) {
+            String contentType = ResponseBodyWriter.contentType(result);
+            byte[] body = responseBodyWriter.render(result);
+            GPResponseCache.Entry entry = responseCache.put(cacheKey, contentType, body, handler.cacheTtl);
+            if (entry != null) {
+                responseBodyWriter.write(req, resp, entry);
+            } else {
+                responseBodyWriter.write(req, resp, contentType, body, null);
+            }
+        } else if (handler.hasReturnValue) {
+            responseBodyWriter.write(req, resp, result);
+        }
+        lap(metrics, GPRouteMetrics.WRITING, start);
+    }
+
+    /**
+     * GET/HEAD请求由GPETagProvider提前取得ETag并设置响应头，与If-None-Match匹配时返回304
+     * @return 是否已经返回304
+     */
+    private static boolean checkNotModified(GPHttpRequest req, GPHttpResponse resp,
+                                            GPETagProvider provider) {
+        String method = req.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return false;
+        }
+        String tag = provider.getETag(req);
+        if (tag == null) {
+            return false;
+        }
+        String etag = GPETags.quote(tag);
+        resp.setHeader("ETag", etag);
+        if (GPETags.matches(req.getHeader("If-None-Match"), etag)) {
+            resp.setStatus(GPHttpResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 返回CompletionStage的方法：释放容器线程，future完成时再写出响应
+     * 容器不支持异步时（如经过了不支持异步的Filter）退化为阻塞等待
+     */
+    private void handleAsyncResult(GPHttpRequest req, GPHttpResponse resp, CompletionStage<?> stage,
+                                   GPRouteMetrics metrics) throws IOException {
+        if (stage == null) {
+            return;
+        }
+        if (!req.isAsyncSupported()) {
+            try {
+                writeAsyncResult(req, resp, stage.toCompletableFuture().get(asyncTimeout, TimeUnit.MILLISECONDS), null, metrics);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                writeAsyncResult(req, resp, null, e, metrics);
+            } catch (ExecutionException e) {
+                writeAsyncResult(req, resp, null, e.getCause(), metrics);
+            } catch (TimeoutException e) {
+                resp.setStatus(GPHttpResponse.SC_SERVICE_UNAVAILABLE);
+            }
+            return;
+        }
+
+        GPAsyncContext asyncContext = req.startAsync();
+        // 超时和future完成只有一个能写响应
+        AsyncTimeout listener = AsyncTimeout.register(asyncContext, resp, asyncTimeout);
+        stage.whenComplete((value, e) -> {
+            if (!listener.tryComplete()) {
+                return;
+            }
+            try {
+                writeAsyncResult(req, resp, value, e instanceof CompletionException ? e.getCause() : e, metrics);
+            } catch (IOException ex) {
+                exceptionHandlers.log(ex);
+            } finally {
+                asyncContext.complete();
+            }
+        });
+    }
+
+    private void writeAsyncResult(GPHttpRequest req, GPHttpResponse resp, Object value, Throwable e,
+                                  GPRouteMetrics metrics) throws IOException {
+        if (e != null) {
+            recordError(metrics);
+            exceptionHandlers.handle(req, resp, e);
+            return;
+        }
+        responseBodyWriter.write(req, resp, value);
+    }
+
+    /**
+     * 路径中'+'不表示空格，只有包含'%'时才需要解码
+     */
+    private String decodePathVariable(String value) throws IOException {
+        if (value.indexOf('%') < 0) {
+            return value;
+        }
+        try {
+            return URLDecoder.decode(value.replace("+", "%2B"), "UTF-8");
+        } catch (IllegalArgumentException e) {
+            throw new GPConversionException("Malformed path variable: " + value, e);
+        }
+    }
+
+    private Handler getHandler(String url, int from, int[] captures) {
+        if (handleMapping.isEmpty()) {
+            return null;
+        }
+        return handleMapping.match(url, from, captures);
+    }
+
+    /**
+     * 输出统计数据，默认JSON；format=prometheus或Accept为text/plain（Prometheus抓取）时输出文本格式
+     */
+    private void writeMetrics(GPHttpRequest req, GPHttpResponse resp) throws IOException {
+        if (metricsRegistry == null) {
+            resp.setStatus(GPHttpResponse.SC_NOT_FOUND);
+            return;
+        }
+        String accept = req.getHeader("Accept");
+        if ("prometheus".equals(req.getParameter("format")) || (accept != null && accept.startsWith("text/plain"))) {
+            byte[] text = metricsRegistry.toPrometheus().getBytes(StandardCharsets.UTF_8);
+            resp.setContentType("text/plain;version=0.0.4;charset=UTF-8");
+            resp.setContentLength(text.length);
+            resp.getOutputStream().write(text);
+            return;
+        }
+        responseBodyWriter.write(resp, metricsRegistry.toJson());
+    }
+
+    /**
+     * @param contextConfigLocation 类路径中的配置文件，如application.properties
+     * @param webappRoot web应用根目录，作为静态资源的默认目录，没有时为null
+     */
+    public void init(String contextConfigLocation, String webappRoot) {
+        long start = System.nanoTime();
+        // 1、加载配置文件
+        IOException configError = doLoadConfig(contextConfigLocation);
+        asyncTimeout = Long.parseLong(contextConfig.getProperty("asyncTimeout", String.valueOf(asyncTimeout)));
+        dispatchExecutor = DispatchExecutors.create(contextConfig);
+        responseBodyWriter = new ResponseBodyWriter(contextConfig, new GPJsonSerializers());
+        exceptionHandlers = new ExceptionHandlers(responseBodyWriter,
+                contextConfig.getProperty("invokerMode", HandlerInvoker.MODE_METHOD_HANDLE),
+                Long.parseLong(contextConfig.getProperty("errorLogInterval", "10000").trim()));
+        if (configError != null) {
+            // 读取配置时日志还没有初始化，到这里再记录
+            exceptionHandlers.log(configError);
+        }
+        metricsPath = contextConfig.getProperty("metricsPath", "/metrics").trim();
+        if (metricsPath.isEmpty()) {
+            metricsPath = null;
+        } else {
+            metricsRegistry = new GPMetricsRegistry();
+        }
+        retryAfter = contextConfig.getProperty("retryAfter", retryAfter).trim();
+        batchPath = contextConfig.getProperty("batchPath", "").trim();
+        if (batchPath.isEmpty()) {
+            batchPath = null;
+        } else {
+            batchExecutor = DispatchExecutors.createBatch(contextConfig);
+            batchMaxItems = Integer.parseInt(contextConfig.getProperty("batchMaxItems", String.valueOf(batchMaxItems)));
+            batchTimeout = Long.parseLong(contextConfig.getProperty("batchTimeout", String.valueOf(batchTimeout)));
+        }
+        responseCache = new GPResponseCache(Long.parseLong(contextConfig.getProperty("responseCacheMaxBytes", "33554432")));
+        if (metricsRegistry != null) {
+            metricsRegistry.setResponseCache(responseCache);
+        }
+        try {
+            staticResources = StaticResourceHandler.create(contextConfig, webappRoot);
+        } catch (IOException e) {
+            exceptionHandlers.log(e);
+        }
+
+        long configured = System.nanoTime();
+
+        // 2、指纹一致时使用上次启动的快照，否则优先使用编译期生成的组件索引，没有索引时扫描相关的类，多个包用逗号分隔
+        String[] scanPackages = contextConfig.getProperty("scanPackage").split(",");
+        Path snapshotFile = snapshotFile(contextConfigLocation);
+        byte[] fingerprint = snapshotFile != null ? fingerprint(scanPackages) : null;
+        GPComponentIndex index = fingerprint != null ? GPStartupSnapshot.read(snapshotFile, fingerprint) : null;
+        boolean fromSnapshot = index != null;
+        String source = "startup snapshot " + snapshotFile;
+        if (index == null) {
+            index = doLoadIndex(scanPackages);
+            source = GPComponentIndex.LOCATION;
+        }
+        if (index == null) {
+            doScanner(scanPackages);
+            index = GPComponentIndex.fromClasses(doLoadClasses());
+            source = "classpath scan";
+        }
+        long loaded = System.nanoTime();
+
+        // 3、创建IOC容器，按依赖关系分批并行初始化扫描到的类
+        // 4、完成依赖注入，延迟初始化的类在第一次使用时创建和注入
+        context = new GPApplicationContext(index, contextConfig);
+        context.refresh();
+        long refreshed = System.nanoTime();
+
+        // 5、初始化HandleMapping
+        initHandleMapping(index);
+        long mapped = System.nanoTime();
+
+        // 6、初始化成功后保存快照，下次启动时使用
+        if (fingerprint != null && !fromSnapshot) {
+            try {
+                GPStartupSnapshot.write(snapshotFile, fingerprint, index);
+            } catch (IOException e) {
+                exceptionHandlers.log(e);
+            }
+        }
+
+        System.out.println("GP Spring MVC initialized in " + millis(start, System.nanoTime())
+                + "ms (config " + millis(start, configured) + "ms, components " + millis(configured, loaded)
+                + "ms, context " + millis(loaded, refreshed) + "ms, handler mapping " + millis(refreshed, mapped)
+                + "ms), components loaded from " + source
+                + ", dispatch " + DispatchExecutors.describe(contextConfig, dispatchExecutor));
+    }
+
+    private static String millis(long from, long to) {
+        return String.format("%.1f", (to - from) / 1e6);
+    }
+
+    /**
+     * 容器适配层处理请求时遇到的意外异常，与Handler的异常一样按异常类型限流打印
+     */
+    public void logError(Throwable e) {
+        exceptionHandlers.log(e);
+    }
+
+    /**
+     * @return init加载的配置，内嵌服务器从中读取server开头的配置项
+     */
+    public Properties getConfig() {
+        return contextConfig;
+    }
+
+    public void destroy() {
+        if (responseBodyWriter != null) {
+            responseBodyWriter.destroy();
+        }
+        if (dispatchExecutor != null) {
+            dispatchExecutor.shutdown();
+        }
+        if (batchExecutor != null) {
+            batchExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return 读取失败时的异常，由调用方在日志初始化后记录；成功时为null
+     */
+    private IOException doLoadConfig(String contextConfigLocation) {
+        // 在类路径中找到spring配置文件，并将其读取出来加载到Properties对象中，原始内容保留用于计算快照指纹
+        try (InputStream fis = this.getClass().getClassLoader().getResourceAsStream(contextConfigLocation)) {
+            configBytes = readFully(fis);
+            contextConfig.load(new ByteArrayInputStream(configBytes));
+            return null;
+        } catch (IOException e) {
+            return e;
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * startupSnapshot=false时返回null；没有配置startupSnapshotFile时放在配置文件所在的类路径目录旁边（如target/classes旁的target），
+     * 只有应用自己能写，文件名取自配置文件的位置；配置文件在jar中时不知道可写的位置，需要配置startupSnapshotFile
+     */
+    private Path snapshotFile(String contextConfigLocation) {
+        if (!Boolean.parseBoolean(contextConfig.getProperty("startupSnapshot", "false"))) {
+            return null;
+        }
+        String file = contextConfig.getProperty("startupSnapshotFile", "").trim();
+        if (!file.isEmpty()) {
+            return Paths.get(file);
+        }
+        URL config = this.getClass().getClassLoader().getResource(contextConfigLocation);
+        if (config == null || !"file".equals(config.getProtocol())) {
+            return null;
+        }
+        try {
+            // 去掉配置文件在类路径中的相对路径，得到类路径目录
+            Path root = Paths.get(config.toURI());
+            for (int depth = Paths.get(contextConfigLocation).getNameCount(); depth > 0 && root != null; depth--) {
+                root = root.getParent();
+            }
+            Path parent = root == null ? null : root.getParent();
+            return parent == null ? null
+                    : parent.resolve("gpmvc-" + Integer.toHexString(config.toString().hashCode()) + ".snapshot");
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 快照的指纹：配置文件内容、scanPackage下class文件的路径、大小和修改时间，以及编译期索引的内容，
+     * 任何一项变化都会让快照失效；计算失败时返回null，不使用快照
+     */
+    private byte[] fingerprint(String[] scanPackages) {
+        try {
+            GPStartupSnapshot.Fingerprint fingerprint = new GPStartupSnapshot.Fingerprint();
+            fingerprint.update(GPStartupSnapshot.VERSION);
+            fingerprint.update(configBytes, 0, configBytes.length);
+            new GPClassScanner(this.getClass().getClassLoader(), GPController.class, GPService.class)
+                    .fingerprint(fingerprint, scanPackages);
+            Enumeration<URL> urls = this.getClass().getClassLoader().getResources(GPComponentIndex.LOCATION);
+            while (urls.hasMoreElements()) {
+                try (InputStream in = urls.nextElement().openStream()) {
+                    byte[] bytes = readFully(in);
+                    fingerprint.update(bytes, 0, bytes.length);
+                }
+            }
+            return fingerprint.toBytes();
+        } catch (IOException e) {
+            exceptionHandlers.log(e);
+            return null;
+        }
+    }
+
+    /**
+     * 加载编译期生成的组件索引，类路径上有多个索引（如WEB-INF/classes和WEB-INF/lib中的jar）时合并，
+     * useIndex=false或者索引不存在时返回null
+     */
+    private GPComponentIndex doLoadIndex(String[] scanPackages) {
+        if (!Boolean.parseBoolean(contextConfig.getProperty("useIndex", "true"))) {
+            return null;
+        }
+        try {
+            GPComponentIndex index = new GPComponentIndex();
+            Enumeration<URL> urls = this.getClass().getClassLoader().getResources(GPComponentIndex.LOCATION);
+            while (urls.hasMoreElements()) {
+                try (InputStream in = urls.nextElement().openStream()) {
+                    index.merge(GPComponentIndex.read(new InputStreamReader(in, StandardCharsets.UTF_8)));
+                }
+            }
+            index = index.filter(scanPackages);
+            return index.isEmpty() ? null : index;
+        } catch (IOException e) {
+            exceptionHandlers.log(e);
+            return null;
+        }
+    }
+
+    /**
+     * 扫描目录和jar，只读取class文件头筛选出引用了GPController/GPService的类，不加载类
+     */
+    private void doScanner(String[] scanPackages) {
+        GPClassScanner scanner = new GPClassScanner(this.getClass().getClassLoader(),
+                GPController.class, GPService.class);
+        try {
+            classNames.addAll(scanner.scan(scanPackages));
+        } catch (IOException e) {
+            // 扫描不完整时组件和路由会静默缺失，不能继续启动
+            throw new IllegalStateException("Can not scan " + Arrays.toString(scanPackages), e);
+        }
+    }
+
+    private List<Class<?>> doLoadClasses() {
+        List<Class<?>> classes = new ArrayList<>();
+        for (String className : classNames) {
+            try {
+                classes.add(Class.forName(className));
+            } catch (ClassNotFoundException e) {
+                exceptionHandlers.log(e);
+            }
+        }
+        return classes;
+    }
+
+    private void initHandleMapping(GPComponentIndex index) {
+        // 注册自定义类型转换器
+        for (GPConverter<?> converter : context.getBeansOfType(GPConverter.class)) {
+            conversionService.register(converter);
+        }
+        // 注册Controller中的异常处理方法
+        for (GPComponentIndex.BeanDefinition bean : index.getBeans()) {
+            if (GPComponentIndex.CONTROLLER.equals(bean.getKind())) {
+                exceptionHandlers.register(context.getBean(bean.getBeanName()));
+            }
+        }
+        for (GPComponentIndex.RouteDefinition route : index.getRoutes()) {
+            Object controller = context.getBean(route.getClassName());
+            if (controller == null) {
+                continue;
+            }
+            Class<?> clazz = controller.getClass();
+            List<String> typeNames = route.getParameterTypes();
+            Class<?>[] parameterTypes = new Class<?>[typeNames.size()];
+            Method method;
+            try {
+                for (int i = 0; i < parameterTypes.length; i++) {
+                    parameterTypes[i] = GPComponentIndex.resolveType(typeNames.get(i), clazz.getClassLoader());
+                }
+                method = clazz.getMethod(route.getMethodName(), parameterTypes);
+            } catch (ClassNotFoundException | NoSuchMethodException e) {
+                throw new IllegalStateException("Stale route " + route.getUrl() + " -> "
+                        + route.getClassName() + "." + route.getMethodName(), e);
+            }
+            Handler handler = new Handler(controller, method, route.getUrl());
+            if (metricsRegistry != null) {
+                handler.metrics = metricsRegistry.register(route.getUrl());
+            }
+            handler.bulkhead = createBulkhead(route.getUrl(), method);
+            handler.etagProvider = createETagProvider(method);
+            handleMapping.addRoute(route.getUrl(), handler);
+        }
+    }
+
+    /**
+     * 并发上限依次取GPRequestMapping的maxConcurrency、routeMaxConcurrency.路由、routeMaxConcurrency；
+     * adaptiveLimit=true时在上限以内按延迟自适应调整；都没有配置时不限制，返回null
+     */
+    private GPBulkhead createBulkhead(String url, Method method) {
+        GPRequestMapping mapping = method.getAnnotation(GPRequestMapping.class);
+        int maxConcurrency = mapping != null ? mapping.maxConcurrency() : 0;
+        if (maxConcurrency <= 0) {
+            maxConcurrency = Integer.parseInt(contextConfig.getProperty("routeMaxConcurrency." + url,
+                    contextConfig.getProperty("routeMaxConcurrency", "0")).trim());
+        }
+        GPAdaptiveLimit adaptiveLimit = null;
+        if (Boolean.parseBoolean(contextConfig.getProperty("adaptiveLimit", "false"))) {
+            int maxLimit = maxConcurrency > 0 ? maxConcurrency
+                    : Integer.parseInt(contextConfig.getProperty("adaptiveLimitMax", "200"));
+            adaptiveLimit = new GPAdaptiveLimit(
+                    Integer.parseInt(contextConfig.getProperty("adaptiveLimitInitial", "20")),
+                    Integer.parseInt(contextConfig.getProperty("adaptiveLimitMin", "1")),
+                    maxLimit,
+                    Double.parseDouble(contextConfig.getProperty("adaptiveLimitTolerance", "2.0")));
+        }
+        return maxConcurrency > 0 || adaptiveLimit != null ? new GPBulkhead(maxConcurrency, adaptiveLimit) : null;
+    }
+
+    /**
+     * GPETag指定的GPETagProvider优先使用容器中的bean，不是bean时用无参构造方法创建
+     */
+    private GPETagProvider createETagProvider(Method method) {
+        GPETag annotation = method.getAnnotation(GPETag.class);
+        if (annotation == null) {
+            return null;
+        }
+        Class<? extends GPETagProvider> type = annotation.value();
+        GPETagProvider bean = context.getBean(type);
+        if (bean != null) {
+            return bean;
+        }
+        try {
+            return type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Can not create " + type.getName() + " for " + method, e);
+        }
+    }
+
+    /**
+     * Handler记录Controller中RequestMapping和method的对应关系
+     */
+    private class Handler {
+        /**
+         * 保存方法对应的实例
+         */
+        private Object controller;
+
+        /**
+         * 保存url映射的方法
+         */
+        private Method method;
+
+        /**
+         * 保存映射的url
+         */
+        private String url;
+
+        /**
+         * 参数绑定计划，与方法形参一一对应
+         */
+        private ArgumentResolver[] argumentResolvers;
+
+        /**
+         * 只扫描声明的参数，declaredParameterBinding=false或者没有GPRequestParam参数时为null
+         */
+        private QueryParameterBinder parameterBinder;
+
+        /**
+         * 初始化时生成的方法调用器
+         */
+        private HandlerInvoker invoker;
+
+        /**
+         * 方法返回CompletionStage（如CompletableFuture）时异步写出响应
+         */
+        private boolean async;
+
+        /**
+         * 方法有返回值，由框架写入响应
+         */
+        private boolean hasReturnValue;
+
+        /**
+         * GPCacheable的有效期（毫秒），0表示不缓存
+         */
+        private long cacheTtl;
+
+        /**
+         * 路由的统计数据，没有开启统计时为null
+         */
+        private GPRouteMetrics metrics;
+
+        /**
+         * 路由的并发限制，没有配置时为null
+         */
+        private GPBulkhead bulkhead;
+
+        /**
+         * GPETag指定的ETag提供者，没有时为null
+         */
+        private GPETagProvider etagProvider;
+
+        public Handler(Object controller, Method method, String url) {
+            this.controller = controller;
+            this.method = method;
+            this.url = url;
+            putParamIndexMapping(method);
+            this.async = CompletionStage.class.isAssignableFrom(method.getReturnType());
+            this.hasReturnValue = !async && method.getReturnType() != void.class;
+            if (hasReturnValue) {
+                responseBodyWriter.prepare(method.getReturnType());
+            }
+            GPCacheable cacheable = method.getAnnotation(GPCacheable.class);
+            if (cacheable != null) {
+                // 只缓存由框架写出的返回值，直接操作response的方法无法缓存
+                if (!hasReturnValue) {
+                    throw new IllegalStateException("@GPCacheable requires a non-void, non-async method: " + method);
+                }
+                // 缓存键只包含绑定的参数，直接读取request的方法结果可能因请求而不同，也可能设置了状态码和响应头
+                for (ArgumentResolver resolver : argumentResolvers) {
+                    if (ArgumentResolver.isContainerObject(resolver)) {
+                        throw new IllegalStateException("@GPCacheable method can not take request or response parameters: " + method);
+                    }
+                }
+                this.cacheTtl = cacheable.ttl();
+            }
+            String mode = contextConfig.getProperty("invokerMode", HandlerInvoker.MODE_METHOD_HANDLE);
+            try {
+                this.invoker = HandlerInvoker.create(controller, method, mode);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Can not access " + method, e);
+            }
+        }
+
+        private void putParamIndexMapping(Method method) {
+            PathTemplate template = PathTemplate.parse(url);
+            Class<?>[] paramTypes = method.getParameterTypes();
+            Type[] genericTypes = method.getGenericParameterTypes();
+            // 获取方法中加了注解的参数
+            Annotation[][] pa = method.getParameterAnnotations();
+            argumentResolvers = new ArgumentResolver[paramTypes.length];
+            for (int i = 0; i < paramTypes.length; i++) {
+                argumentResolvers[i] = createResolver(template, paramTypes[i], genericTypes[i], pa[i]);
+            }
+            if (Boolean.parseBoolean(contextConfig.getProperty("declaredParameterBinding", "false"))) {
+                initParameterBinder();
+            }
+        }
+
+        /**
+         * 用方法声明的参数名生成QueryParameterBinder，同名参数共用一个位置；没有GPRequestParam参数时不生成
+         */
+        private void initParameterBinder() {
+            List<String> names = new ArrayList<>();
+            for (ArgumentResolver resolver : argumentResolvers) {
+                if (resolver instanceof ArgumentResolver.RequestParam
+                        && !names.contains(((ArgumentResolver.RequestParam) resolver).getName())) {
+                    names.add(((ArgumentResolver.RequestParam) resolver).getName());
+                }
+            }
+            if (names.isEmpty()) {
+                return;
+            }
+            parameterBinder = new QueryParameterBinder(names);
+            for (ArgumentResolver resolver : argumentResolvers) {
+                if (resolver instanceof ArgumentResolver.RequestParam) {
+                    ArgumentResolver.RequestParam param = (ArgumentResolver.RequestParam) resolver;
+                    param.setIndex(parameterBinder.indexOf(param.getName()));
+                }
+            }
+        }
+
+        private ArgumentResolver createResolver(PathTemplate template, Class<?> type, Type genericType, Annotation[] as) {
+            // 获取方法中的request和response参数
+            if (type == GPHttpRequest.class) {
+                return ArgumentResolver.REQUEST;
+            }
+            if (type == GPHttpResponse.class) {
+                return ArgumentResolver.RESPONSE;
+            }
+            if (NATIVE_REQUEST_TYPES.contains(type.getName())) {
+                return ArgumentResolver.nativeRequest(type);
+            }
+            if (NATIVE_RESPONSE_TYPES.contains(type.getName())) {
+                return ArgumentResolver.nativeResponse(type);
+            }
+            for (Annotation a : as) {
+                if (a instanceof GPRequestParam) {
+                    String paramName = ((GPRequestParam) a).value().trim();
+                    if ("".equals(paramName)) {
+                        continue;
+                    }
+                    return ArgumentResolver.requestParam(paramName,
+                            conversionService.forParameter(type, genericType, paramName));
+                } else if (a instanceof GPPathVariable) {
+                    String variableName = ((GPPathVariable) a).value();
+                    int variable = template.indexOf(variableName);
+                    if (variable < 0) {
+                        throw new IllegalStateException("Path variable '" + variableName
+                                + "' is not declared in " + this.url + " of " + method);
+                    }
+                    GPParameterConverter converter = conversionService.forParameter(type, genericType, variableName);
+                    // 路径变量直接按位置从uri中截取
+                    return (req, resp, url, captures) -> converter.convert(
+                            decodePathVariable(url.substring(captures[variable * 2], captures[variable * 2 + 1])));
+                }
+            }
+            // 基本类型不能传null，调用时才会失败（methodHandle为NullPointerException，反射为IllegalArgumentException）
+            if (type.isPrimitive()) {
+                throw new IllegalStateException("Primitive parameter " + type.getName()
+                        + " needs @GPRequestParam or @GPPathVariable: " + method);
+            }
+            return ArgumentResolver.NULL;
+        }
+
+        /**
+         * 缓存键：合并'/'后的请求路径加上绑定后的参数值，GPCacheable方法没有request、response参数
+         */
+        private GPCacheKey cacheKey(GPHttpRequest req, String url, Object[] paramValues) {
+            String contextPath = req.getContextPath();
+            int from = url.startsWith(contextPath) ? contextPath.length() : 0;
+            return new GPCacheKey(GPRouter.normalize(url, from), paramValues.clone());
+        }
+
+    }
+
+}
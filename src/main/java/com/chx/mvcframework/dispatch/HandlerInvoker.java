@@ -0,0 +1,88 @@
+package com.chx.mvcframework.dispatch;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * 调用Controller方法，初始化时为每个Handler生成一个
+ * 默认使用绑定了controller实例的MethodHandle，避免Method.invoke每次调用的访问检查；
+ * 反射方式作为备选，通过invokerMode=reflect开启
+ *
+ * 两种方式抛出的业务异常统一包装为InvocationTargetException，MethodHandle方式的包装不记录堆栈
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+interface HandlerInvoker {
+
+    String MODE_METHOD_HANDLE = "methodHandle";
+
+    String MODE_REFLECT = "reflect";
+
+    Object invoke(Object[] args) throws InvocationTargetException, IllegalAccessException;
+
+    static HandlerInvoker create(Object controller, Method method, String mode) throws IllegalAccessException {
+        if (MODE_REFLECT.equals(mode)) {
+            return new Reflective(controller, method);
+        }
+        return new Handle(controller, method);
+    }
+
+    class Reflective implements HandlerInvoker {
+        private final Object controller;
+        private final Method method;
+
+        Reflective(Object controller, Method method) {
+            this.controller = controller;
+            this.method = method;
+        }
+
+        @Override
+        public Object invoke(Object[] args) throws InvocationTargetException, IllegalAccessException {
+            return method.invoke(controller, args);
+        }
+    }
+
+    class Handle implements HandlerInvoker {
+        /**
+         * 类型统一为(Object[])Object，可以用invokeExact调用
+         */
+        private final MethodHandle handle;
+
+        Handle(Object controller, Method method) throws IllegalAccessException {
+            method.setAccessible(true);
+            MethodHandle mh = MethodHandles.lookup().unreflect(method).bindTo(controller);
+            int arity = method.getParameterCount();
+            this.handle = mh.asSpreader(Object[].class, arity)
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        }
+
+        @Override
+        public Object invoke(Object[] args) throws InvocationTargetException {
+            try {
+                return (Object) handle.invokeExact(args);
+            } catch (Throwable e) {
+                throw new TargetException(e);
+            }
+        }
+    }
+
+    /**
+     * 只用来携带方法抛出的异常，包装本身不记录堆栈
+     */
+    final class TargetException extends InvocationTargetException {
+        private static final long serialVersionUID = 1L;
+
+        TargetException(Throwable target) {
+            super(target);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.chx.mvcframework.dispatch;
+
+import com.chx.mvcframework.http.GPHttpRequest;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 只绑定Handler声明的参数：直接扫描原始的查询字符串和表单请求体，不经过getParameterMap
+ *
+ * 容器的getParameterMap会解码并保存所有参数，请求中带有大量无关参数时这部分开销与Handler无关；
+ * 这里逐个比较参数名，不是声明的参数直接跳过，既不解码也不创建字符串；
+ * 参数名和参数值中的%转义只在需要时解码，使用线程内复用的缓冲区
+ *
+ * declaredParameterBinding=true时启用，容器无法提供表单请求体（servlet容器中的表单POST）时仍使用getParameterValues
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+final class QueryParameterBinder {
+
+    /**
+     * 缓冲区超过这个大小时用完不保留，避免个别超长参数长期占用内存
+     */
+    private static final int MAX_RETAINED = 8192;
+
+    private static final ThreadLocal<Decoder> DECODERS = ThreadLocal.withInitial(Decoder::new);
+
+    private final String[] names;
+
+    QueryParameterBinder(List<String> names) {
+        this.names = names.toArray(new String[0]);
+    }
+
+    /**
+     * @return 参数在bind结果中的位置，与构造时的顺序相同
+     */
+    int indexOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return 按声明顺序排列的参数值，请求中没有的参数为null；无法读取表单请求体时返回null，由调用方改用getParameterValues
+     */
+    String[][] bind(GPHttpRequest req) {
+        String form = req.getFormBody();
+        if (form == null) {
+            return null;
+        }
+        String[][] values = new String[names.length][];
+        String query = req.getQueryString();
+        Decoder decoder = DECODERS.get();
+        try {
+            if (query != null) {
+                scan(query, values, decoder);
+            }
+            if (!form.isEmpty()) {
+                scan(form, values, decoder);
+            }
+        } finally {
+            decoder.trim();
+        }
+        return values;
+    }
+
+    private void scan(String query, String[][] values, Decoder decoder) {
+        int length = query.length();
+        int start = 0;
+        while (start < length) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = length;
+            }
+            int equals = query.indexOf('=', start);
+            if (equals < 0 || equals > end) {
+                equals = end;
+            }
+            if (equals > start) {
+                int index = match(query, start, equals, decoder);
+                if (index >= 0) {
+                    String value = equals < end ? decoder.decode(query, equals + 1, end) : "";
+                    values[index] = append(values[index], value);
+                }
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * 先按原始字符比较，参数名中有%或+时才解码后再比较
+     */
+    private int match(String query, int start, int end, Decoder decoder) {
+        int length = end - start;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].length() == length && query.regionMatches(start, names[i], 0, length)) {
+                return i;
+            }
+        }
+        if (!Decoder.isEncoded(query, start, end)) {
+            return -1;
+        }
+        int decoded = decoder.decodeToChars(query, start, end);
+        for (int i = 0; i < names.length; i++) {
+            if (decoder.charsEqual(names[i], decoded)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String[] append(String[] values, String value) {
+        if (values == null) {
+            return new String[]{value};
+        }
+        String[] appended = Arrays.copyOf(values, values.length + 1);
+        appended[values.length] = value;
+        return appended;
+    }
+
+    /**
+     * 线程内复用的解码缓冲区：%转义先还原为字节，再按UTF-8解码为字符
+     */
+    private static final class Decoder {
+
+        private final CharsetDecoder utf8 = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        private byte[] bytes = new byte[256];
+
+        private char[] chars = new char[256];
+
+        static boolean isEncoded(String s, int start, int end) {
+            for (int i = start; i < end; i++) {
+                char c = s.charAt(i);
+                if (c == '%' || c == '+') {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        String decode(String s, int start, int end) {
+            if (!isEncoded(s, start, end)) {
+                return s.substring(start, end);
+            }
+            return new String(chars, 0, decodeToChars(s, start, end));
+        }
+
+        /**
+         * 解码到chars中，不完整的%转义保留原样
+         * @return 解码后的字符数
+         */
+        int decodeToChars(String s, int start, int end) {
+            // 非ASCII字符按UTF-8最多3个字节
+            int capacity = (end - start) * 3;
+            if (bytes.length < capacity) {
+                bytes = new byte[capacity];
+            }
+            int n = 0;
+            for (int i = start; i < end; i++) {
+                char c = s.charAt(i);
+                int escaped = c == '%' ? hex(s, i + 1, end) : -1;
+                if (c == '+') {
+                    bytes[n++] = ' ';
+                } else if (escaped >= 0) {
+                    bytes[n++] = (byte) escaped;
+                    i += 2;
+                } else if (c < 0x80) {
+                    bytes[n++] = (byte) c;
+                } else {
+                    byte[] encoded = String.valueOf(c).getBytes(StandardCharsets.UTF_8);
+                    for (byte b : encoded) {
+                        bytes[n++] = b;
+                    }
+                }
+            }
+            if (chars.length < n) {
+                chars = new char[n];
+            }
+            CharBuffer out = CharBuffer.wrap(chars);
+            utf8.reset();
+            utf8.decode(ByteBuffer.wrap(bytes, 0, n), out, true);
+            utf8.flush(out);
+            return out.position();
+        }
+
+        /**
+         * @return s中from开始的两位十六进制数，不足两位或不是十六进制时返回-1
+         */
+        private static int hex(String s, int from, int end) {
+            if (from + 2 > end) {
+                return -1;
+            }
+            int high = Character.digit(s.charAt(from), 16);
+            int low = Character.digit(s.charAt(from + 1), 16);
+            return high < 0 || low < 0 ? -1 : high << 4 | low;
+        }
+
+        boolean charsEqual(String name, int length) {
+            if (name.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (name.charAt(i) != chars[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void trim() {
+            if (bytes.length > MAX_RETAINED) {
+                bytes = new byte[256];
+            }
+            if (chars.length > MAX_RETAINED) {
+                chars = new char[256];
+            }
+        }
+    }
+}
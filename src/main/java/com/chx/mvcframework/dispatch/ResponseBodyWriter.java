@@ -0,0 +1,392 @@
+package com.chx.mvcframework.dispatch;
+
+import com.chx.mvcframework.cache.GPResponseCache;
+import com.chx.mvcframework.compress.GPCompressor;
+import com.chx.mvcframework.compress.GPDeflaterOutputStream;
+import com.chx.mvcframework.etag.GPETags;
+import com.chx.mvcframework.http.GPHttpRequest;
+import com.chx.mvcframework.http.GPHttpResponse;
+import com.chx.mvcframework.json.GPBufferPool;
+import com.chx.mvcframework.json.GPJsonSerializers;
+import com.chx.mvcframework.json.GPJsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * 把Controller方法的返回值写入响应
+ * String等字符序列按text/plain原样输出，其他类型序列化为JSON；null不输出
+ *
+ * 内容先写入从池中借出的缓冲区，全部放得下时设置Content-Length一次写出，
+ * 放不下时直接流式写出（chunked）
+ *
+ * 配置项responseBufferSize为缓冲区大小，responseBufferPoolSize为池中最多保留的缓冲区个数
+ *
+ * etag=true时，GET/HEAD请求的200响应按缓冲区中的内容计算ETag，与If-None-Match匹配时返回304，不写出响应体；
+ * 流式写出的内容不计算ETag
+ *
+ * 开启压缩时（见GPCompressor），内容类型允许且大小达到下限的响应按Accept-Encoding压缩，
+ * 压缩结果同样先写入池中的缓冲区；响应体为null的请求（如统计数据）不压缩
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+class ResponseBodyWriter {
+
+    static final String TEXT_PLAIN = "text/plain;charset=UTF-8";
+
+    static final String APPLICATION_JSON = "application/json;charset=UTF-8";
+
+    /**
+     * 常见错误响应的内容，预先编码，错误请求很多时不再重复创建
+     */
+    private static final byte[] BAD_REQUEST = "400 Bad Request".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] NOT_FOUND = "404 Not Found!".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] METHOD_NOT_ALLOWED = "405 Method Not Allowed".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] INTERNAL_SERVER_ERROR = "500 Internal Server Error".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] BATCH_PATH = "{\"path\":".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] BATCH_STATUS = ",\"status\":".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] BATCH_BODY = ",\"body\":".getBytes(StandardCharsets.UTF_8);
+
+    private final GPBufferPool bufferPool;
+
+    private final GPJsonSerializers serializers;
+
+    private final boolean etagEnabled;
+
+    /**
+     * compression=false时为null
+     */
+    private final GPCompressor compressor;
+
+    ResponseBodyWriter(Properties config, GPJsonSerializers serializers) {
+        int bufferSize = Integer.parseInt(config.getProperty("responseBufferSize", "8192"));
+        int poolSize = Integer.parseInt(config.getProperty("responseBufferPoolSize", "256"));
+        this.bufferPool = new GPBufferPool(bufferSize, poolSize);
+        this.serializers = serializers;
+        this.etagEnabled = Boolean.parseBoolean(config.getProperty("etag", "true"));
+        this.compressor = GPCompressor.create(config);
+    }
+
+    /**
+     * 释放池中Deflater的本地内存
+     */
+    void destroy() {
+        if (compressor != null) {
+            compressor.destroy();
+        }
+    }
+
+    /**
+     * 初始化时为声明的返回类型生成序列化器，第一个请求不再承担生成的开销
+     */
+    void prepare(Class<?> returnType) {
+        if (returnType != void.class && returnType != Object.class && !returnType.isInterface()
+                && !returnType.isPrimitive() && !CharSequence.class.isAssignableFrom(returnType)) {
+            serializers.getSerializer(returnType);
+        }
+    }
+
+    static String contentType(Object value) {
+        return value instanceof CharSequence ? TEXT_PLAIN : APPLICATION_JSON;
+    }
+
+    /**
+     * 写出返回值，不计算ETag
+     */
+    void write(GPHttpResponse resp, Object value) throws IOException {
+        write(null, resp, value);
+    }
+
+    /**
+     * 写出返回值，req不为null时按内容处理ETag、If-None-Match和压缩
+     */
+    void write(GPHttpRequest req, GPHttpResponse resp, Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        String contentType = contentType(value);
+        resp.setContentType(contentType);
+        byte[] buffer = bufferPool.acquire();
+        StreamingTarget target = compressor != null && req != null ? new StreamingTarget(req, resp, contentType) : null;
+        try {
+            GPJsonWriter out = new GPJsonWriter(buffer, target != null ? target : resp::getOutputStream);
+            serialize(out, value);
+            if (out.isStreaming()) {
+                out.finish();
+                if (target != null) {
+                    target.finish();
+                }
+                return;
+            }
+            writeBody(req, resp, contentType, buffer, out.size(), null, null);
+        } finally {
+            if (target != null) {
+                target.release();
+            }
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * 写出框架生成的文本，如错误信息
+     */
+    static void writeText(GPHttpResponse resp, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        resp.setContentType(TEXT_PLAIN);
+        resp.setContentLength(bytes.length);
+        resp.getOutputStream().write(bytes);
+    }
+
+    /**
+     * 设置错误状态码并写出预先编码的响应体，没有预先编码的状态码只设置状态
+     */
+    static void writeStatus(GPHttpResponse resp, int status) throws IOException {
+        resp.setStatus(status);
+        byte[] body;
+        switch (status) {
+            case GPHttpResponse.SC_BAD_REQUEST:
+                body = BAD_REQUEST;
+                break;
+            case GPHttpResponse.SC_NOT_FOUND:
+                body = NOT_FOUND;
+                break;
+            case GPHttpResponse.SC_METHOD_NOT_ALLOWED:
+                body = METHOD_NOT_ALLOWED;
+                break;
+            case GPHttpResponse.SC_INTERNAL_SERVER_ERROR:
+                body = INTERNAL_SERVER_ERROR;
+                break;
+            default:
+                return;
+        }
+        resp.setContentType(TEXT_PLAIN);
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
+    }
+
+    /**
+     * 渲染为完整的字节数组，用于缓存
+     */
+    byte[] render(Object value) throws IOException {
+        byte[] buffer = bufferPool.acquire();
+        try {
+            ByteArrayOutputStream overflow = new ByteArrayOutputStream();
+            GPJsonWriter out = new GPJsonWriter(buffer, () -> overflow);
+            serialize(out, value);
+            if (!out.isStreaming()) {
+                return Arrays.copyOf(buffer, out.size());
+            }
+            out.finish();
+            return overflow.toByteArray();
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * 写出已经渲染好的内容
+     * @param etag 预先计算的ETag，为null时按需计算
+     */
+    void write(GPHttpRequest req, GPHttpResponse resp, String contentType, byte[] body,
+               String etag) throws IOException {
+        resp.setContentType(contentType);
+        writeBody(req, resp, contentType, body, body.length, etag, null);
+    }
+
+    /**
+     * 写出缓存的响应，ETag和压缩结果保存在缓存条目中，之后命中时不再计算和压缩
+     */
+    void write(GPHttpRequest req, GPHttpResponse resp, GPResponseCache.Entry cached) throws IOException {
+        resp.setContentType(cached.getContentType());
+        writeBody(req, resp, cached.getContentType(), cached.getBody(), cached.getBody().length, null, cached);
+    }
+
+    /**
+     * 已经由GPETagProvider设置了ETag的响应不再计算，If-None-Match在调用方法之前已经比较过；
+     * 压缩后的内容是不同的表示，ETag加上编码后缀
+     * @param cached 内容来自响应缓存时为对应的条目，否则为null
+     */
+    private void writeBody(GPHttpRequest req, GPHttpResponse resp, String contentType, byte[] body, int length,
+                           String etag, GPResponseCache.Entry cached) throws IOException {
+        String encoding = negotiate(req, resp, contentType, length);
+        if (isConditional(req, resp)) {
+            if (etag == null) {
+                etag = cached != null ? cached.getETag() : GPETags.compute(body, 0, length);
+            }
+            if (encoding != null) {
+                etag = GPETags.variant(etag, encoding);
+            }
+            resp.setHeader("ETag", etag);
+            if (GPETags.matches(req.getHeader("If-None-Match"), etag)) {
+                resp.setStatus(GPHttpResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+        if (encoding == null) {
+            resp.setContentLength(length);
+            resp.getOutputStream().write(body, 0, length);
+            return;
+        }
+        resp.setHeader("Content-Encoding", encoding);
+        if (cached != null) {
+            byte[] encoded = cached.getEncoded(encoding);
+            if (encoded == null) {
+                encoded = compress(encoding, body, length);
+                cached.putEncoded(encoding, encoded);
+            }
+            resp.setContentLength(encoded.length);
+            resp.getOutputStream().write(encoded);
+            return;
+        }
+        byte[] buffer = bufferPool.acquire();
+        try (GPDeflaterOutputStream out = compressor.open(encoding, buffer, resp::getOutputStream)) {
+            out.write(body, 0, length);
+            out.finish();
+            if (!out.isStreaming()) {
+                resp.setContentLength(out.size());
+                resp.getOutputStream().write(buffer, 0, out.size());
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * 完整压缩到字节数组中，用于保存到缓存条目
+     */
+    private byte[] compress(String encoding, byte[] body, int length) throws IOException {
+        byte[] buffer = bufferPool.acquire();
+        try {
+            ByteArrayOutputStream overflow = new ByteArrayOutputStream();
+            try (GPDeflaterOutputStream out = compressor.open(encoding, buffer, () -> overflow)) {
+                out.write(body, 0, length);
+                out.finish();
+                if (!out.isStreaming()) {
+                    return Arrays.copyOf(buffer, out.size());
+                }
+            }
+            return overflow.toByteArray();
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * 值得压缩的响应加上Vary: Accept-Encoding，再按请求选择编码
+     * @param length 未压缩的字节数，流式写出时为Integer.MAX_VALUE
+     * @return 不压缩时返回null
+     */
+    private String negotiate(GPHttpRequest req, GPHttpResponse resp, String contentType, int length) {
+        if (compressor == null || req == null || resp.containsHeader("Content-Encoding")
+                || !compressor.isCompressible(contentType, length)) {
+            return null;
+        }
+        resp.addHeader("Vary", "Accept-Encoding");
+        return GPCompressor.selectEncoding(req.getHeader("Accept-Encoding"));
+    }
+
+    private boolean isConditional(GPHttpRequest req, GPHttpResponse resp) {
+        if (!etagEnabled || req == null || resp.getStatus() != GPHttpResponse.SC_OK || resp.containsHeader("ETag")) {
+            return false;
+        }
+        String method = req.getMethod();
+        return "GET".equals(method) || "HEAD".equals(method);
+    }
+
+    /**
+     * 写出批量请求中的一项：{"path":...,"status":...,"body":...}
+     * JSON内容原样嵌入，文本内容作为字符串，没有内容时为null
+     * @param first 是否为第一项，不是时先写出逗号
+     */
+    void writeBatchItem(OutputStream os, boolean first, String path, int status,
+                        String contentType, byte[] body) throws IOException {
+        byte[] buffer = bufferPool.acquire();
+        try {
+            GPJsonWriter out = new GPJsonWriter(buffer, () -> os);
+            if (!first) {
+                out.writeByte(',');
+            }
+            out.writeRaw(BATCH_PATH);
+            out.writeString(path);
+            out.writeRaw(BATCH_STATUS);
+            out.writeLong(status);
+            out.writeRaw(BATCH_BODY);
+            if (body == null || body.length == 0) {
+                out.writeNull();
+            } else if (contentType != null && contentType.startsWith("application/json")) {
+                out.writeRaw(body);
+            } else {
+                out.writeString(new String(body, StandardCharsets.UTF_8));
+            }
+            out.writeByte('}');
+            if (out.isStreaming()) {
+                out.finish();
+            } else {
+                os.write(buffer, 0, out.size());
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * 返回值超出缓冲区时才决定是否压缩，此时大小一定超过压缩下限
+     */
+    private final class StreamingTarget implements GPJsonWriter.Target {
+        private final GPHttpRequest req;
+        private final GPHttpResponse resp;
+        private final String contentType;
+        private byte[] buffer;
+        private GPDeflaterOutputStream stream;
+
+        StreamingTarget(GPHttpRequest req, GPHttpResponse resp, String contentType) {
+            this.req = req;
+            this.resp = resp;
+            this.contentType = contentType;
+        }
+
+        @Override
+        public OutputStream open() throws IOException {
+            String encoding = negotiate(req, resp, contentType, Integer.MAX_VALUE);
+            if (encoding == null) {
+                return resp.getOutputStream();
+            }
+            resp.setHeader("Content-Encoding", encoding);
+            buffer = bufferPool.acquire();
+            stream = compressor.open(encoding, buffer, resp::getOutputStream);
+            return stream;
+        }
+
+        void finish() throws IOException {
+            if (stream != null) {
+                stream.finish();
+            }
+        }
+
+        void release() {
+            if (stream != null) {
+                stream.close();
+                bufferPool.release(buffer);
+            }
+        }
+    }
+
+    private void serialize(GPJsonWriter out, Object value) throws IOException {
+        if (value instanceof CharSequence) {
+            out.writeText((CharSequence) value);
+        } else {
+            serializers.write(out, value);
+        }
+    }
+}
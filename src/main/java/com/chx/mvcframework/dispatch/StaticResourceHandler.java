@@ -0,0 +1,339 @@
+package com.chx.mvcframework.dispatch;
+
+import com.chx.mvcframework.compress.GPCompressor;
+import com.chx.mvcframework.etag.GPETags;
+import com.chx.mvcframework.http.GPHttpRequest;
+import com.chx.mvcframework.http.GPHttpResponse;
+import com.chx.mvcframework.json.GPBufferPool;
+import com.chx.mvcframework.resource.GPResource;
+import com.chx.mvcframework.resource.GPResourceResolver;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * 静态资源，在Controller路由之前按路径前缀匹配
+ *
+ * 支持If-None-Match/If-Modified-Since返回304、单个Range返回206、存在同名.gz文件时按Accept-Encoding返回预先压缩的内容；
+ * 小文件内容缓存在内存中，大文件：
+ * 输出流本身是WritableByteChannel时直接transferTo，
+ * 有public write(ByteBuffer)方法时（如Jetty的HttpOutput）把本次请求的范围映射到内存交给容器写出，
+ * 否则经池中的缓冲区用FileChannel分块读取
+ *
+ * 配置项staticPath为逗号分隔的路径前缀（以'/'结尾）或单个文件路径，为空则关闭；
+ * staticLocation为静态资源目录，默认为web应用的根目录
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+class StaticResourceHandler {
+
+    /**
+     * Range超出文件长度
+     */
+    private static final long[] UNSATISFIABLE = new long[0];
+
+    /**
+     * 每种输出流的write(ByteBuffer)方法，没有时为null
+     */
+    private static final ClassValue<MethodHandle> BYTE_BUFFER_WRITERS = new ClassValue<MethodHandle>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            try {
+                return MethodHandles.publicLookup().findVirtual(type, "write",
+                        MethodType.methodType(void.class, ByteBuffer.class))
+                        .asType(MethodType.methodType(void.class, OutputStream.class, ByteBuffer.class));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                return null;
+            }
+        }
+    };
+
+    private final GPResourceResolver resolver;
+
+    private final String[] paths;
+
+    /**
+     * Cache-Control响应头，staticMaxAge为0时为null
+     */
+    private final String cacheControl;
+
+    private final GPBufferPool bufferPool;
+
+    StaticResourceHandler(GPResourceResolver resolver, String[] paths, String cacheControl, GPBufferPool bufferPool) {
+        this.resolver = resolver;
+        this.paths = paths;
+        this.cacheControl = cacheControl;
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * @param webappRoot web应用根目录，war没有解压时为null
+     * @return 没有配置staticPath或目录不存在时返回null
+     */
+    static StaticResourceHandler create(Properties config, String webappRoot) throws IOException {
+        List<String> paths = new ArrayList<>();
+        for (String path : config.getProperty("staticPath", "").split(",")) {
+            path = path.trim();
+            if (!path.isEmpty()) {
+                paths.add(path.startsWith("/") ? path : "/" + path);
+            }
+        }
+        String location = config.getProperty("staticLocation", "").trim();
+        if (location.isEmpty()) {
+            location = webappRoot;
+        }
+        if (paths.isEmpty() || location == null) {
+            return null;
+        }
+        Path root = Paths.get(location);
+        if (!root.toFile().isDirectory()) {
+            System.out.println("Static resources disabled, " + root + " is not a directory");
+            return null;
+        }
+        GPResourceResolver resolver = new GPResourceResolver(root,
+                Long.parseLong(config.getProperty("staticCheckInterval", "1000").trim()),
+                Long.parseLong(config.getProperty("staticCacheMaxBytes", "16777216").trim()),
+                Integer.parseInt(config.getProperty("staticCacheFileMaxSize", "65536").trim()));
+        long maxAge = Long.parseLong(config.getProperty("staticMaxAge", "0").trim());
+        return new StaticResourceHandler(resolver, paths.toArray(new String[0]),
+                maxAge > 0 ? "public, max-age=" + maxAge : null,
+                new GPBufferPool(Integer.parseInt(config.getProperty("responseBufferSize", "8192")), 64));
+    }
+
+    /**
+     * @param from 相对路径在url中的起始位置
+     */
+    boolean matches(String url, int from) {
+        for (String path : paths) {
+            if (path.endsWith("/") ? url.startsWith(path, from)
+                    : url.length() - from == path.length() && url.startsWith(path, from)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void handle(GPHttpRequest req, GPHttpResponse resp, String url, int from) throws IOException {
+        String method = req.getMethod();
+        boolean head = "HEAD".equals(method);
+        if (!head && !"GET".equals(method)) {
+            resp.setHeader("Allow", "GET, HEAD");
+            ResponseBodyWriter.writeStatus(resp, GPHttpResponse.SC_METHOD_NOT_ALLOWED);
+            return;
+        }
+        String path = url.substring(from);
+        GPResource resource = null;
+        if (path.indexOf('%') >= 0) {
+            try {
+                path = URLDecoder.decode(path.replace("+", "%2B"), "UTF-8");
+            } catch (IllegalArgumentException e) {
+                path = null;
+            }
+        }
+        if (path != null) {
+            resource = resolver.resolve(path);
+        }
+        if (resource == null) {
+            ResponseBodyWriter.writeStatus(resp, GPHttpResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        // 有Range时返回未压缩内容的一部分，不使用.gz文件
+        String range = req.getHeader("Range");
+        GPResource selected = resource;
+        String etag = resource.getETag();
+        if (resource.getGzip() != null) {
+            resp.addHeader("Vary", "Accept-Encoding");
+            if (range == null && GPCompressor.GZIP.equals(GPCompressor.selectEncoding(req.getHeader("Accept-Encoding")))) {
+                selected = resource.getGzip();
+                etag = GPETags.variant(etag, GPCompressor.GZIP);
+                resp.setHeader("Content-Encoding", GPCompressor.GZIP);
+            }
+        }
+        resp.setContentType(resource.getContentType());
+        resp.setDateHeader("Last-Modified", resource.getLastModified());
+        resp.setHeader("ETag", etag);
+        resp.setHeader("Accept-Ranges", "bytes");
+        if (cacheControl != null) {
+            resp.setHeader("Cache-Control", cacheControl);
+        }
+        if (isNotModified(req, resource, etag)) {
+            resp.setStatus(GPHttpResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long length = selected.getLength();
+        long start = 0;
+        long end = length - 1;
+        if (range != null && isRangeApplicable(req, resource, etag)) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == UNSATISFIABLE) {
+                resp.setStatus(GPHttpResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                resp.setHeader("Content-Range", "bytes */" + length);
+                return;
+            }
+            if (bounds != null) {
+                start = bounds[0];
+                end = bounds[1];
+                resp.setStatus(GPHttpResponse.SC_PARTIAL_CONTENT);
+                resp.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+        long count = end - start + 1;
+        resp.setContentLength(count);
+        if (head || count == 0) {
+            return;
+        }
+        byte[] content = resolver.getContent(selected);
+        if (content != null && content.length == length) {
+            resp.getOutputStream().write(content, (int) start, (int) count);
+        } else {
+            writeFile(selected, start, count, resp.getOutputStream());
+        }
+    }
+
+    /**
+     * If-None-Match优先；没有时比较If-Modified-Since，精度为秒
+     */
+    private static boolean isNotModified(GPHttpRequest req, GPResource resource, String etag) {
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return GPETags.matches(ifNoneMatch, etag);
+        }
+        long ifModifiedSince = dateHeader(req, "If-Modified-Since");
+        return ifModifiedSince >= 0 && resource.getLastModified() <= ifModifiedSince;
+    }
+
+    /**
+     * If-Range与当前的ETag或Last-Modified一致时才返回部分内容，否则返回完整内容
+     */
+    private static boolean isRangeApplicable(GPHttpRequest req, GPResource resource, String etag) {
+        String ifRange = req.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        return dateHeader(req, "If-Range") == resource.getLastModified();
+    }
+
+    private static long dateHeader(GPHttpRequest req, String name) {
+        try {
+            return req.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 只支持单个范围：bytes=a-b、bytes=a-、bytes=-n
+     * @return 格式不支持时返回null（返回完整内容），超出文件长度时返回UNSATISFIABLE
+     */
+    static long[] parseRange(String range, long length) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return UNSATISFIABLE;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = length - 1;
+                if (!last.isEmpty()) {
+                    long requested = Long.parseLong(last);
+                    if (requested < start) {
+                        return null;
+                    }
+                    end = Math.min(requested, end);
+                }
+            }
+            if (start < 0 || start >= length) {
+                return UNSATISFIABLE;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void writeFile(GPResource resource, long start, long count, OutputStream out) throws IOException {
+        if (out instanceof WritableByteChannel) {
+            try (FileChannel channel = FileChannel.open(resource.getFile(), StandardOpenOption.READ)) {
+                long position = start;
+                long end = start + count;
+                while (position < end) {
+                    position += channel.transferTo(position, end - position, (WritableByteChannel) out);
+                }
+            }
+            return;
+        }
+        MethodHandle writer = BYTE_BUFFER_WRITERS.get(out.getClass());
+        ByteBuffer mapped = writer == null ? null : resource.map(start, count);
+        if (mapped == null) {
+            copy(resource, start, count, out);
+            return;
+        }
+        try {
+            writer.invokeExact(out, mapped);
+        } catch (InternalError e) {
+            // 写出过程中文件被截断，访问映射出错只影响本次请求
+            throw new IOException("File truncated while writing: " + resource.getFile(), e);
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * 用FileChannel按块读取，文件被截断时读到末尾抛出IOException
+     */
+    private void copy(GPResource resource, long start, long count, OutputStream out) throws IOException {
+        byte[] buffer = bufferPool.acquire();
+        try (FileChannel channel = FileChannel.open(resource.getFile(), StandardOpenOption.READ)) {
+            ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+            long position = start;
+            long end = start + count;
+            while (position < end) {
+                wrapped.clear().limit((int) Math.min(buffer.length, end - position));
+                int n = channel.read(wrapped, position);
+                if (n < 0) {
+                    throw new IOException("Unexpected end of " + resource.getFile());
+                }
+                out.write(buffer, 0, n);
+                position += n;
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+}
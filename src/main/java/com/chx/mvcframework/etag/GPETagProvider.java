@@ -0,0 +1,22 @@
+package com.chx.mvcframework.etag;
+
+import com.chx.mvcframework.http.GPHttpRequest;
+
+/**
+ * 在调用Controller方法之前提供资源的ETag，通过GPETag注解指定给方法
+ * 通常由资源的版本号或最后修改时间得到，比生成响应本身便宜得多；
+ * If-None-Match匹配时框架直接返回304，不再绑定参数和调用方法
+ *
+ * 实现类可以是GPService bean（可以注入其他bean），否则使用无参构造方法创建
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public interface GPETagProvider {
+
+    /**
+     * @param req 当前请求，可以读取参数和路径
+     * @return 不含引号的ETag，如"v42"；无法提前确定时返回null，由框架按响应内容计算
+     */
+    String getETag(GPHttpRequest req);
+}
@@ -0,0 +1,69 @@
+package com.chx.mvcframework.etag;
+
+import java.util.zip.CRC32;
+
+/**
+ * ETag的计算和If-None-Match的比较
+ *
+ * ETag为响应体的CRC32加上长度，如"1c291ca3-2f"，不是加密哈希，只用于判断内容是否变化；
+ * CRC32在JDK中有硬件指令实现，计算开销远小于写出响应
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public final class GPETags {
+
+    private GPETags() {
+    }
+
+    /**
+     * @return 带引号的强ETag
+     */
+    public static String compute(byte[] body, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(body, offset, length);
+        return "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(length) + "\"";
+    }
+
+    /**
+     * 为GPETagProvider提供的值加上引号
+     */
+    public static String quote(String tag) {
+        return tag.startsWith("\"") || tag.startsWith("W/\"") ? tag : "\"" + tag + "\"";
+    }
+
+    /**
+     * 同一内容压缩后的ETag，如"1c291ca3-2f"用gzip压缩后为"1c291ca3-2f-gzip"
+     */
+    public static String variant(String etag, String encoding) {
+        return etag.substring(0, etag.length() - 1) + "-" + encoding + "\"";
+    }
+
+    /**
+     * If-None-Match使用弱比较：忽略W/前缀，*匹配任意ETag
+     * @param ifNoneMatch 请求头，可以包含逗号分隔的多个ETag
+     * @param etag 带引号的ETag
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        String opaque = opaque(etag);
+        int length = ifNoneMatch.length();
+        int i = 0;
+        while (i < length) {
+            int comma = ifNoneMatch.indexOf(',', i);
+            int end = comma < 0 ? length : comma;
+            String candidate = ifNoneMatch.substring(i, end).trim();
+            if ("*".equals(candidate) || opaque(candidate).equals(opaque)) {
+                return true;
+            }
+            i = end + 1;
+        }
+        return false;
+    }
+
+    private static String opaque(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+}
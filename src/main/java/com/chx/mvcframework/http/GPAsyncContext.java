@@ -0,0 +1,31 @@
+package com.chx.mvcframework.http;
+
+/**
+ * GPHttpRequest.startAsync()返回的异步上下文
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public interface GPAsyncContext {
+
+    /**
+     * @param timeout 超时时间（毫秒），0表示不超时
+     * @param listener 超时或连接出错时在容器线程上调用，可以为null
+     */
+    void setTimeout(long timeout, Listener listener);
+
+    /**
+     * 结束响应
+     */
+    void complete();
+
+    interface Listener {
+
+        void onTimeout();
+
+        /**
+         * 连接已经出错，不需要也不能再写响应
+         */
+        void onError();
+    }
+}
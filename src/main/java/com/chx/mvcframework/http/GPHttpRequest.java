@@ -0,0 +1,67 @@
+package com.chx.mvcframework.http;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 与容器无关的HTTP请求，方法与HttpServletRequest中同名方法的语义相同
+ * 由servlet容器的适配器或内嵌的GPHttpServer实现，框架只通过这个接口读取请求
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public interface GPHttpRequest {
+
+    String getMethod();
+
+    /**
+     * @return 包含contextPath、不含查询参数的原始路径
+     */
+    String getRequestURI();
+
+    String getContextPath();
+
+    String getQueryString();
+
+    String getParameter(String name);
+
+    String[] getParameterValues(String name);
+
+    Map<String, String[]> getParameterMap();
+
+    /**
+     * @return application/x-www-form-urlencoded请求体的原始内容（未解码），不是表单请求时返回空串；
+     * 只有读取请求体才能获取、而读取后容器无法再解析表单参数时返回null
+     */
+    String getFormBody();
+
+    /**
+     * @return 请求头，名称不区分大小写，没有时返回null
+     */
+    String getHeader(String name);
+
+    /**
+     * @return 日期请求头的毫秒数，没有时返回-1
+     * @throws IllegalArgumentException 不是HTTP日期格式
+     */
+    long getDateHeader(String name);
+
+    BufferedReader getReader() throws IOException;
+
+    /**
+     * @return 是否可以调用startAsync在当前线程返回后继续处理
+     */
+    boolean isAsyncSupported();
+
+    /**
+     * 当前线程返回后响应不结束，直到调用GPAsyncContext.complete()
+     */
+    GPAsyncContext startAsync();
+
+    /**
+     * 获取容器原生的请求对象，如HttpServletRequest，用于注入Controller方法参数
+     * @return 不是该类型时返回null
+     */
+    <T> T unwrap(Class<T> type);
+}
@@ -0,0 +1,63 @@
+package com.chx.mvcframework.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 与容器无关的HTTP响应，方法与HttpServletResponse中同名方法的语义相同
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public interface GPHttpResponse {
+
+    int SC_OK = 200;
+
+    int SC_PARTIAL_CONTENT = 206;
+
+    int SC_NOT_MODIFIED = 304;
+
+    int SC_BAD_REQUEST = 400;
+
+    int SC_NOT_FOUND = 404;
+
+    int SC_METHOD_NOT_ALLOWED = 405;
+
+    int SC_REQUEST_ENTITY_TOO_LARGE = 413;
+
+    int SC_REQUESTED_RANGE_NOT_SATISFIABLE = 416;
+
+    int SC_INTERNAL_SERVER_ERROR = 500;
+
+    int SC_SERVICE_UNAVAILABLE = 503;
+
+    int SC_GATEWAY_TIMEOUT = 504;
+
+    int getStatus();
+
+    void setStatus(int status);
+
+    void setHeader(String name, String value);
+
+    void addHeader(String name, String value);
+
+    void setDateHeader(String name, long date);
+
+    boolean containsHeader(String name);
+
+    String getHeader(String name);
+
+    void setContentType(String type);
+
+    void setContentLength(long length);
+
+    OutputStream getOutputStream() throws IOException;
+
+    boolean isCommitted();
+
+    /**
+     * 获取容器原生的响应对象，如HttpServletResponse，用于注入Controller方法参数
+     * @return 不是该类型时返回null
+     */
+    <T> T unwrap(Class<T> type);
+}
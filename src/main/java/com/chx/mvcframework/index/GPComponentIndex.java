@@ -0,0 +1,422 @@
+package com.chx.mvcframework.index;
+
+import com.chx.mvcframework.annotation.GPAutowired;
+import com.chx.mvcframework.annotation.GPController;
+import com.chx.mvcframework.annotation.GPLazy;
+import com.chx.mvcframework.annotation.GPRequestMapping;
+import com.chx.mvcframework.annotation.GPService;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 组件索引：保存bean、注入点和路由
+ * 编译期由GPIndexProcessor生成到META-INF/gpmvc/components.index，
+ * 启动时直接加载，不再扫描目录、加载所有类和反射判断注解；
+ * 没有索引时由扫描到的类反射生成，两种方式走同一套初始化流程
+ *
+ * 文件格式为每行一条记录，字段用Tab分隔：
+ * <pre>
+ * bean    controller|service  类名  beanName  接口1,接口2  lazy|eager  构造参数类型1,构造参数类型2
+ * inject  类名  字段名  beanName
+ * route   类名  方法名  参数类型1,参数类型2  url
+ * </pre>
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class GPComponentIndex {
+
+    public static final String LOCATION = "META-INF/gpmvc/components.index";
+
+    public static final String CONTROLLER = "controller";
+
+    public static final String SERVICE = "service";
+
+    private static final Map<String, Class<?>> PRIMITIVES = new HashMap<>();
+
+    static {
+        for (Class<?> type : new Class<?>[]{int.class, long.class, short.class, byte.class,
+                double.class, float.class, boolean.class, char.class}) {
+            PRIMITIVES.put(type.getName(), type);
+        }
+    }
+
+    private final List<BeanDefinition> beans = new ArrayList<>();
+
+    private final List<InjectionPoint> injections = new ArrayList<>();
+
+    private final List<RouteDefinition> routes = new ArrayList<>();
+
+    public List<BeanDefinition> getBeans() {
+        return beans;
+    }
+
+    public List<InjectionPoint> getInjections() {
+        return injections;
+    }
+
+    public List<RouteDefinition> getRoutes() {
+        return routes;
+    }
+
+    public void addBean(BeanDefinition bean) {
+        beans.add(bean);
+    }
+
+    public void addInjection(InjectionPoint injection) {
+        injections.add(injection);
+    }
+
+    public void addRoute(RouteDefinition route) {
+        routes.add(route);
+    }
+
+    /**
+     * 加入另一个索引中的全部组件，已经存在的类跳过
+     */
+    public void merge(GPComponentIndex other) {
+        Set<String> classNames = new HashSet<>();
+        for (BeanDefinition bean : beans) {
+            classNames.add(bean.className);
+        }
+        for (BeanDefinition bean : other.beans) {
+            if (classNames.contains(bean.className)) {
+                continue;
+            }
+            beans.add(bean);
+            for (InjectionPoint injection : other.injections) {
+                if (injection.className.equals(bean.className)) {
+                    injections.add(injection);
+                }
+            }
+            for (RouteDefinition route : other.routes) {
+                if (route.className.equals(bean.className)) {
+                    routes.add(route);
+                }
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return beans.isEmpty();
+    }
+
+    /**
+     * 只保留指定包下的组件
+     */
+    public GPComponentIndex filter(String... packages) {
+        GPComponentIndex index = new GPComponentIndex();
+        for (BeanDefinition bean : beans) {
+            if (inPackages(bean.className, packages)) {
+                index.beans.add(bean);
+            }
+        }
+        for (InjectionPoint injection : injections) {
+            if (inPackages(injection.className, packages)) {
+                index.injections.add(injection);
+            }
+        }
+        for (RouteDefinition route : routes) {
+            if (inPackages(route.className, packages)) {
+                index.routes.add(route);
+            }
+        }
+        return index;
+    }
+
+    private static boolean inPackages(String className, String[] packages) {
+        for (String scanPackage : packages) {
+            if (className.startsWith(scanPackage.trim() + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 反射分析扫描到的类，没有编译期索引时使用
+     */
+    public static GPComponentIndex fromClasses(Iterable<Class<?>> classes) {
+        GPComponentIndex index = new GPComponentIndex();
+        for (Class<?> clazz : classes) {
+            if (clazz.isAnnotationPresent(GPController.class)) {
+                // Spring默认类名首字母小写
+                index.addBean(new BeanDefinition(CONTROLLER, clazz.getName(), toLowerFirstCase(clazz.getSimpleName()),
+                        Collections.<String>emptyList(), clazz.isAnnotationPresent(GPLazy.class), constructorArguments(clazz)));
+                index.addRoutes(clazz);
+            } else if (clazz.isAnnotationPresent(GPService.class)) {
+                // 自定义beanName，默认类名首字母小写
+                String beanName = clazz.getAnnotation(GPService.class).value();
+                if ("".equals(beanName)) {
+                    beanName = toLowerFirstCase(clazz.getSimpleName());
+                }
+                List<String> interfaces = new ArrayList<>();
+                for (Class<?> anInterface : clazz.getInterfaces()) {
+                    interfaces.add(anInterface.getName());
+                }
+                index.addBean(new BeanDefinition(SERVICE, clazz.getName(), beanName, interfaces,
+                        clazz.isAnnotationPresent(GPLazy.class), constructorArguments(clazz)));
+            } else {
+                continue;
+            }
+            for (Field field : clazz.getDeclaredFields()) {
+                if (field.isAnnotationPresent(GPAutowired.class)) {
+                    index.addInjection(new InjectionPoint(clazz.getName(), field.getName(),
+                            autowiredBeanName(field.getAnnotation(GPAutowired.class).value(), field.getType().getName())));
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 构造器注入：优先使用加了GPAutowired注解的构造器，其次是唯一的构造器
+     */
+    private static List<String> constructorArguments(Class<?> clazz) {
+        Constructor<?>[] constructors = clazz.getDeclaredConstructors();
+        Constructor<?> selected = constructors.length == 1 ? constructors[0] : null;
+        for (Constructor<?> constructor : constructors) {
+            if (constructor.isAnnotationPresent(GPAutowired.class)) {
+                selected = constructor;
+            }
+        }
+        List<String> arguments = new ArrayList<>();
+        if (selected != null) {
+            for (Class<?> type : selected.getParameterTypes()) {
+                arguments.add(typeName(type));
+            }
+        }
+        return arguments;
+    }
+
+    private void addRoutes(Class<?> clazz) {
+        // 保存controller类上RequestMapping的值
+        String baseUrl = "";
+        if (clazz.isAnnotationPresent(GPRequestMapping.class)) {
+            baseUrl = clazz.getAnnotation(GPRequestMapping.class).value();
+        }
+        // 获取所有public方法
+        for (Method method : clazz.getMethods()) {
+            if (!method.isAnnotationPresent(GPRequestMapping.class)) {
+                continue;
+            }
+            List<String> parameterTypes = new ArrayList<>();
+            for (Class<?> type : method.getParameterTypes()) {
+                parameterTypes.add(typeName(type));
+            }
+            String url = joinUrl(baseUrl, method.getAnnotation(GPRequestMapping.class).value());
+            addRoute(new RouteDefinition(clazz.getName(), method.getName(), parameterTypes, url));
+        }
+    }
+
+    /**
+     * 如果没有指定beanName默认按类型注入
+     */
+    public static String autowiredBeanName(String value, String fieldTypeName) {
+        return "".equals(value) ? fieldTypeName : toLowerFirstCase(value);
+    }
+
+    public static String joinUrl(String baseUrl, String value) {
+        return ("/" + baseUrl + "/" + value).replaceAll("/+", "/");
+    }
+
+    public static String toLowerFirstCase(String simpleName) {
+        char[] chars = simpleName.toCharArray();
+        chars[0] += 32;
+        return String.valueOf(chars);
+    }
+
+    /**
+     * 数组写成int[]、java.lang.String[]的形式
+     */
+    private static String typeName(Class<?> type) {
+        return type.isArray() ? typeName(type.getComponentType()) + "[]" : type.getName();
+    }
+
+    public static Class<?> resolveType(String name, ClassLoader classLoader) throws ClassNotFoundException {
+        if (name.endsWith("[]")) {
+            Class<?> component = resolveType(name.substring(0, name.length() - 2), classLoader);
+            return Array.newInstance(component, 0).getClass();
+        }
+        Class<?> primitive = PRIMITIVES.get(name);
+        return primitive != null ? primitive : Class.forName(name, false, classLoader);
+    }
+
+    public void write(Writer writer) throws IOException {
+        writer.write("# generated by GPIndexProcessor, do not edit\n");
+        for (BeanDefinition bean : beans) {
+            writeLine(writer, "bean", bean.kind, bean.className, bean.beanName, String.join(",", bean.interfaces),
+                    bean.lazy ? "lazy" : "eager", String.join(",", bean.constructorArguments));
+        }
+        for (InjectionPoint injection : injections) {
+            writeLine(writer, "inject", injection.className, injection.fieldName, injection.beanName);
+        }
+        for (RouteDefinition route : routes) {
+            writeLine(writer, "route", route.className, route.methodName,
+                    String.join(",", route.parameterTypes), route.url);
+        }
+    }
+
+    private static void writeLine(Writer writer, String... fields) throws IOException {
+        writer.write(String.join("\t", fields));
+        writer.write('\n');
+    }
+
+    public static GPComponentIndex read(Reader reader) throws IOException {
+        GPComponentIndex index = new GPComponentIndex();
+        BufferedReader in = new BufferedReader(reader);
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\t", -1);
+            switch (fields[0]) {
+                case "bean":
+                    index.addBean(new BeanDefinition(fields[1], fields[2], fields[3], splitList(fields[4]),
+                            "lazy".equals(fields[5]), splitList(fields[6])));
+                    break;
+                case "inject":
+                    index.addInjection(new InjectionPoint(fields[1], fields[2], fields[3]));
+                    break;
+                case "route":
+                    index.addRoute(new RouteDefinition(fields[1], fields[2], splitList(fields[3]), fields[4]));
+                    break;
+                default:
+                    throw new IOException("Malformed index line: " + line);
+            }
+        }
+        return index;
+    }
+
+    private static List<String> splitList(String value) {
+        return value.isEmpty() ? Collections.<String>emptyList() : Arrays.asList(value.split(","));
+    }
+
+    /**
+     * 加了GPController或GPService注解的类
+     */
+    public static class BeanDefinition {
+        private final String kind;
+        private final String className;
+        private final String beanName;
+        private final List<String> interfaces;
+        /**
+         * 加了GPLazy注解，第一次使用时才创建
+         */
+        private final boolean lazy;
+        /**
+         * 构造器注入的参数类型，按类型注入；为空表示使用无参构造器
+         */
+        private final List<String> constructorArguments;
+
+        public BeanDefinition(String kind, String className, String beanName, List<String> interfaces,
+                              boolean lazy, List<String> constructorArguments) {
+            this.kind = kind;
+            this.className = className;
+            this.beanName = beanName;
+            this.interfaces = interfaces;
+            this.lazy = lazy;
+            this.constructorArguments = constructorArguments;
+        }
+
+        public String getKind() {
+            return kind;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getBeanName() {
+            return beanName;
+        }
+
+        public List<String> getInterfaces() {
+            return interfaces;
+        }
+
+        public boolean isLazy() {
+            return lazy;
+        }
+
+        public List<String> getConstructorArguments() {
+            return constructorArguments;
+        }
+    }
+
+    /**
+     * 加了GPAutowired注解的字段
+     */
+    public static class InjectionPoint {
+        private final String className;
+        private final String fieldName;
+        private final String beanName;
+
+        public InjectionPoint(String className, String fieldName, String beanName) {
+            this.className = className;
+            this.fieldName = fieldName;
+            this.beanName = beanName;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getFieldName() {
+            return fieldName;
+        }
+
+        public String getBeanName() {
+            return beanName;
+        }
+    }
+
+    /**
+     * 加了GPRequestMapping注解的方法
+     */
+    public static class RouteDefinition {
+        private final String className;
+        private final String methodName;
+        private final List<String> parameterTypes;
+        private final String url;
+
+        public RouteDefinition(String className, String methodName, List<String> parameterTypes, String url) {
+            this.className = className;
+            this.methodName = methodName;
+            this.parameterTypes = parameterTypes;
+            this.url = url;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getMethodName() {
+            return methodName;
+        }
+
+        public List<String> getParameterTypes() {
+            return parameterTypes;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+    }
+}
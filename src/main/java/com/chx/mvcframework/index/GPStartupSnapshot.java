@@ -0,0 +1,283 @@
+package com.chx.mvcframework.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Checksum;
+
+/**
+ * 启动快照：上次初始化成功后的组件索引（bean、注入点和路由）以二进制格式保存到文件，
+ * 下次启动时指纹（扫描的class文件和配置文件的摘要）一致就直接加载，不再扫描类路径或读取、合并编译期索引
+ *
+ * 文件格式（DataOutputStream，整数为变长编码）：
+ * <pre>
+ * magic(int) version(short) 指纹长度 指纹
+ * 字符串个数 字符串...      类名、beanName、url等只保存一次，后面用下标引用
+ * bean个数   (kind controller=0|service=1, 类名, beanName, 接口列表, lazy, 构造参数类型列表)...
+ * inject个数 (类名, 字段名, beanName)...
+ * route个数  (类名, 方法名, 参数类型列表, url)...
+ * </pre>
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class GPStartupSnapshot {
+
+    private static final int MAGIC = 0x47504D56;
+
+    /**
+     * 格式变化时加1，旧版本的快照被忽略
+     */
+    public static final int VERSION = 1;
+
+    private GPStartupSnapshot() {
+    }
+
+    /**
+     * @return 快照中的索引；文件不存在、格式不对或指纹不一致时返回null
+     */
+    public static GPComponentIndex read(Path file, byte[] fingerprint) {
+        try {
+            if (!isOwnedByCurrentUser(file)) {
+                System.out.println("Ignore startup snapshot " + file + " not owned by " + System.getProperty("user.name"));
+                return null;
+            }
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.out.println("Ignore unreadable startup snapshot " + file + ": " + e);
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                return null;
+            }
+            byte[] stored = new byte[readVarInt(in)];
+            in.readFully(stored);
+            if (!Arrays.equals(stored, fingerprint)) {
+                return null;
+            }
+            String[] strings = new String[readVarInt(in)];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = in.readUTF();
+            }
+            GPComponentIndex index = new GPComponentIndex();
+            for (int i = readVarInt(in); i > 0; i--) {
+                String kind = in.readByte() == 0 ? GPComponentIndex.CONTROLLER : GPComponentIndex.SERVICE;
+                index.addBean(new GPComponentIndex.BeanDefinition(kind, strings[readVarInt(in)], strings[readVarInt(in)],
+                        readList(in, strings), in.readBoolean(), readList(in, strings)));
+            }
+            for (int i = readVarInt(in); i > 0; i--) {
+                index.addInjection(new GPComponentIndex.InjectionPoint(strings[readVarInt(in)], strings[readVarInt(in)],
+                        strings[readVarInt(in)]));
+            }
+            for (int i = readVarInt(in); i > 0; i--) {
+                index.addRoute(new GPComponentIndex.RouteDefinition(strings[readVarInt(in)], strings[readVarInt(in)],
+                        readList(in, strings), strings[readVarInt(in)]));
+            }
+            return index;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            // 损坏的快照当作不存在，初始化后重新写入
+            System.out.println("Ignore unreadable startup snapshot " + file + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * 快照中的类名会被加载和实例化，只读取当前用户自己的文件，其他用户放进来的文件直接忽略
+     */
+    private static boolean isOwnedByCurrentUser(Path file) throws IOException {
+        UserPrincipal owner = Files.getOwner(file);
+        UserPrincipal user = file.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        return owner.equals(user);
+    }
+
+    /**
+     * 先写临时文件再改名，并发启动的进程不会读到写了一半的快照
+     */
+    public static void write(Path file, byte[] fingerprint, GPComponentIndex index) throws IOException {
+        StringTable strings = new StringTable();
+        for (GPComponentIndex.BeanDefinition bean : index.getBeans()) {
+            strings.add(bean.getClassName());
+            strings.add(bean.getBeanName());
+            strings.addAll(bean.getInterfaces());
+            strings.addAll(bean.getConstructorArguments());
+        }
+        for (GPComponentIndex.InjectionPoint injection : index.getInjections()) {
+            strings.add(injection.getClassName());
+            strings.add(injection.getFieldName());
+            strings.add(injection.getBeanName());
+        }
+        for (GPComponentIndex.RouteDefinition route : index.getRoutes()) {
+            strings.add(route.getClassName());
+            strings.add(route.getMethodName());
+            strings.addAll(route.getParameterTypes());
+            strings.add(route.getUrl());
+        }
+
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                writeVarInt(out, fingerprint.length);
+                out.write(fingerprint);
+                writeVarInt(out, strings.values.size());
+                for (String value : strings.values) {
+                    out.writeUTF(value);
+                }
+                writeVarInt(out, index.getBeans().size());
+                for (GPComponentIndex.BeanDefinition bean : index.getBeans()) {
+                    out.writeByte(GPComponentIndex.CONTROLLER.equals(bean.getKind()) ? 0 : 1);
+                    writeVarInt(out, strings.indexOf(bean.getClassName()));
+                    writeVarInt(out, strings.indexOf(bean.getBeanName()));
+                    writeList(out, strings, bean.getInterfaces());
+                    out.writeBoolean(bean.isLazy());
+                    writeList(out, strings, bean.getConstructorArguments());
+                }
+                writeVarInt(out, index.getInjections().size());
+                for (GPComponentIndex.InjectionPoint injection : index.getInjections()) {
+                    writeVarInt(out, strings.indexOf(injection.getClassName()));
+                    writeVarInt(out, strings.indexOf(injection.getFieldName()));
+                    writeVarInt(out, strings.indexOf(injection.getBeanName()));
+                }
+                writeVarInt(out, index.getRoutes().size());
+                for (GPComponentIndex.RouteDefinition route : index.getRoutes()) {
+                    writeVarInt(out, strings.indexOf(route.getClassName()));
+                    writeVarInt(out, strings.indexOf(route.getMethodName()));
+                    writeList(out, strings, route.getParameterTypes());
+                    writeVarInt(out, strings.indexOf(route.getUrl()));
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static List<String> readList(DataInputStream in, String[] strings) throws IOException {
+        int size = readVarInt(in);
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(strings[readVarInt(in)]);
+        }
+        return values;
+    }
+
+    private static void writeList(DataOutputStream out, StringTable strings, List<String> values) throws IOException {
+        writeVarInt(out, values.size());
+        for (String value : values) {
+            writeVarInt(out, strings.indexOf(value));
+        }
+    }
+
+    /**
+     * 每字节7位，最高位表示后面还有字节
+     */
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * 64位FNV-1a校验和，计算快照的指纹
+     * 只用于判断文件是否变化，不需要加密散列，避免启动时初始化MessageDigest的安全提供者
+     */
+    public static final class Fingerprint implements Checksum {
+
+        private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+
+        private static final long PRIME = 0x100000001b3L;
+
+        private long hash = OFFSET_BASIS;
+
+        @Override
+        public void update(int b) {
+            hash = (hash ^ (b & 0xFF)) * PRIME;
+        }
+
+        @Override
+        public void update(byte[] b, int off, int len) {
+            long h = hash;
+            for (int i = off; i < off + len; i++) {
+                h = (h ^ (b[i] & 0xFF)) * PRIME;
+            }
+            hash = h;
+        }
+
+        @Override
+        public long getValue() {
+            return hash;
+        }
+
+        @Override
+        public void reset() {
+            hash = OFFSET_BASIS;
+        }
+
+        /**
+         * @return 快照文件中保存的指纹
+         */
+        public byte[] toBytes() {
+            byte[] bytes = new byte[8];
+            for (int i = 0; i < 8; i++) {
+                bytes[i] = (byte) (hash >>> (56 - i * 8));
+            }
+            return bytes;
+        }
+    }
+
+    private static class StringTable {
+        private final List<String> values = new ArrayList<>();
+        private final Map<String, Integer> indexes = new HashMap<>();
+
+        void add(String value) {
+            if (!indexes.containsKey(value)) {
+                indexes.put(value, values.size());
+                values.add(value);
+            }
+        }
+
+        void addAll(List<String> list) {
+            for (String value : list) {
+                add(value);
+            }
+        }
+
+        int indexOf(String value) {
+            return indexes.get(value);
+        }
+    }
+}
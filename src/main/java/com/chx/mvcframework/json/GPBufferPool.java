@@ -0,0 +1,37 @@
+package com.chx.mvcframework.json;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 固定大小的字节缓冲区池，避免每个响应都分配新的缓冲区
+ * 池空时临时分配，池满时归还的缓冲区直接丢弃，所以池中最多保留capacity个
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class GPBufferPool {
+
+    private final int bufferSize;
+
+    private final ArrayBlockingQueue<byte[]> buffers;
+
+    public GPBufferPool(int bufferSize, int capacity) {
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    }
+
+    public byte[] acquire() {
+        byte[] buffer = buffers.poll();
+        return buffer != null ? buffer : new byte[bufferSize];
+    }
+
+    public void release(byte[] buffer) {
+        if (buffer != null && buffer.length == bufferSize) {
+            buffers.offer(buffer);
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,19 @@
+package com.chx.mvcframework.json;
+
+import java.io.IOException;
+
+/**
+ * 把某个类型的值写为JSON，每个类型在第一次使用时生成一个并缓存
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+@FunctionalInterface
+public interface GPJsonSerializer<T> {
+
+    /**
+     * @param out 输出
+     * @param value 非空的值
+     */
+    void write(GPJsonWriter out, T value) throws IOException;
+}
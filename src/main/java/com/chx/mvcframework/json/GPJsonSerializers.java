@@ -0,0 +1,411 @@
+package com.chx.mvcframework.json;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 序列化器注册表，每个运行时类型的序列化器在第一次使用时生成并缓存，之后只查一次表
+ *
+ * POJO的序列化器在生成时找出所有getter（getX/isX）和public字段，
+ * 预先编码好属性名，并把getter转换为MethodHandle，序列化时不再反射；
+ * 基本类型的getter不装箱，直接写出数字
+ *
+ * 支持：String、基本类型及其包装类、BigDecimal、BigInteger、枚举、java.time类型、Date（毫秒数）、
+ * UUID、Optional、Map、Iterable、数组，以及由上述类型组成的POJO
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class GPJsonSerializers {
+
+    private final Map<Class<?>, GPJsonSerializer<Object>> serializers = new ConcurrentHashMap<>();
+
+    public GPJsonSerializers() {
+        register(String.class, GPJsonWriter::writeString);
+        register(Boolean.class, (out, value) -> out.writeBoolean(value));
+        register(Integer.class, (out, value) -> out.writeLong(value));
+        register(Long.class, (out, value) -> out.writeLong(value));
+        register(Short.class, (out, value) -> out.writeLong(value));
+        register(Byte.class, (out, value) -> out.writeLong(value));
+        register(Double.class, (out, value) -> out.writeDouble(value));
+        register(Float.class, (out, value) -> writeFloat(out, value));
+        register(Character.class, (out, value) -> out.writeString(String.valueOf(value)));
+        register(BigDecimal.class, (out, value) -> out.writeAscii(value.toString()));
+        register(BigInteger.class, (out, value) -> out.writeAscii(value.toString()));
+        register(UUID.class, (out, value) -> out.writeString(value.toString()));
+        register(Date.class, (out, value) -> out.writeLong(value.getTime()));
+        register(Duration.class, (out, value) -> out.writeString(value.toString()));
+        register(int[].class, (out, value) -> {
+            out.writeByte('[');
+            for (int i = 0; i < value.length; i++) {
+                if (i > 0) {
+                    out.writeByte(',');
+                }
+                out.writeLong(value[i]);
+            }
+            out.writeByte(']');
+        });
+        register(long[].class, (out, value) -> {
+            out.writeByte('[');
+            for (int i = 0; i < value.length; i++) {
+                if (i > 0) {
+                    out.writeByte(',');
+                }
+                out.writeLong(value[i]);
+            }
+            out.writeByte(']');
+        });
+        register(double[].class, (out, value) -> {
+            out.writeByte('[');
+            for (int i = 0; i < value.length; i++) {
+                if (i > 0) {
+                    out.writeByte(',');
+                }
+                out.writeDouble(value[i]);
+            }
+            out.writeByte(']');
+        });
+        register(boolean[].class, (out, value) -> {
+            out.writeByte('[');
+            for (int i = 0; i < value.length; i++) {
+                if (i > 0) {
+                    out.writeByte(',');
+                }
+                out.writeBoolean(value[i]);
+            }
+            out.writeByte(']');
+        });
+        register(char[].class, (out, value) -> out.writeString(new String(value)));
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> void register(Class<T> type, GPJsonSerializer<? super T> serializer) {
+        serializers.put(type, (GPJsonSerializer<Object>) serializer);
+    }
+
+    /**
+     * 按运行时类型写出任意值
+     */
+    public void write(GPJsonWriter out, Object value) throws IOException {
+        if (value == null) {
+            out.writeNull();
+            return;
+        }
+        getSerializer(value.getClass()).write(out, value);
+    }
+
+    /**
+     * 获取类型的序列化器，没有则生成
+     * 不使用computeIfAbsent，生成POJO序列化器时可能递归查找其他类型
+     */
+    public GPJsonSerializer<Object> getSerializer(Class<?> type) {
+        GPJsonSerializer<Object> serializer = serializers.get(type);
+        if (serializer == null) {
+            serializer = create(type);
+            GPJsonSerializer<Object> existing = serializers.putIfAbsent(type, serializer);
+            if (existing != null) {
+                serializer = existing;
+            }
+        }
+        return serializer;
+    }
+
+    @SuppressWarnings("unchecked")
+    private GPJsonSerializer<Object> create(Class<?> type) {
+        if (CharSequence.class.isAssignableFrom(type)) {
+            return (out, value) -> out.writeString((CharSequence) value);
+        }
+        if (type.isEnum() || (type.getSuperclass() != null && type.getSuperclass().isEnum())) {
+            return (out, value) -> out.writeString(((Enum<?>) value).name());
+        }
+        if (Number.class.isAssignableFrom(type)) {
+            return (out, value) -> out.writeAscii(value.toString());
+        }
+        if (TemporalAccessor.class.isAssignableFrom(type)) {
+            return (out, value) -> out.writeString(value.toString());
+        }
+        if (Date.class.isAssignableFrom(type)) {
+            return (out, value) -> out.writeLong(((Date) value).getTime());
+        }
+        if (Optional.class == type) {
+            return (out, value) -> write(out, ((Optional<Object>) value).orElse(null));
+        }
+        if (Map.class.isAssignableFrom(type)) {
+            return (out, value) -> writeMap(out, (Map<Object, Object>) value);
+        }
+        if (Iterable.class.isAssignableFrom(type)) {
+            return (out, value) -> writeIterable(out, (Iterable<Object>) value);
+        }
+        if (type.isArray()) {
+            if (type.getComponentType().isPrimitive()) {
+                // short[]、byte[]、float[]等不常用的基本类型数组
+                return (out, value) -> writePrimitiveArray(out, value);
+            }
+            return (out, value) -> writeArray(out, (Object[]) value);
+        }
+        return createBeanSerializer(type);
+    }
+
+    private void writeMap(GPJsonWriter out, Map<Object, Object> map) throws IOException {
+        out.enterNested(map);
+        out.writeByte('{');
+        boolean first = true;
+        for (Map.Entry<Object, Object> entry : map.entrySet()) {
+            if (!first) {
+                out.writeByte(',');
+            }
+            first = false;
+            Object key = entry.getKey();
+            out.writeString(key instanceof CharSequence ? (CharSequence) key : String.valueOf(key));
+            out.writeByte(':');
+            write(out, entry.getValue());
+        }
+        out.writeByte('}');
+        out.exitNested();
+    }
+
+    private void writeIterable(GPJsonWriter out, Iterable<Object> iterable) throws IOException {
+        out.enterNested(iterable);
+        out.writeByte('[');
+        boolean first = true;
+        // List元素类型通常相同，记住上一个元素的序列化器
+        Class<?> lastType = null;
+        GPJsonSerializer<Object> lastSerializer = null;
+        for (Object element : iterable) {
+            if (!first) {
+                out.writeByte(',');
+            }
+            first = false;
+            if (element == null) {
+                out.writeNull();
+                continue;
+            }
+            if (element.getClass() != lastType) {
+                lastType = element.getClass();
+                lastSerializer = getSerializer(lastType);
+            }
+            lastSerializer.write(out, element);
+        }
+        out.writeByte(']');
+        out.exitNested();
+    }
+
+    private void writeArray(GPJsonWriter out, Object[] array) throws IOException {
+        out.enterNested(array);
+        out.writeByte('[');
+        for (int i = 0; i < array.length; i++) {
+            if (i > 0) {
+                out.writeByte(',');
+            }
+            write(out, array[i]);
+        }
+        out.writeByte(']');
+        out.exitNested();
+    }
+
+    private static void writePrimitiveArray(GPJsonWriter out, Object array) throws IOException {
+        out.writeByte('[');
+        int length = Array.getLength(array);
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                out.writeByte(',');
+            }
+            Object value = Array.get(array, i);
+            if (value instanceof Float) {
+                writeFloat(out, (Float) value);
+            } else {
+                out.writeLong(((Number) value).longValue());
+            }
+        }
+        out.writeByte(']');
+    }
+
+    /**
+     * float按自身精度输出，避免转换为double后出现0.10000000149011612
+     */
+    private static void writeFloat(GPJsonWriter out, float value) throws IOException {
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            out.writeNull();
+        } else {
+            out.writeAscii(Float.toString(value));
+        }
+    }
+
+    private GPJsonSerializer<Object> createBeanSerializer(Class<?> type) {
+        // 按属性名排序，输出顺序稳定
+        Map<String, MethodHandle> getters = new TreeMap<>();
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (Field field : type.getFields()) {
+            if (!Modifier.isStatic(field.getModifiers())) {
+                try {
+                    field.setAccessible(true);
+                    getters.put(field.getName(), lookup.unreflectGetter(field));
+                } catch (RuntimeException | IllegalAccessException e) {
+                    throw new IllegalStateException("Can not access " + field, e);
+                }
+            }
+        }
+        for (Method method : type.getMethods()) {
+            String name = propertyName(method);
+            if (name == null) {
+                continue;
+            }
+            try {
+                // 非public类的public方法也需要setAccessible
+                method.setAccessible(true);
+                getters.put(name, lookup.unreflect(method));
+            } catch (RuntimeException | IllegalAccessException e) {
+                throw new IllegalStateException("Can not access " + method, e);
+            }
+        }
+        if (getters.isEmpty()) {
+            // 没有属性的类型按toString输出
+            return (out, value) -> out.writeString(value.toString());
+        }
+        List<Property> properties = new ArrayList<>();
+        for (Map.Entry<String, MethodHandle> entry : getters.entrySet()) {
+            properties.add(new Property(entry.getKey(), entry.getValue(), properties.isEmpty()));
+        }
+        Property[] plan = properties.toArray(new Property[0]);
+        return (out, value) -> {
+            // 自引用的POJO在超过最大嵌套层数时失败，不会栈溢出
+            out.enterNested(value);
+            out.writeByte('{');
+            for (Property property : plan) {
+                property.write(out, value);
+            }
+            out.writeByte('}');
+            out.exitNested();
+        };
+    }
+
+    /**
+     * 与java.beans.Introspector一致：getName -> name，isActive -> active，getURL -> URL
+     */
+    private static String propertyName(Method method) {
+        if (Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 0
+                || method.getDeclaringClass() == Object.class) {
+            return null;
+        }
+        String name = method.getName();
+        Class<?> returnType = method.getReturnType();
+        String property;
+        if (name.startsWith("get") && name.length() > 3 && returnType != void.class) {
+            property = name.substring(3);
+        } else if (name.startsWith("is") && name.length() > 2 && returnType == boolean.class) {
+            property = name.substring(2);
+        } else {
+            return null;
+        }
+        if (property.length() > 1 && Character.isUpperCase(property.charAt(0))
+                && Character.isUpperCase(property.charAt(1))) {
+            return property;
+        }
+        return Character.toLowerCase(property.charAt(0)) + property.substring(1);
+    }
+
+    /**
+     * POJO的一个属性，属性名连同前面的逗号和后面的冒号预先编码
+     */
+    private class Property {
+        private static final int KIND_OBJECT = 0;
+
+        private static final int KIND_LONG = 1;
+
+        private static final int KIND_DOUBLE = 2;
+
+        private static final int KIND_BOOLEAN = 3;
+
+        private static final int KIND_STRING = 4;
+
+        private static final int KIND_FLOAT = 5;
+
+        private final byte[] name;
+        private final int kind;
+        /**
+         * 类型统一为(Object)long、(Object)double、(Object)boolean或(Object)Object，可以用invokeExact调用
+         */
+        private final MethodHandle getter;
+
+        Property(String name, MethodHandle getter, boolean first) {
+            byte[] encoded = GPJsonWriter.encodeString(name);
+            this.name = new byte[encoded.length + (first ? 1 : 2)];
+            int offset = 0;
+            if (!first) {
+                this.name[offset++] = ',';
+            }
+            System.arraycopy(encoded, 0, this.name, offset, encoded.length);
+            this.name[this.name.length - 1] = ':';
+
+            Class<?> type = getter.type().returnType();
+            if (type == int.class || type == long.class || type == short.class || type == byte.class) {
+                kind = KIND_LONG;
+                this.getter = getter.asType(MethodType.methodType(long.class, Object.class));
+            } else if (type == double.class) {
+                kind = KIND_DOUBLE;
+                this.getter = getter.asType(MethodType.methodType(double.class, Object.class));
+            } else if (type == float.class) {
+                kind = KIND_FLOAT;
+                this.getter = getter.asType(MethodType.methodType(float.class, Object.class));
+            } else if (type == boolean.class) {
+                kind = KIND_BOOLEAN;
+                this.getter = getter.asType(MethodType.methodType(boolean.class, Object.class));
+            } else {
+                kind = type == String.class ? KIND_STRING : KIND_OBJECT;
+                this.getter = getter.asType(MethodType.methodType(Object.class, Object.class));
+            }
+        }
+
+        void write(GPJsonWriter out, Object bean) throws IOException {
+            out.writeRaw(name);
+            try {
+                switch (kind) {
+                    case KIND_LONG:
+                        out.writeLong((long) getter.invokeExact(bean));
+                        break;
+                    case KIND_DOUBLE:
+                        out.writeDouble((double) getter.invokeExact(bean));
+                        break;
+                    case KIND_FLOAT:
+                        writeFloat(out, (float) getter.invokeExact(bean));
+                        break;
+                    case KIND_BOOLEAN:
+                        out.writeBoolean((boolean) getter.invokeExact(bean));
+                        break;
+                    case KIND_STRING:
+                        Object string = (Object) getter.invokeExact(bean);
+                        if (string == null) {
+                            out.writeNull();
+                        } else {
+                            out.writeString((String) string);
+                        }
+                        break;
+                    default:
+                        GPJsonSerializers.this.write(out, (Object) getter.invokeExact(bean));
+                }
+            } catch (IOException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Can not read property of " + bean.getClass().getName(), e);
+            }
+        }
+    }
+}
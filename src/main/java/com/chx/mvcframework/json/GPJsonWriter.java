@@ -0,0 +1,320 @@
+package com.chx.mvcframework.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 流式JSON输出，直接把UTF-8字节写入调用方提供的缓冲区，不生成中间的String
+ *
+ * 缓冲区写满之前不打开输出流，调用方可以在finish之后根据isStreaming判断
+ * 全部内容是否都在缓冲区中（此时可以设置Content-Length）；
+ * 写满之后才通过Target打开输出流，之后的内容边写边刷出
+ *
+ * 非线程安全，每次序列化使用一个新的实例；实例同时记录对象和数组的嵌套层数，
+ * 超过MAX_DEPTH时认为值中存在循环引用，抛出IllegalStateException而不是StackOverflowError
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public final class GPJsonWriter {
+
+    /**
+     * 对象和数组的最大嵌套层数
+     */
+    static final int MAX_DEPTH = 256;
+
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+
+    private static final byte[] MIN_LONG = String.valueOf(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * ASCII字符的转义方式：0不需要转义，'u'输出\\u00XX，其他为反斜杠后的字符
+     */
+    private static final byte[] ESCAPES = new byte[128];
+
+    static {
+        for (int i = 0; i < 0x20; i++) {
+            ESCAPES[i] = 'u';
+        }
+        ESCAPES['"'] = '"';
+        ESCAPES['\\'] = '\\';
+        ESCAPES['\n'] = 'n';
+        ESCAPES['\r'] = 'r';
+        ESCAPES['\t'] = 't';
+        ESCAPES['\b'] = 'b';
+        ESCAPES['\f'] = 'f';
+    }
+
+    /**
+     * 缓冲区写满时打开真正的输出流
+     */
+    @FunctionalInterface
+    public interface Target {
+        OutputStream open() throws IOException;
+    }
+
+    private final byte[] buffer;
+
+    private final Target target;
+
+    private OutputStream out;
+
+    private int count;
+
+    private int depth;
+
+    /**
+     * @param buffer 缓冲区，长度不能小于16
+     * @param target 缓冲区写满时调用
+     */
+    public GPJsonWriter(byte[] buffer, Target target) {
+        if (buffer.length < 16) {
+            throw new IllegalArgumentException("Buffer too small: " + buffer.length);
+        }
+        this.buffer = buffer;
+        this.target = target;
+    }
+
+    /**
+     * 开始写一层对象或数组，value只用于错误信息
+     */
+    void enterNested(Object value) {
+        if (++depth > MAX_DEPTH) {
+            throw new IllegalStateException("JSON nesting deeper than " + MAX_DEPTH
+                    + " at " + value.getClass().getName() + ", possibly a reference cycle");
+        }
+    }
+
+    void exitNested() {
+        depth--;
+    }
+
+    public void writeNull() throws IOException {
+        writeRaw(NULL);
+    }
+
+    public void writeBoolean(boolean value) throws IOException {
+        writeRaw(value ? TRUE : FALSE);
+    }
+
+    /**
+     * 整数直接按位写入缓冲区，不调用Long.toString
+     */
+    public void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeRaw(MIN_LONG);
+            return;
+        }
+        ensure(20);
+        if (value < 0) {
+            buffer[count++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        int pos = count + digits;
+        do {
+            buffer[--pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        count += digits;
+    }
+
+    /**
+     * NaN和无穷大在JSON中没有对应的值，输出null
+     */
+    public void writeDouble(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            writeNull();
+            return;
+        }
+        if (value == (long) value && Math.abs(value) < 1e15) {
+            writeLong((long) value);
+            return;
+        }
+        writeAscii(Double.toString(value));
+    }
+
+    /**
+     * 写出带引号并转义的字符串
+     */
+    public void writeString(CharSequence value) throws IOException {
+        writeByte('"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                byte escape = ESCAPES[c];
+                if (escape == 0) {
+                    if (count == buffer.length) {
+                        flushBuffer();
+                    }
+                    buffer[count++] = (byte) c;
+                } else if (escape == 'u') {
+                    ensure(6);
+                    buffer[count++] = '\\';
+                    buffer[count++] = 'u';
+                    buffer[count++] = '0';
+                    buffer[count++] = '0';
+                    buffer[count++] = HEX[c >> 4];
+                    buffer[count++] = HEX[c & 0xF];
+                } else {
+                    ensure(2);
+                    buffer[count++] = '\\';
+                    buffer[count++] = escape;
+                }
+            } else {
+                i = writeUtf8(value, i, c, length);
+            }
+        }
+        writeByte('"');
+    }
+
+    /**
+     * 原样写出UTF-8文本，不加引号也不转义，用于text/plain
+     */
+    public void writeText(CharSequence value) throws IOException {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (count == buffer.length) {
+                    flushBuffer();
+                }
+                buffer[count++] = (byte) c;
+            } else {
+                i = writeUtf8(value, i, c, length);
+            }
+        }
+    }
+
+    /**
+     * 写出一个非ASCII字符，返回最后处理的字符位置
+     */
+    private int writeUtf8(CharSequence value, int i, char c, int length) throws IOException {
+        ensure(4);
+        if (c < 0x800) {
+            buffer[count++] = (byte) (0xC0 | (c >> 6));
+            buffer[count++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+            int codePoint = Character.toCodePoint(c, value.charAt(++i));
+            buffer[count++] = (byte) (0xF0 | (codePoint >> 18));
+            buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            buffer[count++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+            // 不成对的代理字符
+            buffer[count++] = '?';
+        } else {
+            buffer[count++] = (byte) (0xE0 | (c >> 12));
+            buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[count++] = (byte) (0x80 | (c & 0x3F));
+        }
+        return i;
+    }
+
+    /**
+     * 写出只包含ASCII字符的内容，如BigDecimal.toString()
+     */
+    public void writeAscii(String value) throws IOException {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (count == buffer.length) {
+                flushBuffer();
+            }
+            buffer[count++] = (byte) value.charAt(i);
+        }
+    }
+
+    /**
+     * 写出预先编码好的字节，如属性名"name":
+     */
+    public void writeRaw(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.length - count) {
+            flushBuffer();
+            if (bytes.length > buffer.length) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, count, bytes.length);
+        count += bytes.length;
+    }
+
+    public void writeByte(int b) throws IOException {
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    /**
+     * 结束输出，已经打开输出流时把剩余内容刷出
+     */
+    public void finish() throws IOException {
+        if (out != null && count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    /**
+     * @return 缓冲区曾经写满，内容已经部分写入输出流
+     */
+    public boolean isStreaming() {
+        return out != null;
+    }
+
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return 缓冲区中尚未刷出的字节数
+     */
+    public int size() {
+        return count;
+    }
+
+    private void ensure(int n) throws IOException {
+        if (count + n > buffer.length) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (out == null) {
+            out = target.open();
+        }
+        out.write(buffer, 0, count);
+        count = 0;
+    }
+
+    /**
+     * 编码为带引号的JSON字符串，用于预先生成属性名
+     */
+    static byte[] encodeString(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            byte escape = c < 0x80 ? ESCAPES[c] : 0;
+            if (escape == 0) {
+                sb.append(c);
+            } else if (escape == 'u') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append('\\').append((char) escape);
+            }
+        }
+        return sb.append('"').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
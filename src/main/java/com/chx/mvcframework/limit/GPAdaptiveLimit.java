@@ -0,0 +1,100 @@
+package com.chx.mvcframework.limit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 根据观察到的延迟调整并发上限（AIMD）
+ *
+ * 分别维护延迟的短期和长期指数移动平均（约最近10个和1000个请求），
+ * 短期平均超过长期平均的tolerance倍时认为下游变慢，上限乘以0.9，同一轮（一个短期平均延迟的时间）内只减少一次；
+ * 否则并发数达到上限的一半时，上限增加1/limit（每轮约加1）
+ * 用平均值而不是单个请求的延迟比较，亚毫秒级的接口不会因为一次调度或GC抖动就降低上限
+ *
+ * 不加锁：平均值允许并发更新时偶尔丢失一个样本，上限用CAS更新
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class GPAdaptiveLimit {
+
+    private static final double BACKOFF = 0.9;
+
+    private static final double SHORT_ALPHA = 0.1;
+
+    private static final double LONG_ALPHA = 0.001;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double tolerance;
+
+    /**
+     * 当前上限，double的位模式
+     */
+    private final AtomicLong limit;
+
+    private volatile double shortRtt;
+
+    private volatile double longRtt;
+
+    private final AtomicLong lastDecrease = new AtomicLong(System.nanoTime());
+
+    /**
+     * @param initialLimit 初始上限
+     * @param minLimit 上限的最小值
+     * @param maxLimit 上限的最大值
+     * @param tolerance 短期平均延迟超过长期平均的多少倍时认为过载
+     */
+    public GPAdaptiveLimit(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid limit range [" + minLimit + ", " + maxLimit + "]");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.limit = new AtomicLong(Double.doubleToLongBits(Math.max(minLimit, Math.min(maxLimit, initialLimit))));
+    }
+
+    public int getLimit() {
+        return (int) Double.longBitsToDouble(limit.get());
+    }
+
+    /**
+     * 记录一个完成的请求
+     * @param nanos 从获得许可到释放的时间
+     * @param inflight 请求开始时的并发数（含自身）
+     */
+    public void onSample(long nanos, int inflight) {
+        double shortAverage = shortRtt;
+        shortAverage = shortAverage == 0 ? nanos : shortAverage + (nanos - shortAverage) * SHORT_ALPHA;
+        shortRtt = shortAverage;
+        double longAverage = longRtt;
+        longAverage = longAverage == 0 ? nanos : longAverage + (nanos - longAverage) * LONG_ALPHA;
+        longRtt = longAverage;
+
+        if (shortAverage > longAverage * tolerance) {
+            long now = System.nanoTime();
+            long last = lastDecrease.get();
+            if (now - last > shortAverage && lastDecrease.compareAndSet(last, now)) {
+                update(-1);
+            }
+        } else if (inflight * 2 >= getLimit()) {
+            update(1);
+        }
+    }
+
+    /**
+     * @param direction 1为加法增加，-1为乘法减少
+     */
+    private void update(int direction) {
+        while (true) {
+            long bits = limit.get();
+            double current = Double.longBitsToDouble(bits);
+            double next = direction > 0 ? Math.min(maxLimit, current + 1 / current) : Math.max(minLimit, current * BACKOFF);
+            if (next == current || limit.compareAndSet(bits, Double.doubleToLongBits(next))) {
+                return;
+            }
+        }
+    }
+}
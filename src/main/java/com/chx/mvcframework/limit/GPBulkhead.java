@@ -0,0 +1,109 @@
+package com.chx.mvcframework.limit;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个路由的并发限制（舱壁），一个路由的下游变慢时只占满自己的许可，不会占满容器的所有线程
+ *
+ * 许可是一个用CAS增减的计数器，不加锁也不排队，拿不到许可立即失败；
+ * 配置了GPAdaptiveLimit时上限随延迟调整，不超过固定上限
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class GPBulkhead {
+
+    private final int maxConcurrency;
+
+    private final GPAdaptiveLimit adaptiveLimit;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param maxConcurrency 固定上限，0表示只受自适应上限限制
+     * @param adaptiveLimit 自适应上限，为null时只使用固定上限
+     */
+    public GPBulkhead(int maxConcurrency, GPAdaptiveLimit adaptiveLimit) {
+        if (maxConcurrency <= 0 && adaptiveLimit == null) {
+            throw new IllegalArgumentException("A bulkhead needs maxConcurrency or an adaptive limit");
+        }
+        this.maxConcurrency = maxConcurrency > 0 ? maxConcurrency : Integer.MAX_VALUE;
+        this.adaptiveLimit = adaptiveLimit;
+    }
+
+    public int getLimit() {
+        return adaptiveLimit == null ? maxConcurrency : Math.min(maxConcurrency, adaptiveLimit.getLimit());
+    }
+
+    /**
+     * @return 许可，达到上限时返回null
+     */
+    public Permit tryAcquire() {
+        int limit = getLimit();
+        while (true) {
+            int current = inflight.get();
+            if (current >= limit) {
+                rejected.increment();
+                return null;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return new Permit(current + 1);
+            }
+        }
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * 一次请求持有的许可，只释放一次
+     * 同步处理在close时释放；返回CompletionStage的请求调用deferTo，在stage完成时释放
+     */
+    public final class Permit implements AutoCloseable {
+        private final long start = System.nanoTime();
+        private final int inflightAtStart;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile boolean deferred;
+
+        private Permit(int inflightAtStart) {
+            this.inflightAtStart = inflightAtStart;
+        }
+
+        /**
+         * 在stage完成时释放，之后的close不再释放
+         */
+        public void deferTo(CompletionStage<?> stage) {
+            deferred = true;
+            stage.whenComplete((value, e) -> release());
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                inflight.decrementAndGet();
+                if (adaptiveLimit != null) {
+                    adaptiveLimit.onSample(System.nanoTime() - start, inflightAtStart);
+                }
+            }
+        }
+
+        /**
+         * 没有调用deferTo时释放
+         */
+        @Override
+        public void close() {
+            if (!deferred) {
+                release();
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.chx.mvcframework.metrics;
+
+import com.chx.mvcframework.cache.GPResponseCache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 所有路由的统计，初始化时为每个路由创建一个GPRouteMetrics，之后只读
+ * 输出JSON（由框架的返回值序列化写出）或Prometheus文本格式，同时输出响应缓存的命中、未命中和淘汰次数
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class GPMetricsRegistry {
+
+    /**
+     * 没有匹配到路由的请求
+     */
+    public static final String UNMATCHED = "<unmatched>";
+
+    private final Map<String, GPRouteMetrics> routes = new LinkedHashMap<>();
+
+    /**
+     * GPCacheable的响应缓存，没有时为null
+     */
+    private GPResponseCache responseCache;
+
+    public GPMetricsRegistry() {
+        routes.put(UNMATCHED, new GPRouteMetrics(UNMATCHED));
+    }
+
+    /**
+     * 只能在初始化时调用
+     */
+    public GPRouteMetrics register(String route) {
+        return routes.computeIfAbsent(route, GPRouteMetrics::new);
+    }
+
+    /**
+     * 只能在初始化时调用
+     */
+    public void setResponseCache(GPResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    public GPRouteMetrics getUnmatched() {
+        return routes.get(UNMATCHED);
+    }
+
+    /**
+     * JSON结构，延迟单位为微秒
+     */
+    public Map<String, Object> toJson() {
+        List<Object> list = new ArrayList<>();
+        for (GPRouteMetrics metrics : routes.values()) {
+            Map<String, Object> route = new LinkedHashMap<>();
+            route.put("route", metrics.getRoute());
+            route.put("requests", metrics.getRequestCount());
+            route.put("errors", metrics.getErrorCount());
+            route.put("rejected", metrics.getRejectedCount());
+            Map<String, Object> phases = new LinkedHashMap<>();
+            for (int i = 0; i < GPRouteMetrics.PHASES.length; i++) {
+                GPLatencyHistogram.Snapshot snapshot = metrics.getPhase(i).snapshot();
+                Map<String, Object> phase = new LinkedHashMap<>();
+                phase.put("count", snapshot.getCount());
+                phase.put("mean", micros(snapshot.getMean()));
+                phase.put("p50", micros(snapshot.percentile(0.5)));
+                phase.put("p99", micros(snapshot.percentile(0.99)));
+                phase.put("p999", micros(snapshot.percentile(0.999)));
+                phase.put("max", micros(snapshot.getMax()));
+                phases.put(GPRouteMetrics.PHASES[i], phase);
+            }
+            route.put("phases", phases);
+            list.add(route);
+        }
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("unit", "us");
+        json.put("routes", list);
+        if (responseCache != null) {
+            Map<String, Object> cache = new LinkedHashMap<>();
+            cache.put("hits", responseCache.getHitCount());
+            cache.put("misses", responseCache.getMissCount());
+            cache.put("evictions", responseCache.getEvictionCount());
+            cache.put("expirations", responseCache.getExpirationCount());
+            cache.put("size", responseCache.size());
+            cache.put("bytes", responseCache.getWeightedSize());
+            json.put("responseCache", cache);
+        }
+        return json;
+    }
+
+    private static double micros(long nanos) {
+        return Math.round(nanos / 100.0) / 10.0;
+    }
+
+    /**
+     * Prometheus文本格式（0.0.4），延迟单位为秒
+     */
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("# HELP gpmvc_requests_total Requests per route.\n");
+        sb.append("# TYPE gpmvc_requests_total counter\n");
+        for (GPRouteMetrics metrics : routes.values()) {
+            sb.append("gpmvc_requests_total{route=\"").append(escape(metrics.getRoute())).append("\"} ")
+                    .append(metrics.getRequestCount()).append('\n');
+        }
+        sb.append("# HELP gpmvc_errors_total Failed requests per route.\n");
+        sb.append("# TYPE gpmvc_errors_total counter\n");
+        for (GPRouteMetrics metrics : routes.values()) {
+            sb.append("gpmvc_errors_total{route=\"").append(escape(metrics.getRoute())).append("\"} ")
+                    .append(metrics.getErrorCount()).append('\n');
+        }
+        sb.append("# HELP gpmvc_rejected_total Requests rejected by the route concurrency limit.\n");
+        sb.append("# TYPE gpmvc_rejected_total counter\n");
+        for (GPRouteMetrics metrics : routes.values()) {
+            sb.append("gpmvc_rejected_total{route=\"").append(escape(metrics.getRoute())).append("\"} ")
+                    .append(metrics.getRejectedCount()).append('\n');
+        }
+        sb.append("# HELP gpmvc_phase_seconds Latency of routing, binding, invocation and writing.\n");
+        sb.append("# TYPE gpmvc_phase_seconds summary\n");
+        double[] quantiles = {0.5, 0.99, 0.999};
+        for (GPRouteMetrics metrics : routes.values()) {
+            String route = escape(metrics.getRoute());
+            for (int i = 0; i < GPRouteMetrics.PHASES.length; i++) {
+                GPLatencyHistogram.Snapshot snapshot = metrics.getPhase(i).snapshot();
+                String labels = "route=\"" + route + "\",phase=\"" + GPRouteMetrics.PHASES[i] + "\"";
+                for (double quantile : quantiles) {
+                    sb.append("gpmvc_phase_seconds{").append(labels).append(",quantile=\"").append(quantile)
+                            .append("\"} ").append(seconds(snapshot.percentile(quantile))).append('\n');
+                }
+                sb.append("gpmvc_phase_seconds_sum{").append(labels).append("} ")
+                        .append(seconds(snapshot.getSum())).append('\n');
+                sb.append("gpmvc_phase_seconds_count{").append(labels).append("} ")
+                        .append(snapshot.getCount()).append('\n');
+            }
+        }
+        if (responseCache != null) {
+            counter(sb, "gpmvc_response_cache_hits_total", "Response cache hits.", responseCache.getHitCount());
+            counter(sb, "gpmvc_response_cache_misses_total", "Response cache misses.", responseCache.getMissCount());
+            counter(sb, "gpmvc_response_cache_evictions_total", "Response cache entries evicted for size.",
+                    responseCache.getEvictionCount());
+            counter(sb, "gpmvc_response_cache_expirations_total", "Response cache entries expired.",
+                    responseCache.getExpirationCount());
+            sb.append("# HELP gpmvc_response_cache_bytes Bytes held by the response cache.\n");
+            sb.append("# TYPE gpmvc_response_cache_bytes gauge\n");
+            sb.append("gpmvc_response_cache_bytes ").append(responseCache.getWeightedSize()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void counter(StringBuilder sb, String name, String help, long value) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(" counter\n");
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
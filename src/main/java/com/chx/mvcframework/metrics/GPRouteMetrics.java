@@ -0,0 +1,82 @@
+package com.chx.mvcframework.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个路由的统计：请求数、失败数、被并发限制拒绝的请求数，以及路由、参数绑定、方法调用、写出响应四个阶段的延迟
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class GPRouteMetrics {
+
+    public static final int ROUTING = 0;
+
+    public static final int BINDING = 1;
+
+    public static final int INVOCATION = 2;
+
+    public static final int WRITING = 3;
+
+    static final String[] PHASES = {"routing", "binding", "invocation", "writing"};
+
+    private final String route;
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final GPLatencyHistogram[] phases = new GPLatencyHistogram[PHASES.length];
+
+    public GPRouteMetrics(String route) {
+        this.route = route;
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new GPLatencyHistogram();
+        }
+    }
+
+    /**
+     * 记录一个请求的路由耗时，同时计入请求数
+     */
+    public void recordRouting(long nanos) {
+        requests.increment();
+        phases[ROUTING].record(nanos);
+    }
+
+    /**
+     * @param phase BINDING、INVOCATION或WRITING
+     */
+    public void record(int phase, long nanos) {
+        phases[phase].record(nanos);
+    }
+
+    public void recordError() {
+        errors.increment();
+    }
+
+    public void recordRejected() {
+        rejected.increment();
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public GPLatencyHistogram getPhase(int phase) {
+        return phases[phase];
+    }
+}
@@ -0,0 +1,243 @@
+package com.chx.mvcframework.processor;
+
+import com.chx.mvcframework.annotation.GPAutowired;
+import com.chx.mvcframework.annotation.GPController;
+import com.chx.mvcframework.annotation.GPLazy;
+import com.chx.mvcframework.annotation.GPRequestMapping;
+import com.chx.mvcframework.annotation.GPService;
+import com.chx.mvcframework.index.GPComponentIndex;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 编译期生成组件索引META-INF/gpmvc/components.index
+ * 在maven-compiler-plugin中通过annotationProcessors启用，内容与GPComponentIndex.fromClasses反射得到的一致
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class GPIndexProcessor extends AbstractProcessor {
+
+    /**
+     * 按类名保存，多轮处理时同一个类只记录一次
+     */
+    private final Map<String, TypeElement> components = new LinkedHashMap<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return new HashSet<>(Arrays.asList(GPController.class.getName(), GPService.class.getName()));
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(GPController.class)) {
+            collect(element);
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(GPService.class)) {
+            collect(element);
+        }
+        if (roundEnv.processingOver()) {
+            boolean previous = collectPrevious();
+            if (previous || !components.isEmpty()) {
+                writeIndex();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 增量编译（IDE、只编译修改过的文件）时本次只处理了部分类，直接写出会丢掉其他组件；
+     * 读取输出目录中已有的索引，其中没有重新编译的类从class文件中重新读取注解，
+     * 类已经删除或者不再有GPController、GPService注解时不再保留
+     * @return 输出目录中是否已有索引，有时即使没有组件也要覆盖
+     */
+    private boolean collectPrevious() {
+        GPComponentIndex previous;
+        try {
+            FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "",
+                    GPComponentIndex.LOCATION);
+            try (Reader reader = new InputStreamReader(file.openInputStream(), StandardCharsets.UTF_8)) {
+                previous = GPComponentIndex.read(reader);
+            }
+        } catch (IOException e) {
+            // 全量编译时clean过输出目录，没有旧索引
+            return false;
+        }
+        for (GPComponentIndex.BeanDefinition bean : previous.getBeans()) {
+            if (components.containsKey(bean.getClassName())) {
+                continue;
+            }
+            // getTypeElement使用规范名，内部类的$换成.
+            TypeElement type = processingEnv.getElementUtils().getTypeElement(bean.getClassName().replace('$', '.'));
+            if (type != null && (type.getAnnotation(GPController.class) != null
+                    || type.getAnnotation(GPService.class) != null)) {
+                collect(type);
+            }
+        }
+        return true;
+    }
+
+    private void collect(Element element) {
+        if (element.getKind() == ElementKind.CLASS) {
+            TypeElement type = (TypeElement) element;
+            components.put(binaryName(type), type);
+        }
+    }
+
+    private void writeIndex() {
+        GPComponentIndex index = new GPComponentIndex();
+        for (TypeElement type : components.values()) {
+            String className = binaryName(type);
+            if (type.getAnnotation(GPController.class) != null) {
+                index.addBean(new GPComponentIndex.BeanDefinition(GPComponentIndex.CONTROLLER, className,
+                        GPComponentIndex.toLowerFirstCase(type.getSimpleName().toString()), new ArrayList<>(),
+                        type.getAnnotation(GPLazy.class) != null, constructorArguments(type)));
+                addRoutes(index, type, className);
+            } else {
+                String beanName = type.getAnnotation(GPService.class).value();
+                if ("".equals(beanName)) {
+                    beanName = GPComponentIndex.toLowerFirstCase(type.getSimpleName().toString());
+                }
+                List<String> interfaces = new ArrayList<>();
+                for (TypeMirror anInterface : type.getInterfaces()) {
+                    interfaces.add(typeName(anInterface));
+                }
+                index.addBean(new GPComponentIndex.BeanDefinition(GPComponentIndex.SERVICE, className, beanName,
+                        interfaces, type.getAnnotation(GPLazy.class) != null, constructorArguments(type)));
+            }
+            for (Element member : type.getEnclosedElements()) {
+                GPAutowired autowired = member.getAnnotation(GPAutowired.class);
+                if (member.getKind() == ElementKind.FIELD && autowired != null) {
+                    VariableElement field = (VariableElement) member;
+                    index.addInjection(new GPComponentIndex.InjectionPoint(className, field.getSimpleName().toString(),
+                            GPComponentIndex.autowiredBeanName(autowired.value(), typeName(field.asType()))));
+                }
+            }
+        }
+
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                    GPComponentIndex.LOCATION);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                index.write(writer);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Can not write " + GPComponentIndex.LOCATION + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 与GPComponentIndex一致：优先使用加了GPAutowired注解的构造器，其次是唯一的构造器
+     */
+    private List<String> constructorArguments(TypeElement type) {
+        List<ExecutableElement> constructors = new ArrayList<>();
+        ExecutableElement selected = null;
+        for (Element member : type.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.CONSTRUCTOR) {
+                constructors.add((ExecutableElement) member);
+                if (member.getAnnotation(GPAutowired.class) != null) {
+                    selected = (ExecutableElement) member;
+                }
+            }
+        }
+        if (selected == null && constructors.size() == 1) {
+            selected = constructors.get(0);
+        }
+        List<String> arguments = new ArrayList<>();
+        if (selected != null) {
+            for (VariableElement parameter : selected.getParameters()) {
+                arguments.add(typeName(parameter.asType()));
+            }
+        }
+        return arguments;
+    }
+
+    /**
+     * 与Class.getMethods()一致：当前类及父类中的public方法，子类覆盖的方法只记录一次
+     */
+    private void addRoutes(GPComponentIndex index, TypeElement type, String className) {
+        GPRequestMapping classMapping = type.getAnnotation(GPRequestMapping.class);
+        String baseUrl = classMapping == null ? "" : classMapping.value();
+        Set<String> signatures = new HashSet<>();
+        for (TypeElement current = type; current != null; current = superclass(current)) {
+            for (Element member : current.getEnclosedElements()) {
+                GPRequestMapping mapping = member.getAnnotation(GPRequestMapping.class);
+                if (member.getKind() != ElementKind.METHOD || mapping == null
+                        || !member.getModifiers().contains(Modifier.PUBLIC)) {
+                    continue;
+                }
+                ExecutableElement method = (ExecutableElement) member;
+                List<String> parameterTypes = new ArrayList<>();
+                for (VariableElement parameter : method.getParameters()) {
+                    parameterTypes.add(typeName(parameter.asType()));
+                }
+                String methodName = method.getSimpleName().toString();
+                if (signatures.add(methodName + parameterTypes)) {
+                    index.addRoute(new GPComponentIndex.RouteDefinition(className, methodName, parameterTypes,
+                            GPComponentIndex.joinUrl(baseUrl, mapping.value())));
+                }
+            }
+        }
+    }
+
+    private TypeElement superclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+        return Object.class.getName().equals(element.getQualifiedName().toString()) ? null : element;
+    }
+
+    /**
+     * 擦除泛型后的运行时类名，内部类使用$分隔
+     */
+    private String typeName(TypeMirror type) {
+        TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+        if (erased.getKind() == TypeKind.ARRAY) {
+            return typeName(((ArrayType) erased).getComponentType()) + "[]";
+        }
+        if (erased.getKind() == TypeKind.DECLARED) {
+            return binaryName((TypeElement) ((DeclaredType) erased).asElement());
+        }
+        return erased.toString();
+    }
+
+    private String binaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+}
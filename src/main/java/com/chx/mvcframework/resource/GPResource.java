@@ -0,0 +1,114 @@
+package com.chx.mvcframework.resource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 一个静态文件的元数据，文件修改后由GPResourceResolver替换为新的对象
+ *
+ * 较大的文件在写出时才映射，每个请求各自映射要写出的范围，不长期持有：
+ * 文件被原地截断后，访问长期持有的映射会导致SIGBUS或InternalError
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public final class GPResource {
+
+    private final String path;
+
+    private final Path file;
+
+    private final long length;
+
+    /**
+     * 最后修改时间（毫秒），截断到秒，与Last-Modified/If-Modified-Since的精度一致
+     */
+    private final long lastModified;
+
+    private final String contentType;
+
+    private final String etag;
+
+    /**
+     * 同目录下预先压缩的.gz文件，没有时为null
+     */
+    private final GPResource gzip;
+
+    /**
+     * System.nanoTime()表示的上次检查文件的时间
+     */
+    private volatile long checkedAt;
+
+    GPResource(String path, Path file, long length, long lastModified, String contentType, GPResource gzip) {
+        this.path = path;
+        this.file = file;
+        this.length = length;
+        this.lastModified = lastModified / 1000 * 1000;
+        this.contentType = contentType;
+        this.etag = "\"" + Long.toHexString(this.lastModified) + "-" + Long.toHexString(length) + "\"";
+        this.gzip = gzip;
+        this.checkedAt = System.nanoTime();
+    }
+
+    /**
+     * @return 相对于静态资源目录的路径，如/static/app.js
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return 由最后修改时间和长度组成的ETag，不读取文件内容
+     */
+    public String getETag() {
+        return etag;
+    }
+
+    public GPResource getGzip() {
+        return gzip;
+    }
+
+    long getCheckedAt() {
+        return checkedAt;
+    }
+
+    void setCheckedAt(long checkedAt) {
+        this.checkedAt = checkedAt;
+    }
+
+    /**
+     * 映射文件中的一段，调用方写出后即丢弃，映射由GC释放
+     * @return 只读的内存映射；超过2GB无法整体映射时返回null
+     */
+    public ByteBuffer map(long start, long count) throws IOException {
+        if (count > Integer.MAX_VALUE) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < start + count) {
+                // 检查之后文件被截断，映射超出文件末尾的部分在访问时会出错
+                throw new IOException("File truncated: " + file);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, start, count);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.chx.mvcframework.resource;
+
+import com.chx.mvcframework.cache.GPCacheKey;
+import com.chx.mvcframework.cache.GPResponseCache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.FileSystemException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把请求路径解析为静态资源目录下的文件
+ *
+ * 元数据按路径缓存，每隔checkInterval才重新读取文件属性，文件大小或修改时间变化时替换；
+ * 不存在的路径不缓存，缓存的条目数不超过目录下的文件数
+ * 不超过cacheFileMaxSize的文件内容放入按字节数限制大小的GPResponseCache（CLOCK淘汰），
+ * 键包含修改时间和长度，文件修改后旧内容不会再被命中
+ *
+ * 不解析到目录以外（包括指向目录以外的符号链接），不返回WEB-INF、META-INF和以'.'开头的文件或目录
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class GPResourceResolver {
+
+    private static final long CONTENT_TTL = TimeUnit.DAYS.toMillis(1);
+
+    private static final Map<String, String> MIME_TYPES = new HashMap<>();
+
+    static {
+        MIME_TYPES.put("html", "text/html;charset=UTF-8");
+        MIME_TYPES.put("htm", "text/html;charset=UTF-8");
+        MIME_TYPES.put("css", "text/css;charset=UTF-8");
+        MIME_TYPES.put("js", "application/javascript;charset=UTF-8");
+        MIME_TYPES.put("mjs", "application/javascript;charset=UTF-8");
+        MIME_TYPES.put("json", "application/json;charset=UTF-8");
+        MIME_TYPES.put("map", "application/json;charset=UTF-8");
+        MIME_TYPES.put("txt", "text/plain;charset=UTF-8");
+        MIME_TYPES.put("xml", "application/xml;charset=UTF-8");
+        MIME_TYPES.put("svg", "image/svg+xml");
+        MIME_TYPES.put("png", "image/png");
+        MIME_TYPES.put("jpg", "image/jpeg");
+        MIME_TYPES.put("jpeg", "image/jpeg");
+        MIME_TYPES.put("gif", "image/gif");
+        MIME_TYPES.put("webp", "image/webp");
+        MIME_TYPES.put("ico", "image/x-icon");
+        MIME_TYPES.put("woff", "font/woff");
+        MIME_TYPES.put("woff2", "font/woff2");
+        MIME_TYPES.put("ttf", "font/ttf");
+        MIME_TYPES.put("wasm", "application/wasm");
+        MIME_TYPES.put("pdf", "application/pdf");
+        MIME_TYPES.put("mp4", "video/mp4");
+    }
+
+    private final Path root;
+
+    private final long checkIntervalNanos;
+
+    private final int cacheFileMaxSize;
+
+    private final GPResponseCache contents;
+
+    private final Map<String, GPResource> resources = new ConcurrentHashMap<>();
+
+    /**
+     * @param root 静态资源目录
+     * @param checkInterval 重新检查文件是否修改的间隔（毫秒）
+     * @param cacheMaxBytes 缓存的文件内容占用的最大字节数
+     * @param cacheFileMaxSize 超过此大小的文件不缓存内容
+     */
+    public GPResourceResolver(Path root, long checkInterval, long cacheMaxBytes, int cacheFileMaxSize) throws IOException {
+        this.root = root.toRealPath();
+        this.checkIntervalNanos = TimeUnit.MILLISECONDS.toNanos(checkInterval);
+        this.cacheFileMaxSize = cacheFileMaxSize;
+        this.contents = new GPResponseCache(cacheMaxBytes);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * @param path 已解码的相对路径，如/static/app.js
+     * @return 不存在、不是普通文件或不允许访问时返回null
+     */
+    public GPResource resolve(String path) throws IOException {
+        GPResource resource = resources.get(path);
+        long now = System.nanoTime();
+        if (resource != null && now - resource.getCheckedAt() < checkIntervalNanos) {
+            return resource;
+        }
+        Path file = toFile(path);
+        if (file == null) {
+            return null;
+        }
+        BasicFileAttributes attributes = readAttributes(file);
+        if (attributes == null || !attributes.isRegularFile()) {
+            if (resource != null) {
+                resources.remove(path, resource);
+            }
+            return null;
+        }
+        if (resource != null && resource.getLength() == attributes.size()
+                && resource.getLastModified() == attributes.lastModifiedTime().toMillis() / 1000 * 1000) {
+            resource.setCheckedAt(now);
+            return resource;
+        }
+        GPResource gzip = null;
+        Path gzipFile = file.resolveSibling(file.getFileName() + ".gz");
+        BasicFileAttributes gzipAttributes = readAttributes(gzipFile);
+        if (gzipAttributes != null && gzipAttributes.isRegularFile() && isInRoot(gzipFile)) {
+            gzip = new GPResource(path + ".gz", gzipFile, gzipAttributes.size(),
+                    gzipAttributes.lastModifiedTime().toMillis(), null, null);
+        }
+        resource = new GPResource(path, file, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                contentType(file.getFileName().toString()), gzip);
+        resources.put(path, resource);
+        return resource;
+    }
+
+    /**
+     * @return 文件内容，超过cacheFileMaxSize时返回null，由调用方按文件写出
+     */
+    public byte[] getContent(GPResource resource) throws IOException {
+        if (resource.getLength() > cacheFileMaxSize) {
+            return null;
+        }
+        GPCacheKey key = new GPCacheKey(resource.getPath(), new Object[]{resource.getLastModified(), resource.getLength()});
+        GPResponseCache.Entry entry = contents.get(key);
+        if (entry != null) {
+            return entry.getBody();
+        }
+        byte[] body = Files.readAllBytes(resource.getFile());
+        if (body.length != resource.getLength()) {
+            // 检查之后文件又被修改，本次返回读到的内容，不放入缓存
+            return body;
+        }
+        contents.put(key, resource.getContentType(), body, CONTENT_TTL);
+        return body;
+    }
+
+    public GPResponseCache getContentCache() {
+        return contents;
+    }
+
+    private Path toFile(String path) {
+        if (path.indexOf('\0') >= 0 || path.indexOf('\\') >= 0) {
+            return null;
+        }
+        int start = 0;
+        boolean first = true;
+        while (start < path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            if (end > start) {
+                String segment = path.substring(start, end);
+                if (segment.charAt(0) == '.') {
+                    return null;
+                }
+                if (first && ("WEB-INF".equalsIgnoreCase(segment) || "META-INF".equalsIgnoreCase(segment))) {
+                    return null;
+                }
+                first = false;
+            }
+            start = end + 1;
+        }
+        Path file = root.resolve(path.startsWith("/") ? path.substring(1) : path).normalize();
+        return file.startsWith(root) && !file.equals(root) && isInRoot(file) ? file : null;
+    }
+
+    /**
+     * 目录中的符号链接可能指向目录以外，按真实路径检查
+     */
+    private boolean isInRoot(Path file) {
+        try {
+            return file.toRealPath().startsWith(root);
+        } catch (IOException e) {
+            // 不存在或没有权限
+            return false;
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(Path file) throws IOException {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (FileSystemException e) {
+            // 不存在、上级不是目录或没有权限
+            return null;
+        }
+    }
+
+    static String contentType(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        String type = dot < 0 ? null : MIME_TYPES.get(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+        return type != null ? type : "application/octet-stream";
+    }
+}
@@ -0,0 +1,332 @@
+package com.chx.mvcframework.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 基于字符的压缩前缀树(radix tree)路由表
+ * 字面量路径在初始化时插入前缀树，查找时按路径长度线性遍历，与路由数量无关；
+ * 只有真正包含正则元字符的路径才放入正则列表，在前缀树未命中时按注册顺序匹配
+ *
+ * 支持路径模板，如/demo/{id}、/demo/{id:int}，变量必须占满一个路径段；
+ * 匹配时变量的起止位置直接写入调用方提供的captures数组，不创建Matcher和子串
+ *
+ * 查找时在遍历过程中合并连续的'/'，不再对每个请求执行replaceAll("/+", "/")
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class GPRouter<T> {
+
+    /**
+     * 正则元字符，'.'在路径中很常见（如/a.json），按字面量处理
+     */
+    private static final String REGEX_META = "\\^$|?*+()[]{}";
+
+    private static final int[] NO_CAPTURES = new int[0];
+
+    private final Node<T> root = new Node<>("");
+
+    private final List<RegexRoute<T>> regexRoutes = new ArrayList<>();
+
+    private int size;
+
+    /**
+     * 所有模板中变量个数的最大值
+     */
+    private int maxVariables;
+
+    /**
+     * 注册路由，同一个字面量路径重复注册视为映射冲突
+     * @param pattern 路径，可以是字面量、模板或正则
+     * @param value 路径对应的处理器
+     */
+    public void addRoute(String pattern, T value) {
+        String path = normalize(pattern, 0);
+        PathTemplate template = PathTemplate.parse(path);
+        if (template.getVariableCount() == 0 && isRegex(path)) {
+            regexRoutes.add(new RegexRoute<>(Pattern.compile(path), value));
+        } else {
+            for (String literal : template.getLiterals()) {
+                if (isRegex(literal)) {
+                    throw new IllegalArgumentException("Path template can not contain regex: " + path);
+                }
+            }
+            insert(template, value);
+            maxVariables = Math.max(maxVariables, template.getVariableCount());
+        }
+        size++;
+    }
+
+    /**
+     * 查找路由
+     * @param uri 请求URI
+     * @param from 相对路径在uri中的起始位置（跳过contextPath）
+     * @return 匹配的处理器，没有则返回null
+     */
+    public T match(String uri, int from) {
+        return match(uri, from, NO_CAPTURES);
+    }
+
+    /**
+     * 查找路由，并记录模板变量在uri中的位置
+     * @param uri 请求URI
+     * @param from 相对路径在uri中的起始位置（跳过contextPath）
+     * @param captures 长度至少为newCaptures()的数组，第k个变量的起止位置为captures[2k]、captures[2k+1]
+     * @return 匹配的处理器，没有则返回null
+     */
+    public T match(String uri, int from, int[] captures) {
+        T value = matchTree(root, uri, from, (char) 0, 0, captures);
+        if (value != null || regexRoutes.isEmpty()) {
+            return value;
+        }
+        String path = normalize(uri, from);
+        for (RegexRoute<T> route : regexRoutes) {
+            if (route.pattern.matcher(path).matches()) {
+                return route.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 创建一个足够容纳所有模板变量位置的数组
+     */
+    public int[] newCaptures() {
+        return maxVariables == 0 ? NO_CAPTURES : new int[maxVariables * 2];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private T matchTree(Node<T> node, String uri, int i, char prev, int variable, int[] captures) {
+        int end = uri.length();
+        while (true) {
+            String prefix = node.prefix;
+            for (int k = 0; k < prefix.length(); k++) {
+                // 合并连续的'/'
+                while (prev == '/' && i < end && uri.charAt(i) == '/') {
+                    i++;
+                }
+                if (i >= end || uri.charAt(i) != prefix.charAt(k)) {
+                    return null;
+                }
+                prev = uri.charAt(i++);
+            }
+            while (prev == '/' && i < end && uri.charAt(i) == '/') {
+                i++;
+            }
+            if (i == end) {
+                return node.value;
+            }
+            Node<T> child = node.child(uri.charAt(i));
+            if (node.variable == null && node.digitVariable == null) {
+                if (child == null) {
+                    return null;
+                }
+                // 没有变量分支时不需要回溯，直接迭代
+                node = child;
+                continue;
+            }
+            if (child != null) {
+                T value = matchTree(child, uri, i, prev, variable, captures);
+                if (value != null) {
+                    return value;
+                }
+            }
+            // 字面量分支未命中，尝试变量分支：变量占满一个路径段，数字变量优先
+            int segmentEnd = i;
+            boolean digits = true;
+            while (segmentEnd < end && uri.charAt(segmentEnd) != '/') {
+                digits &= Character.isDigit(uri.charAt(segmentEnd));
+                segmentEnd++;
+            }
+            if (segmentEnd == i) {
+                return null;
+            }
+            if (digits && node.digitVariable != null) {
+                captures[variable * 2] = i;
+                captures[variable * 2 + 1] = segmentEnd;
+                T value = matchTree(node.digitVariable, uri, segmentEnd, uri.charAt(segmentEnd - 1), variable + 1, captures);
+                if (value != null) {
+                    return value;
+                }
+            }
+            if (node.variable == null) {
+                return null;
+            }
+            captures[variable * 2] = i;
+            captures[variable * 2 + 1] = segmentEnd;
+            return matchTree(node.variable, uri, segmentEnd, uri.charAt(segmentEnd - 1), variable + 1, captures);
+        }
+    }
+
+    private void insert(PathTemplate template, T value) {
+        Node<T> node = root;
+        List<String> literals = template.getLiterals();
+        for (int part = 0; part < literals.size(); part++) {
+            node = insertLiteral(node, literals.get(part));
+            if (part < template.getVariableCount()) {
+                if (template.isDigitsOnly(part)) {
+                    if (node.digitVariable == null) {
+                        node.digitVariable = new Node<>("");
+                    }
+                    node = node.digitVariable;
+                } else {
+                    if (node.variable == null) {
+                        node.variable = new Node<>("");
+                    }
+                    node = node.variable;
+                }
+            }
+        }
+        if (node.value != null) {
+            throw new IllegalStateException("Duplicate mapping for url " + template.getPath());
+        }
+        node.value = value;
+    }
+
+    /**
+     * 从node开始插入一段字面量，返回字面量结束处的节点
+     */
+    private Node<T> insertLiteral(Node<T> node, String path) {
+        int i = 0;
+        while (true) {
+            // 计算与当前节点前缀的公共长度
+            String prefix = node.prefix;
+            int common = 0;
+            int max = Math.min(prefix.length(), path.length() - i);
+            while (common < max && prefix.charAt(common) == path.charAt(i + common)) {
+                common++;
+            }
+            if (common < prefix.length()) {
+                node.split(common);
+            }
+            i += common;
+            if (i == path.length()) {
+                return node;
+            }
+            Node<T> child = node.child(path.charAt(i));
+            if (child == null) {
+                Node<T> leaf = new Node<>(path.substring(i));
+                node.addChild(leaf);
+                return leaf;
+            }
+            node = child;
+        }
+    }
+
+    private static boolean isRegex(String path) {
+        for (int i = 0; i < path.length(); i++) {
+            if (REGEX_META.indexOf(path.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 去掉from之前的部分并合并连续的'/'，保证以'/'开头
+     */
+    public static String normalize(String url, int from) {
+        StringBuilder sb = new StringBuilder(url.length() - from + 1);
+        char prev = 0;
+        if (from >= url.length() || url.charAt(from) != '/') {
+            sb.append('/');
+            prev = '/';
+        }
+        for (int i = from; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '/' && prev == '/') {
+                continue;
+            }
+            sb.append(c);
+            prev = c;
+        }
+        return sb.toString();
+    }
+
+    private static class Node<T> {
+        private String prefix;
+        /**
+         * 子节点首字符，与children一一对应
+         */
+        private char[] indices = new char[0];
+        private Node<T>[] children = empty();
+        private T value;
+        /**
+         * 变量分支，前缀为空，子节点为变量之后的路径
+         */
+        private Node<T> variable;
+        /**
+         * 只匹配数字的变量分支（int、long）
+         */
+        private Node<T> digitVariable;
+
+        Node(String prefix) {
+            this.prefix = prefix;
+        }
+
+        /**
+         * 泛型数组只能创建原始类型的Node[]，转换集中在这一处
+         */
+        @SuppressWarnings("unchecked")
+        private static <T> Node<T>[] empty() {
+            return (Node<T>[]) new Node<?>[0];
+        }
+
+        Node<T> child(char c) {
+            char[] idx = indices;
+            for (int i = 0; i < idx.length; i++) {
+                if (idx[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        void addChild(Node<T> child) {
+            int n = indices.length;
+            indices = Arrays.copyOf(indices, n + 1);
+            children = Arrays.copyOf(children, n + 1);
+            indices[n] = child.prefix.charAt(0);
+            children[n] = child;
+        }
+
+        /**
+         * 在at处拆分前缀，原节点的内容下沉为子节点
+         */
+        void split(int at) {
+            Node<T> tail = new Node<>(prefix.substring(at));
+            tail.indices = indices;
+            tail.children = children;
+            tail.value = value;
+            tail.variable = variable;
+            tail.digitVariable = digitVariable;
+            prefix = prefix.substring(0, at);
+            indices = new char[0];
+            children = empty();
+            value = null;
+            variable = null;
+            digitVariable = null;
+            addChild(tail);
+        }
+    }
+
+    private static class RegexRoute<T> {
+        private final Pattern pattern;
+        private final T value;
+
+        RegexRoute(Pattern pattern, T value) {
+            this.pattern = pattern;
+            this.value = value;
+        }
+    }
+}
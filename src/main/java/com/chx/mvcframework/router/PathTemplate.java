@@ -0,0 +1,136 @@
+package com.chx.mvcframework.router;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 路径模板，如/demo/{id}/detail、/demo/{id:int}
+ * 模板被拆分为字面量和变量交替的序列：literals比变量多一个
+ * 变量必须占满一个路径段，支持的类型：string（默认）、int、long
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class PathTemplate {
+
+    private final String path;
+
+    private final List<String> literals;
+
+    private final List<String> variableNames;
+
+    private final boolean[] digitsOnly;
+
+    private PathTemplate(String path, List<String> literals, List<String> variableNames, boolean[] digitsOnly) {
+        this.path = path;
+        this.literals = literals;
+        this.variableNames = variableNames;
+        this.digitsOnly = digitsOnly;
+    }
+
+    /**
+     * 解析路径模板，不含变量的路径返回只有一个字面量的模板
+     * @param path 已合并'/'的路径
+     */
+    public static PathTemplate parse(String path) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<Boolean> types = new ArrayList<>();
+        int literalStart = 0;
+        int i = 0;
+        while (i < path.length()) {
+            int close = variableEnd(path, i);
+            if (close < 0) {
+                i++;
+                continue;
+            }
+            String body = path.substring(i + 1, close);
+            int colon = body.indexOf(':');
+            String name = colon < 0 ? body : body.substring(0, colon);
+            String type = colon < 0 ? "string" : body.substring(colon + 1);
+            if (names.contains(name)) {
+                throw new IllegalArgumentException("Duplicate path variable '" + name + "' in " + path);
+            }
+            literals.add(path.substring(literalStart, i));
+            names.add(name);
+            types.add(isDigitsType(type, path));
+            i = close + 1;
+            literalStart = i;
+        }
+        literals.add(path.substring(literalStart));
+
+        boolean[] digitsOnly = new boolean[types.size()];
+        for (int k = 0; k < digitsOnly.length; k++) {
+            digitsOnly[k] = types.get(k);
+        }
+        return new PathTemplate(path, Collections.unmodifiableList(literals),
+                Collections.unmodifiableList(names), digitsOnly);
+    }
+
+    /**
+     * 如果i处是一个占满路径段的变量{name}或{name:type}，返回'}'的位置，否则返回-1
+     */
+    private static int variableEnd(String path, int i) {
+        if (path.charAt(i) != '{' || i == 0 || path.charAt(i - 1) != '/') {
+            return -1;
+        }
+        int close = path.indexOf('}', i);
+        if (close < 0 || (close + 1 < path.length() && path.charAt(close + 1) != '/')) {
+            return -1;
+        }
+        // 变量名以字母开头，只包含字母、数字和下划线
+        if (close == i + 1 || !Character.isLetter(path.charAt(i + 1))) {
+            return -1;
+        }
+        for (int k = i + 1; k < close; k++) {
+            char c = path.charAt(k);
+            if (c == ':') {
+                return close;
+            }
+            if (!Character.isLetterOrDigit(c) && c != '_') {
+                return -1;
+            }
+        }
+        return close;
+    }
+
+    private static boolean isDigitsType(String type, String path) {
+        switch (type) {
+            case "string":
+                return false;
+            case "int":
+            case "long":
+                return true;
+            default:
+                throw new IllegalArgumentException("Unsupported path variable type '" + type + "' in " + path);
+        }
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public List<String> getLiterals() {
+        return literals;
+    }
+
+    public List<String> getVariableNames() {
+        return variableNames;
+    }
+
+    public int getVariableCount() {
+        return variableNames.size();
+    }
+
+    public boolean isDigitsOnly(int variable) {
+        return digitsOnly[variable];
+    }
+
+    /**
+     * 变量在模板中的序号，不存在返回-1
+     */
+    public int indexOf(String name) {
+        return variableNames.indexOf(name);
+    }
+}
@@ -0,0 +1,375 @@
+package com.chx.mvcframework.scan;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Checksum;
+
+/**
+ * 类路径扫描器，支持目录、jar以及jar中嵌套的jar，scanPackage可以配置多个（逗号分隔）
+ * 只读取class文件的常量池判断是否引用了指定注解，不加载任何类；
+ * 文件读取和解析在独立的ForkJoinPool中并行执行
+ *
+ * 常量池中出现注解描述符只说明类可能带有该注解，加载后仍需用isAnnotationPresent确认
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class GPClassScanner {
+
+    private static final int CLASS_MAGIC = 0xCAFEBABE;
+
+    private final ClassLoader classLoader;
+
+    /**
+     * 注解的类型描述符，如Lcom/chx/mvcframework/annotation/GPController;
+     */
+    private final byte[][] descriptors;
+
+    @SafeVarargs
+    public GPClassScanner(ClassLoader classLoader, Class<? extends Annotation>... annotations) {
+        this.classLoader = classLoader;
+        this.descriptors = new byte[annotations.length][];
+        for (int i = 0; i < annotations.length; i++) {
+            descriptors[i] = ("L" + annotations[i].getName().replace('.', '/') + ";").getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * @param packages 包名，如com.chx.springdemo
+     * @return 引用了指定注解的类名，已去重并排序
+     */
+    public List<String> scan(String... packages) throws IOException {
+        Set<String> classNames = new TreeSet<>();
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            for (String scanPackage : packages) {
+                String packagePath = scanPackage.trim().replace('.', '/');
+                if (packagePath.isEmpty()) {
+                    continue;
+                }
+                Enumeration<URL> roots = classLoader.getResources(packagePath);
+                while (roots.hasMoreElements()) {
+                    URL root = roots.nextElement();
+                    classNames.addAll(scanRoot(pool, root, packagePath));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return new ArrayList<>(classNames);
+    }
+
+    /**
+     * 把包中所有class文件的路径、大小和修改时间加入校验和，不读取文件内容，用于判断启动快照是否过期
+     * 目录中的文件逐个计入（按文件名排序），jar只计入jar文件本身
+     */
+    public void fingerprint(Checksum checksum, String... packages) throws IOException {
+        for (String scanPackage : packages) {
+            String packagePath = scanPackage.trim().replace('.', '/');
+            if (packagePath.isEmpty()) {
+                continue;
+            }
+            Enumeration<URL> roots = classLoader.getResources(packagePath);
+            while (roots.hasMoreElements()) {
+                URL root = roots.nextElement();
+                update(checksum, root.toString());
+                File location = null;
+                try {
+                    if ("file".equals(root.getProtocol())) {
+                        location = new File(root.toURI());
+                    } else if ("jar".equals(root.getProtocol())) {
+                        URL jarFile = ((JarURLConnection) root.openConnection()).getJarFileURL();
+                        location = "file".equals(jarFile.getProtocol()) ? new File(jarFile.toURI()) : null;
+                    }
+                } catch (URISyntaxException e) {
+                    throw new IOException("Invalid classpath root " + root, e);
+                }
+                if (location == null) {
+                    continue;
+                }
+                if (location.isDirectory()) {
+                    fingerprintDirectory(checksum, location, "");
+                } else {
+                    update(checksum, location.length() + ":" + location.lastModified());
+                }
+            }
+        }
+    }
+
+    private static void fingerprintDirectory(Checksum checksum, File directory, String prefix) {
+        String[] names = directory.list();
+        if (names == null) {
+            return;
+        }
+        Arrays.sort(names);
+        for (String name : names) {
+            File file = new File(directory, name);
+            if (name.endsWith(".class")) {
+                update(checksum, prefix + name);
+                update(checksum, file.length() + ":" + file.lastModified());
+            } else if (file.isDirectory()) {
+                fingerprintDirectory(checksum, file, prefix + name + "/");
+            }
+        }
+    }
+
+    private static void update(Checksum checksum, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        checksum.update(bytes, 0, bytes.length);
+        checksum.update(0);
+    }
+
+    private List<String> scanRoot(ForkJoinPool pool, URL root, String packagePath) throws IOException {
+        if ("file".equals(root.getProtocol())) {
+            return scanDirectory(pool, root, packagePath);
+        }
+        URLConnection connection = root.openConnection();
+        if (connection instanceof JarURLConnection) {
+            connection.setUseCaches(false);
+            try (JarFile jar = ((JarURLConnection) connection).getJarFile()) {
+                return scanJar(pool, jar, packagePath);
+            }
+        }
+        // 跳过会让包中的组件静默缺失
+        throw new IOException("Unsupported classpath root " + root);
+    }
+
+    private List<String> scanDirectory(ForkJoinPool pool, URL root, String packagePath) throws IOException {
+        Path directory;
+        try {
+            directory = Paths.get(root.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid classpath root " + root, e);
+        }
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            files = walk.filter(path -> path.toString().endsWith(".class")).collect(Collectors.toList());
+        }
+        return filter(pool, files.stream().map(file -> {
+            // 相对路径转换为类名
+            String relative = directory.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+            return new ClassSource(packagePath + "/" + relative, () -> Files.readAllBytes(file));
+        }).collect(Collectors.toList()));
+    }
+
+    private List<String> scanJar(ForkJoinPool pool, JarFile jar, String packagePath) throws IOException {
+        String prefix = packagePath + "/";
+        List<ClassSource> sources = new ArrayList<>();
+        Enumeration<JarEntry> entries = jar.entries();
+        while (entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            String name = entry.getName();
+            if (name.endsWith(".class") && name.startsWith(prefix)) {
+                sources.add(new ClassSource(name, () -> {
+                    try (InputStream in = jar.getInputStream(entry)) {
+                        return readAll(in);
+                    }
+                }));
+            } else if (name.endsWith(".jar")) {
+                // 嵌套的jar（如WEB-INF/lib、BOOT-INF/lib）只能顺序读取
+                try (JarInputStream nested = new JarInputStream(jar.getInputStream(entry))) {
+                    collectNested(nested, prefix, sources);
+                }
+            }
+        }
+        return filter(pool, sources);
+    }
+
+    private void collectNested(JarInputStream jar, String prefix, List<ClassSource> sources) throws IOException {
+        JarEntry entry;
+        while ((entry = jar.getNextJarEntry()) != null) {
+            String name = entry.getName();
+            if (name.endsWith(".class") && name.startsWith(prefix)) {
+                byte[] bytes = readAll(jar);
+                sources.add(new ClassSource(name, () -> bytes));
+            } else if (name.endsWith(".jar")) {
+                collectNested(new JarInputStream(new NonClosingInputStream(jar)), prefix, sources);
+            }
+        }
+    }
+
+    private List<String> filter(ForkJoinPool pool, List<ClassSource> sources) throws IOException {
+        try {
+            return pool.submit(() -> sources.parallelStream()
+                    .filter(source -> !source.path.endsWith("package-info.class")
+                            && !source.path.endsWith("module-info.class"))
+                    .filter(this::isCandidate)
+                    .map(ClassSource::className)
+                    .collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Class scanning interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Class scanning failed", e.getCause());
+        }
+    }
+
+    private boolean isCandidate(ClassSource source) {
+        try {
+            return referencesAnnotation(source.reader.read());
+        } catch (IOException e) {
+            throw new ScanException(source.path, e);
+        } catch (IndexOutOfBoundsException e) {
+            // 常量池超出文件末尾
+            throw new ScanException(source.path, new IOException("Truncated class file", e));
+        }
+    }
+
+    /**
+     * 遍历常量池，只要有一个UTF8常量等于注解描述符就返回true
+     */
+    boolean referencesAnnotation(byte[] bytes) throws IOException {
+        if (bytes.length < 10 || readInt(bytes, 0) != CLASS_MAGIC) {
+            return false;
+        }
+        // 跳过minor_version、major_version
+        int count = readUnsignedShort(bytes, 8);
+        int offset = 10;
+        for (int i = 1; i < count; i++) {
+            int tag = bytes[offset];
+            switch (tag) {
+                case 1:
+                    // CONSTANT_Utf8
+                    int length = readUnsignedShort(bytes, offset + 1);
+                    if (matches(bytes, offset + 3, length)) {
+                        return true;
+                    }
+                    offset += 3 + length;
+                    break;
+                case 7:
+                case 8:
+                case 16:
+                case 19:
+                case 20:
+                    // Class、String、MethodType、Module、Package
+                    offset += 3;
+                    break;
+                case 15:
+                    // MethodHandle
+                    offset += 4;
+                    break;
+                case 3:
+                case 4:
+                case 9:
+                case 10:
+                case 11:
+                case 12:
+                case 17:
+                case 18:
+                    offset += 5;
+                    break;
+                case 5:
+                case 6:
+                    // Long、Double占两个常量池位置
+                    offset += 9;
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+        return false;
+    }
+
+    private static int readUnsignedShort(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (readUnsignedShort(bytes, offset) << 16) | readUnsignedShort(bytes, offset + 2);
+    }
+
+    private boolean matches(byte[] bytes, int start, int length) {
+        for (byte[] descriptor : descriptors) {
+            if (descriptor.length != length) {
+                continue;
+            }
+            int i = 0;
+            while (i < length && bytes[start + i] == descriptor[i]) {
+                i++;
+            }
+            if (i == length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    @FunctionalInterface
+    private interface BytesReader {
+        byte[] read() throws IOException;
+    }
+
+    private static class ClassSource {
+        /**
+         * 类文件路径，如com/chx/springdemo/DemoController.class
+         */
+        private final String path;
+        private final BytesReader reader;
+
+        ClassSource(String path, BytesReader reader) {
+            this.path = path;
+            this.reader = reader;
+        }
+
+        String className() {
+            return path.substring(0, path.length() - ".class".length()).replace('/', '.');
+        }
+    }
+
+    private static class ScanException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ScanException(String path, IOException cause) {
+            super("Can not read " + path, cause);
+        }
+    }
+
+    /**
+     * 读取多层嵌套的jar时不关闭外层流
+     */
+    private static class NonClosingInputStream extends FilterInputStream {
+        NonClosingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
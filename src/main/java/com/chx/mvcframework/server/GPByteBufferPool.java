@@ -0,0 +1,49 @@
+package com.chx.mvcframework.server;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 固定大小的直接缓冲区池，用于socket读写，避免每次读写都由JDK从堆缓冲区复制到临时的直接缓冲区
+ * 直接缓冲区的分配和回收很慢，所以池空时临时分配，池满时归还的缓冲区直接丢弃，池中最多保留capacity个
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class GPByteBufferPool {
+
+    private final int bufferSize;
+
+    private final ArrayBlockingQueue<ByteBuffer> buffers;
+
+    public GPByteBufferPool(int bufferSize, int capacity) {
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    }
+
+    /**
+     * @return 已清空的缓冲区，处于写入模式
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * 只有池中分配的缓冲区会被回收，其他缓冲区（如映射的文件）忽略
+     */
+    public void release(ByteBuffer buffer) {
+        if (isPooled(buffer)) {
+            buffer.clear();
+            buffers.offer(buffer);
+        }
+    }
+
+    public boolean isPooled(ByteBuffer buffer) {
+        return buffer != null && buffer.isDirect() && !buffer.isReadOnly() && buffer.capacity() == bufferSize;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
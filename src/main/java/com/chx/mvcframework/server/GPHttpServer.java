@@ -0,0 +1,177 @@
+package com.chx.mvcframework.server;
+
+import com.chx.mvcframework.dispatch.GPDispatcher;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 内嵌的非阻塞HTTP/1.1服务器，不依赖servlet API，请求通过GPHttpRequest/GPHttpResponse交给GPDispatcher处理
+ *
+ * selector线程负责接受连接和读写socket，请求完整后交给工作线程池执行；
+ * 支持keep-alive和流水线请求（同一连接按顺序逐个处理），读写使用池中的直接缓冲区
+ *
+ * 配置项（均以server开头）：
+ * <ul>
+ *     <li>serverPort：监听端口，0为随机端口</li>
+ *     <li>serverHost：监听地址，为空时监听所有地址</li>
+ *     <li>serverSelectors：selector线程数</li>
+ *     <li>serverThreads、serverQueueSize：工作线程数和队列长度，队列满时返回503</li>
+ *     <li>serverBufferSize：读写缓冲区大小，同时也是请求头的最大长度，超过时返回431</li>
+ *     <li>serverBufferPoolSize：池中最多保留的缓冲区个数</li>
+ *     <li>serverMaxBodySize：请求体的最大长度，超过时返回413</li>
+ *     <li>serverIdleTimeout：连接空闲（以及响应写不出去）多久后关闭，毫秒</li>
+ * </ul>
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class GPHttpServer {
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final GPDispatcher dispatcher;
+
+    private final String host;
+
+    private final int port;
+
+    private final SelectorLoop[] loops;
+
+    private final AtomicInteger nextLoop = new AtomicInteger();
+
+    private final ExecutorService workers;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final GPByteBufferPool bufferPool;
+
+    private final long maxBodySize;
+
+    private final long idleTimeout;
+
+    /**
+     * 一个连接排队等待写出的字节数上限，超过时写响应的线程等待
+     */
+    private final long writeHighWater;
+
+    private ServerSocketChannel serverChannel;
+
+    private volatile boolean running;
+
+    public GPHttpServer(GPDispatcher dispatcher, Properties config) throws IOException {
+        this.dispatcher = dispatcher;
+        this.host = config.getProperty("serverHost", "").trim();
+        this.port = Integer.parseInt(config.getProperty("serverPort", "8080").trim());
+        int bufferSize = Integer.parseInt(config.getProperty("serverBufferSize", "16384"));
+        this.bufferPool = new GPByteBufferPool(bufferSize, Integer.parseInt(config.getProperty("serverBufferPoolSize", "1024")));
+        this.maxBodySize = Long.parseLong(config.getProperty("serverMaxBodySize", "1048576"));
+        this.idleTimeout = Long.parseLong(config.getProperty("serverIdleTimeout", "30000"));
+        this.writeHighWater = bufferSize * 4L;
+
+        int threads = Integer.parseInt(config.getProperty("serverThreads", "64"));
+        int queueSize = Integer.parseInt(config.getProperty("serverQueueSize", "1024"));
+        // 队列满时抛出RejectedExecutionException，由selector线程直接返回503
+        this.workers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> newThread(r, "gp-http-worker-"));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> newThread(r, "gp-http-timer-"));
+
+        int selectors = Integer.parseInt(config.getProperty("serverSelectors", "1"));
+        this.loops = new SelectorLoop[Math.max(1, selectors)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new SelectorLoop(this);
+        }
+    }
+
+    private static Thread newThread(Runnable r, String prefix) {
+        Thread thread = new Thread(r, prefix + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * 绑定端口并启动selector线程，selector线程不是守护线程，服务器停止前JVM不会退出
+     */
+    public void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().setReuseAddress(true);
+        serverChannel.bind(host.isEmpty() ? new InetSocketAddress(port) : new InetSocketAddress(host, port), 1024);
+        serverChannel.configureBlocking(false);
+        running = true;
+        loops[0].accept(serverChannel);
+        for (int i = 0; i < loops.length; i++) {
+            loops[i].start("gp-http-selector-" + i);
+        }
+    }
+
+    /**
+     * 停止接受连接，关闭所有连接，正在处理的请求在关闭连接时中断
+     */
+    public void stop() {
+        running = false;
+        try {
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (SelectorLoop loop : loops) {
+            loop.stop();
+        }
+        workers.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * @return 实际监听的端口，serverPort=0时由系统分配
+     */
+    public int getPort() {
+        return serverChannel == null ? port : serverChannel.socket().getLocalPort();
+    }
+
+    SelectorLoop nextLoop() {
+        return loops[(nextLoop.getAndIncrement() & Integer.MAX_VALUE) % loops.length];
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    GPDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    ExecutorService getWorkers() {
+        return workers;
+    }
+
+    ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    GPByteBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    long getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    long getWriteHighWater() {
+        return writeHighWater;
+    }
+}
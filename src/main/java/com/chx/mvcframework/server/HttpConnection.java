@@ -0,0 +1,601 @@
+package com.chx.mvcframework.server;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 一个HTTP/1.1连接
+ *
+ * 读取和解析请求都在所属SelectorLoop的线程上进行，请求头和请求体完整后交给工作线程执行GPDispatcher；
+ * 同一个连接同时只处理一个请求，处理期间不再读取，客户端流水线发送的后续请求留在读缓冲区和内核中，
+ * 响应发送完后再继续解析，所以响应顺序与请求顺序一致，读取也受到反压
+ *
+ * 写响应的线程先直接写socket，写不完的部分排队并注册OP_WRITE由selector线程继续写，
+ * 排队的字节数超过上限时写响应的线程等待，大的响应体不会全部堆积在内存中
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+final class HttpConnection {
+
+    private static final int READ_HEADER = 0;
+
+    private static final int READ_BODY = 1;
+
+    private static final int PROCESSING = 2;
+
+    private static final int CLOSED = 3;
+
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final GPHttpServer server;
+
+    private final SelectorLoop loop;
+
+    private final SocketChannel channel;
+
+    private final GPByteBufferPool bufferPool;
+
+    private SelectionKey key;
+
+    /**
+     * 读缓冲区，处于写入模式，只在selector线程上使用；没有未解析的数据时归还到池中
+     */
+    private ByteBuffer readBuffer;
+
+    /**
+     * 读缓冲区中已经查找过请求头结束标记的字节数
+     */
+    private int scanned;
+
+    private int state = READ_HEADER;
+
+    private ServerHttpRequest request;
+
+    private ServerHttpResponse response;
+
+    private byte[] body;
+
+    private int bodyRead;
+
+    /**
+     * 最后一次读到或写出数据的时间，用于空闲超时和写超时
+     */
+    private volatile long lastActivity = System.currentTimeMillis();
+
+    /**
+     * 以下字段由outputLock保护
+     */
+    private final Object outputLock = new Object();
+
+    private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+
+    private long pendingBytes;
+
+    private boolean responseComplete;
+
+    private boolean writeInterest;
+
+    private boolean closed;
+
+    HttpConnection(GPHttpServer server, SelectorLoop loop, SocketChannel channel) {
+        this.server = server;
+        this.loop = loop;
+        this.channel = channel;
+        this.bufferPool = server.getBufferPool();
+    }
+
+    void register(Selector selector) throws IOException {
+        key = channel.register(selector, SelectionKey.OP_READ, this);
+    }
+
+    void onReadable() {
+        if (state != READ_HEADER && state != READ_BODY) {
+            return;
+        }
+        if (readBuffer == null) {
+            readBuffer = bufferPool.acquire();
+        }
+        int n;
+        try {
+            n = channel.read(readBuffer);
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        if (n < 0) {
+            close();
+            return;
+        }
+        lastActivity = System.currentTimeMillis();
+        process();
+    }
+
+    /**
+     * 解析读缓冲区中的数据，得到完整的请求后交给工作线程
+     */
+    private void process() {
+        if (state == READ_HEADER) {
+            byte[] head;
+            do {
+                int end = findHeaderEnd();
+                if (end < 0) {
+                    if (!readBuffer.hasRemaining()) {
+                        reject(431);
+                    } else {
+                        updateInterest();
+                    }
+                    return;
+                }
+                head = new byte[end];
+                readBuffer.flip();
+                readBuffer.get(head);
+                readBuffer.compact();
+                scanned = 0;
+                // 请求之间只有空行时跳过，继续查找下一个请求头
+            } while (isBlank(head));
+            if (!parseHeader(head)) {
+                return;
+            }
+            if (body == null) {
+                dispatch();
+                return;
+            }
+            state = READ_BODY;
+            if (readBuffer.position() < body.length && "100-continue".equalsIgnoreCase(request.getHeader("Expect"))) {
+                // 客户端等待100 Continue后才发送请求体
+                try {
+                    channel.write(ByteBuffer.wrap(CONTINUE));
+                } catch (IOException e) {
+                    close();
+                    return;
+                }
+            }
+        }
+        if (state == READ_BODY) {
+            readBuffer.flip();
+            int n = Math.min(readBuffer.remaining(), body.length - bodyRead);
+            readBuffer.get(body, bodyRead, n);
+            readBuffer.compact();
+            bodyRead += n;
+            if (bodyRead == body.length) {
+                request.setBody(body);
+                dispatch();
+            } else {
+                updateInterest();
+            }
+        }
+    }
+
+    /**
+     * @return 请求头结束标记（空行）之后的位置，没有找到时返回-1
+     */
+    private int findHeaderEnd() {
+        int limit = readBuffer.position();
+        for (int i = Math.max(0, scanned - 3); i < limit; i++) {
+            if (readBuffer.get(i) != '\n') {
+                continue;
+            }
+            if (i >= 1 && readBuffer.get(i - 1) == '\n') {
+                return i + 1;
+            }
+            if (i >= 2 && readBuffer.get(i - 1) == '\r' && readBuffer.get(i - 2) == '\n') {
+                return i + 1;
+            }
+        }
+        scanned = limit;
+        return -1;
+    }
+
+    private static boolean isBlank(byte[] head) {
+        for (byte b : head) {
+            if (b != '\r' && b != '\n') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 解析请求行和请求头，创建请求和响应；请求有请求体时创建body
+     * @return false表示请求不合法，已经返回错误
+     */
+    private boolean parseHeader(byte[] head) {
+        String text = new String(head, StandardCharsets.ISO_8859_1);
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            String line = text.substring(start, end > 0 && text.charAt(end - 1) == '\r' ? end - 1 : end);
+            start = end + 1;
+            // 请求之间多余的空行忽略
+            if (!line.isEmpty() || !lines.isEmpty()) {
+                lines.add(line);
+            }
+        }
+        if (lines.isEmpty()) {
+            // process已经跳过只有空行的部分
+            reject(400);
+            return false;
+        }
+        String[] requestLine = lines.get(0).split(" ");
+        if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.")) {
+            reject(400);
+            return false;
+        }
+        String target = requestLine[1];
+        if (!target.startsWith("/")) {
+            // absolute-form：http://host/path
+            int scheme = target.indexOf("://");
+            if (scheme < 0) {
+                reject(400);
+                return false;
+            }
+            int path = target.indexOf('/', scheme + 3);
+            target = path < 0 ? "/" : target.substring(path);
+        }
+        int count = lines.size() - 1;
+        while (count > 0 && lines.get(count).isEmpty()) {
+            count--;
+        }
+        String[] names = new String[count];
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            String line = lines.get(i + 1);
+            int colon = line.indexOf(':');
+            if (colon <= 0 || Character.isWhitespace(line.charAt(0)) || Character.isWhitespace(line.charAt(colon - 1))) {
+                reject(400);
+                return false;
+            }
+            names[i] = line.substring(0, colon);
+            values[i] = line.substring(colon + 1).trim();
+        }
+        request = new ServerHttpRequest(server, requestLine[0], target, "HTTP/1.0".equals(requestLine[2]), names, values);
+
+        if (request.getHeader("Transfer-Encoding") != null) {
+            // 不支持chunked请求体
+            reject(411);
+            return false;
+        }
+        String contentLength = request.getHeader("Content-Length");
+        if (contentLength != null) {
+            long length;
+            try {
+                length = Long.parseLong(contentLength);
+            } catch (NumberFormatException e) {
+                length = -1;
+            }
+            if (length < 0) {
+                reject(400);
+                return false;
+            }
+            if (length > server.getMaxBodySize()) {
+                reject(413);
+                return false;
+            }
+            if (length > 0) {
+                body = new byte[(int) length];
+                bodyRead = 0;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 请求完整，停止读取，交给工作线程处理
+     */
+    private void dispatch() {
+        state = PROCESSING;
+        body = null;
+        response = new ServerHttpResponse(this, bufferPool, request.isHead(), request.isHttp10(),
+                request.isKeepAlive() && server.isRunning());
+        request.setResponse(response);
+        releaseReadBufferIfEmpty();
+        updateInterest();
+        ServerHttpRequest req = request;
+        ServerHttpResponse resp = response;
+        try {
+            server.getWorkers().execute(() -> handle(req, resp));
+        } catch (RejectedExecutionException e) {
+            resp.setStatus(ServerHttpResponse.SC_SERVICE_UNAVAILABLE);
+            try {
+                resp.complete();
+            } catch (IOException ignored) {
+                // 连接已关闭
+            }
+        }
+    }
+
+    /**
+     * 在工作线程上执行
+     */
+    private void handle(ServerHttpRequest req, ServerHttpResponse resp) {
+        try {
+            try {
+                server.getDispatcher().dispatch(req, resp);
+            } catch (Throwable e) {
+                server.getDispatcher().logError(e);
+                resp.fail();
+                return;
+            }
+            if (req.dispatched()) {
+                resp.complete();
+            }
+        } catch (IOException e) {
+            // 客户端断开连接，连接已关闭
+        }
+    }
+
+    /**
+     * 发送响应的一部分，在写响应的线程上调用
+     * @param last 是否是响应的最后一部分，发送完后开始处理下一个请求
+     * @throws IOException 连接已经关闭或者写超时
+     */
+    void send(List<ByteBuffer> buffers, boolean last) throws IOException {
+        boolean done = false;
+        synchronized (outputLock) {
+            if (closed) {
+                release(buffers);
+                throw new IOException("Connection closed");
+            }
+            for (ByteBuffer buffer : buffers) {
+                if (buffer.hasRemaining()) {
+                    pending.add(buffer);
+                    pendingBytes += buffer.remaining();
+                } else {
+                    bufferPool.release(buffer);
+                }
+            }
+            if (last) {
+                responseComplete = true;
+            }
+            if (!writeInterest) {
+                try {
+                    flushPending();
+                } catch (IOException e) {
+                    closeOutput();
+                    loop.execute(this::close);
+                    throw e;
+                }
+                if (!pending.isEmpty()) {
+                    writeInterest = true;
+                    loop.execute(this::updateInterest);
+                } else if (last) {
+                    done = true;
+                }
+            }
+            if (!last) {
+                awaitDrain();
+            }
+        }
+        if (done) {
+            loop.execute(this::onResponseDone);
+        }
+    }
+
+    /**
+     * 排队的字节数超过上限时等待selector线程写出，超过空闲超时时间没有进展时关闭连接
+     */
+    private void awaitDrain() throws IOException {
+        long highWater = server.getWriteHighWater();
+        long timeout = server.getIdleTimeout();
+        while (pendingBytes > highWater && !closed) {
+            long idle = System.currentTimeMillis() - lastActivity;
+            if (idle >= timeout) {
+                closeOutput();
+                loop.execute(this::close);
+                throw new SocketTimeoutException("Write timeout");
+            }
+            try {
+                outputLock.wait(timeout - idle);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        if (closed) {
+            throw new IOException("Connection closed");
+        }
+    }
+
+    /**
+     * 尽可能多地写出排队的数据，持有outputLock时调用
+     */
+    private void flushPending() throws IOException {
+        while (!pending.isEmpty()) {
+            long n = channel.write(pending.toArray(new ByteBuffer[0]));
+            while (!pending.isEmpty() && !pending.peekFirst().hasRemaining()) {
+                bufferPool.release(pending.pollFirst());
+            }
+            pendingBytes -= n;
+            if (n == 0) {
+                return;
+            }
+            lastActivity = System.currentTimeMillis();
+        }
+    }
+
+    void onWritable() {
+        boolean done;
+        synchronized (outputLock) {
+            try {
+                flushPending();
+            } catch (IOException e) {
+                closeOutput();
+                close();
+                return;
+            }
+            if (pendingBytes <= server.getWriteHighWater()) {
+                outputLock.notifyAll();
+            }
+            if (!pending.isEmpty()) {
+                return;
+            }
+            writeInterest = false;
+            done = responseComplete;
+        }
+        updateInterest();
+        if (done) {
+            onResponseDone();
+        }
+    }
+
+    /**
+     * 响应已经全部写出，在selector线程上开始处理下一个请求
+     */
+    private void onResponseDone() {
+        if (state != PROCESSING) {
+            return;
+        }
+        synchronized (outputLock) {
+            responseComplete = false;
+        }
+        boolean keepAlive = response.isKeepAlive() && server.isRunning();
+        request = null;
+        response = null;
+        if (!keepAlive) {
+            try {
+                channel.shutdownOutput();
+            } catch (IOException e) {
+                // 连接已经断开
+            }
+            close();
+            return;
+        }
+        state = READ_HEADER;
+        lastActivity = System.currentTimeMillis();
+        if (readBuffer != null && readBuffer.position() > 0) {
+            process();
+        } else {
+            updateInterest();
+        }
+    }
+
+    /**
+     * 请求不合法时返回错误并关闭连接，在selector线程上调用
+     */
+    private void reject(int status) {
+        state = PROCESSING;
+        body = null;
+        response = new ServerHttpResponse(this, bufferPool, false, false, false);
+        response.setStatus(status);
+        releaseReadBuffer();
+        updateInterest();
+        try {
+            response.complete();
+        } catch (IOException e) {
+            // 连接已关闭
+        }
+    }
+
+    /**
+     * 根据当前状态设置关注的事件，在selector线程上调用
+     */
+    private void updateInterest() {
+        if (state == CLOSED || !key.isValid()) {
+            return;
+        }
+        int ops = state == PROCESSING ? 0 : SelectionKey.OP_READ;
+        synchronized (outputLock) {
+            if (writeInterest) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+        }
+        key.interestOps(ops);
+        if (state != PROCESSING) {
+            releaseReadBufferIfEmpty();
+        }
+    }
+
+    /**
+     * 空闲超时检查，在selector线程上调用；处理请求期间不算空闲，除非响应写不出去
+     */
+    void checkIdle(long now) {
+        if (state == CLOSED || now - lastActivity < server.getIdleTimeout()) {
+            return;
+        }
+        boolean stalled;
+        synchronized (outputLock) {
+            stalled = writeInterest;
+        }
+        if (state != PROCESSING || stalled) {
+            close();
+        }
+    }
+
+    /**
+     * 关闭连接，释放缓冲区，正在异步处理的请求收到onError；可以在任意线程上调用
+     */
+    void close() {
+        if (!loop.inLoop()) {
+            closeOutput();
+            loop.execute(this::close);
+            return;
+        }
+        if (state == CLOSED) {
+            return;
+        }
+        ServerHttpRequest current = state == PROCESSING ? request : null;
+        state = CLOSED;
+        closeOutput();
+        releaseReadBuffer();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // 忽略
+        }
+        request = null;
+        response = null;
+        body = null;
+        if (current != null) {
+            current.onError();
+        }
+    }
+
+    /**
+     * 停止输出，唤醒等待写出的线程，排队的缓冲区归还到池中
+     */
+    private void closeOutput() {
+        synchronized (outputLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            release(pending);
+            pending.clear();
+            pendingBytes = 0;
+            writeInterest = false;
+            outputLock.notifyAll();
+        }
+    }
+
+    private void release(Iterable<ByteBuffer> buffers) {
+        for (ByteBuffer buffer : buffers) {
+            bufferPool.release(buffer);
+        }
+    }
+
+    private void releaseReadBufferIfEmpty() {
+        if (readBuffer != null && readBuffer.position() == 0) {
+            releaseReadBuffer();
+        }
+    }
+
+    private void releaseReadBuffer() {
+        if (readBuffer != null) {
+            bufferPool.release(readBuffer);
+            readBuffer = null;
+            scanned = 0;
+        }
+    }
+}
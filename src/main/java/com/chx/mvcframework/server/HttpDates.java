@@ -0,0 +1,61 @@
+package com.chx.mvcframework.server;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * HTTP日期（RFC 7231 IMF-fixdate）的格式化和解析
+ * Date响应头每秒只格式化一次
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+final class HttpDates {
+
+    private static final DateTimeFormatter FORMAT =
+            DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+
+    private static volatile CachedDate cached = new CachedDate(0, null);
+
+    private HttpDates() {
+    }
+
+    static String now() {
+        long second = System.currentTimeMillis() / 1000;
+        CachedDate date = cached;
+        if (date.second != second) {
+            date = new CachedDate(second, format(second * 1000));
+            cached = date;
+        }
+        return date.text;
+    }
+
+    static String format(long millis) {
+        return FORMAT.format(Instant.ofEpochMilli(millis));
+    }
+
+    /**
+     * @throws IllegalArgumentException 不是HTTP日期格式
+     */
+    static long parse(String value) {
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date header: " + value);
+        }
+    }
+
+    private static final class CachedDate {
+        private final long second;
+        private final String text;
+
+        CachedDate(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.chx.mvcframework.server;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 一个selector线程，负责所属连接的读写；第一个SelectorLoop同时接受新连接，按轮询分配给各个SelectorLoop
+ * 其他线程通过execute提交任务，注册事件等对SelectionKey的修改都在本线程上进行
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+final class SelectorLoop implements Runnable {
+
+    /**
+     * 检查空闲连接的间隔（毫秒）
+     */
+    private static final long IDLE_CHECK_INTERVAL = 1000;
+
+    private final GPHttpServer server;
+
+    private final Selector selector;
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private volatile Thread thread;
+
+    private volatile boolean running = true;
+
+    SelectorLoop(GPHttpServer server) throws IOException {
+        this.server = server;
+        this.selector = Selector.open();
+    }
+
+    void start(String name) {
+        Thread t = new Thread(this, name);
+        thread = t;
+        t.start();
+    }
+
+    void accept(ServerSocketChannel serverChannel) throws IOException {
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    boolean inLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * 在本线程上执行任务，从其他线程提交时唤醒selector
+     */
+    void execute(Runnable task) {
+        tasks.add(task);
+        if (!inLoop()) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * 注册新连接，可以在任意线程上调用
+     */
+    void register(SocketChannel channel) {
+        execute(() -> {
+            try {
+                new HttpConnection(server, this, channel).register(selector);
+            } catch (IOException e) {
+                closeQuietly(channel);
+            }
+        });
+    }
+
+    void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        long nextIdleCheck = System.currentTimeMillis() + IDLE_CHECK_INTERVAL;
+        while (running) {
+            try {
+                selector.select(IDLE_CHECK_INTERVAL);
+                runTasks();
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    handle(key);
+                }
+                runTasks();
+                long now = System.currentTimeMillis();
+                if (now >= nextIdleCheck) {
+                    nextIdleCheck = now + IDLE_CHECK_INTERVAL;
+                    for (SelectionKey key : selector.keys()) {
+                        if (key.attachment() instanceof HttpConnection) {
+                            ((HttpConnection) key.attachment()).checkIdle(now);
+                        }
+                    }
+                }
+            } catch (Throwable e) {
+                // 单个连接的异常不能终止selector线程
+                e.printStackTrace();
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof HttpConnection) {
+                ((HttpConnection) key.attachment()).close();
+            }
+        }
+        runTasks();
+        try {
+            selector.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        try {
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.isAcceptable()) {
+                acceptAll((ServerSocketChannel) key.channel());
+                return;
+            }
+            HttpConnection connection = (HttpConnection) key.attachment();
+            if (key.isWritable()) {
+                connection.onWritable();
+            }
+            if (key.isValid() && key.isReadable()) {
+                connection.onReadable();
+            }
+        } catch (CancelledKeyException e) {
+            // 连接已经关闭
+        }
+    }
+
+    private void acceptAll(ServerSocketChannel serverChannel) {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+                if (channel == null) {
+                    return;
+                }
+            } catch (IOException e) {
+                // 文件句柄用尽等情况，下次select再试
+                e.printStackTrace();
+                return;
+            }
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                server.nextLoop().register(channel);
+            } catch (IOException e) {
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (CancelledKeyException e) {
+                // 连接已经关闭
+            } catch (Throwable e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // 忽略
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.chx.mvcframework.server;
+
+import com.chx.mvcframework.http.GPAsyncContext;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GPHttpServer的异步上下文
+ * 与servlet相同，dispatch返回之前调用complete()时，响应在dispatch返回后才结束；超时在GPHttpServer的定时线程上通知
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+final class ServerAsyncContext implements GPAsyncContext {
+
+    private final ScheduledExecutorService scheduler;
+
+    private final ServerHttpResponse response;
+
+    private Listener listener;
+
+    private ScheduledFuture<?> timeout;
+
+    private boolean dispatching = true;
+
+    private boolean completed;
+
+    ServerAsyncContext(ScheduledExecutorService scheduler, ServerHttpResponse response) {
+        this.scheduler = scheduler;
+        this.response = response;
+    }
+
+    @Override
+    public synchronized void setTimeout(long timeout, Listener listener) {
+        if (completed) {
+            return;
+        }
+        if (this.timeout != null) {
+            this.timeout.cancel(false);
+            this.timeout = null;
+        }
+        this.listener = listener;
+        if (timeout > 0) {
+            this.timeout = scheduler.schedule(this::onTimeout, timeout, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void onTimeout() {
+        Listener current;
+        synchronized (this) {
+            if (completed) {
+                return;
+            }
+            current = listener;
+        }
+        if (current != null) {
+            current.onTimeout();
+        } else {
+            response.setStatus(ServerHttpResponse.SC_SERVICE_UNAVAILABLE);
+            complete();
+        }
+    }
+
+    @Override
+    public void complete() {
+        synchronized (this) {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            if (dispatching) {
+                return;
+            }
+        }
+        finish();
+    }
+
+    /**
+     * @return dispatch返回前是否已经complete，是则由调用方结束响应
+     */
+    synchronized boolean dispatched() {
+        dispatching = false;
+        return completed;
+    }
+
+    void onError() {
+        Listener current;
+        synchronized (this) {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            current = listener;
+        }
+        if (current != null) {
+            current.onError();
+        }
+    }
+
+    private void finish() {
+        try {
+            response.complete();
+        } catch (IOException e) {
+            // 连接已经关闭
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.chx.mvcframework.server;
+
+import com.chx.mvcframework.http.GPAsyncContext;
+import com.chx.mvcframework.http.GPHttpRequest;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * GPHttpServer解析出的请求，请求行、请求头和请求体在selector线程上读完后才交给工作线程
+ * 查询参数和表单参数在第一次读取参数时才解析
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+final class ServerHttpRequest implements GPHttpRequest {
+
+    private static final byte[] EMPTY_BODY = new byte[0];
+
+    private final GPHttpServer server;
+
+    private final String method;
+
+    private final String requestUri;
+
+    private final String queryString;
+
+    private final boolean http10;
+
+    private final String[] headerNames;
+
+    private final String[] headerValues;
+
+    private byte[] body = EMPTY_BODY;
+
+    private Map<String, String[]> parameters;
+
+    private ServerHttpResponse response;
+
+    /**
+     * 工作线程上创建，连接出错时在selector线程上读取
+     */
+    private volatile ServerAsyncContext asyncContext;
+
+    ServerHttpRequest(GPHttpServer server, String method, String target, boolean http10,
+                      String[] headerNames, String[] headerValues) {
+        this.server = server;
+        this.method = method;
+        int question = target.indexOf('?');
+        this.requestUri = question < 0 ? target : target.substring(0, question);
+        this.queryString = question < 0 ? null : target.substring(question + 1);
+        this.http10 = http10;
+        this.headerNames = headerNames;
+        this.headerValues = headerValues;
+    }
+
+    void setBody(byte[] body) {
+        this.body = body;
+    }
+
+    void setResponse(ServerHttpResponse response) {
+        this.response = response;
+    }
+
+    boolean isHttp10() {
+        return http10;
+    }
+
+    boolean isHead() {
+        return "HEAD".equals(method);
+    }
+
+    /**
+     * 请求是否要求保持连接：HTTP/1.1默认保持，HTTP/1.0需要Connection: keep-alive
+     */
+    boolean isKeepAlive() {
+        String connection = getHeader("Connection");
+        if (connection == null) {
+            return !http10;
+        }
+        return http10 ? containsToken(connection, "keep-alive") : !containsToken(connection, "close");
+    }
+
+    /**
+     * 工作线程上的dispatch返回后调用
+     * @return true表示响应已经可以结束：没有开始异步处理，或者异步处理在dispatch返回前已经complete
+     */
+    boolean dispatched() {
+        return asyncContext == null || asyncContext.dispatched();
+    }
+
+    /**
+     * 连接出错时通知异步处理
+     */
+    void onError() {
+        ServerAsyncContext async = asyncContext;
+        if (async != null) {
+            async.onError();
+        }
+    }
+
+    private static boolean containsToken(String value, String token) {
+        for (String part : value.split(",")) {
+            if (part.trim().equalsIgnoreCase(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String getRequestURI() {
+        return requestUri;
+    }
+
+    @Override
+    public String getContextPath() {
+        return "";
+    }
+
+    @Override
+    public String getQueryString() {
+        return queryString;
+    }
+
+    @Override
+    public String getParameter(String name) {
+        String[] values = parameters().get(name);
+        return values == null ? null : values[0];
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        return parameters().get(name);
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        return parameters();
+    }
+
+    private Map<String, String[]> parameters() {
+        if (parameters == null) {
+            Map<String, String[]> parsed = new LinkedHashMap<>();
+            if (queryString != null) {
+                parse(queryString, parsed);
+            }
+            String form = getFormBody();
+            if (!form.isEmpty()) {
+                parse(form, parsed);
+            }
+            parameters = Collections.unmodifiableMap(parsed);
+        }
+        return parameters;
+    }
+
+    /**
+     * 请求体已经读入内存，可以直接按表单的字符集转换
+     */
+    @Override
+    public String getFormBody() {
+        String contentType = getHeader("Content-Type");
+        if (body.length == 0 || contentType == null
+                || !contentType.regionMatches(true, 0, "application/x-www-form-urlencoded", 0, 33)) {
+            return "";
+        }
+        return new String(body, charset(contentType));
+    }
+
+    private static void parse(String query, Map<String, String[]> parameters) {
+        int start = 0;
+        while (start <= query.length()) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = query.length();
+            }
+            if (end > start) {
+                int equals = query.indexOf('=', start);
+                String name;
+                String value;
+                if (equals < 0 || equals > end) {
+                    name = decode(query.substring(start, end));
+                    value = "";
+                } else {
+                    name = decode(query.substring(start, equals));
+                    value = decode(query.substring(equals + 1, end));
+                }
+                String[] values = parameters.get(name);
+                if (values == null) {
+                    values = new String[]{value};
+                } else {
+                    values = Arrays.copyOf(values, values.length + 1);
+                    values[values.length - 1] = value;
+                }
+                parameters.put(name, values);
+            }
+            start = end + 1;
+        }
+    }
+
+    private static String decode(String value) {
+        if (value.indexOf('%') < 0 && value.indexOf('+') < 0) {
+            return value;
+        }
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            // 不完整的%转义保留原样
+            return value;
+        }
+    }
+
+    private static Charset charset(String contentType) {
+        if (contentType != null) {
+            int index = contentType.toLowerCase().indexOf("charset=");
+            if (index >= 0) {
+                String name = contentType.substring(index + 8).trim();
+                int semicolon = name.indexOf(';');
+                if (semicolon >= 0) {
+                    name = name.substring(0, semicolon).trim();
+                }
+                try {
+                    return Charset.forName(name.replace("\"", ""));
+                } catch (IllegalArgumentException e) {
+                    // 不支持的字符集按UTF-8处理
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    @Override
+    public String getHeader(String name) {
+        for (int i = 0; i < headerNames.length; i++) {
+            if (headerNames[i].equalsIgnoreCase(name)) {
+                return headerValues[i];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public long getDateHeader(String name) {
+        String value = getHeader(name);
+        return value == null ? -1 : HttpDates.parse(value);
+    }
+
+    @Override
+    public BufferedReader getReader() {
+        return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body), charset(getHeader("Content-Type"))));
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+        return true;
+    }
+
+    @Override
+    public GPAsyncContext startAsync() {
+        if (asyncContext == null) {
+            asyncContext = new ServerAsyncContext(server.getScheduler(), response);
+        }
+        return asyncContext;
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> type) {
+        return type.isInstance(this) ? type.cast(this) : null;
+    }
+}
@@ -0,0 +1,470 @@
+package com.chx.mvcframework.server;
+
+import com.chx.mvcframework.http.GPHttpResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GPHttpServer的响应，响应体写入池中的直接缓冲区
+ *
+ * 第一个缓冲区写满或调用flush()之前不提交响应，整个响应体都在缓冲区中时按实际长度设置Content-Length，
+ * 否则没有设置Content-Length的响应使用chunked编码（HTTP/1.0客户端改为写完后关闭连接）；
+ * HEAD请求的响应体只计数不发送
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+final class ServerHttpResponse implements GPHttpResponse {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private static final byte[] LAST_CHUNK = {'0', '\r', '\n', '\r', '\n'};
+
+    private static final byte[] CRLF_LAST_CHUNK = {'\r', '\n', '0', '\r', '\n', '\r', '\n'};
+
+    private final HttpConnection connection;
+
+    private final GPByteBufferPool bufferPool;
+
+    private final boolean head;
+
+    private final boolean http10;
+
+    private boolean keepAlive;
+
+    private int status = SC_OK;
+
+    private final List<String> headerNames = new ArrayList<>(8);
+
+    private final List<String> headerValues = new ArrayList<>(8);
+
+    private String contentType;
+
+    private long contentLength = -1;
+
+    /**
+     * 已写满、还没有发送的缓冲区
+     */
+    private final List<ByteBuffer> buffered = new ArrayList<>(4);
+
+    /**
+     * 正在写入的缓冲区
+     */
+    private ByteBuffer current;
+
+    /**
+     * 写入响应体的总字节数
+     */
+    private long written;
+
+    private boolean committed;
+
+    private boolean chunked;
+
+    private boolean completed;
+
+    private Output output;
+
+    ServerHttpResponse(HttpConnection connection, GPByteBufferPool bufferPool, boolean head, boolean http10, boolean keepAlive) {
+        this.connection = connection;
+        this.bufferPool = bufferPool;
+        this.head = head;
+        this.http10 = http10;
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * 提交之后才确定，HTTP/1.0客户端的响应长度未知时不保持连接
+     */
+    boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public void setStatus(int status) {
+        if (!committed) {
+            this.status = status;
+        }
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (committed || setSpecialHeader(name, value)) {
+            return;
+        }
+        for (int i = 0; i < headerNames.size(); i++) {
+            if (headerNames.get(i).equalsIgnoreCase(name)) {
+                if (value == null) {
+                    headerNames.remove(i);
+                    headerValues.remove(i);
+                } else {
+                    headerValues.set(i, value);
+                }
+                return;
+            }
+        }
+        if (value != null) {
+            headerNames.add(name);
+            headerValues.add(value);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (committed || value == null || setSpecialHeader(name, value)) {
+            return;
+        }
+        headerNames.add(name);
+        headerValues.add(value);
+    }
+
+    /**
+     * Content-Type和Content-Length单独保存，提交时由服务器写出
+     */
+    private boolean setSpecialHeader(String name, String value) {
+        if ("Content-Type".equalsIgnoreCase(name)) {
+            contentType = value;
+            return true;
+        }
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            contentLength = value == null ? -1 : Long.parseLong(value);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        setHeader(name, HttpDates.format(date));
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+        return getHeader(name) != null;
+    }
+
+    @Override
+    public String getHeader(String name) {
+        if ("Content-Type".equalsIgnoreCase(name)) {
+            return contentType;
+        }
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            return contentLength < 0 ? null : String.valueOf(contentLength);
+        }
+        for (int i = 0; i < headerNames.size(); i++) {
+            if (headerNames.get(i).equalsIgnoreCase(name)) {
+                return headerValues.get(i);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void setContentType(String type) {
+        if (!committed) {
+            contentType = type;
+        }
+    }
+
+    @Override
+    public void setContentLength(long length) {
+        if (!committed) {
+            contentLength = length;
+        }
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        if (output == null) {
+            output = new Output();
+        }
+        return output;
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> type) {
+        return type.isInstance(this) ? type.cast(this) : null;
+    }
+
+    /**
+     * 结束响应，发送缓冲区中剩余的内容，之后不能再写入
+     */
+    void complete() throws IOException {
+        if (completed) {
+            return;
+        }
+        completed = true;
+        send(true);
+    }
+
+    /**
+     * 处理请求时抛出异常：还没有提交时改为500，否则只能关闭连接
+     */
+    void fail() throws IOException {
+        if (committed) {
+            completed = true;
+            discard();
+            connection.close();
+            return;
+        }
+        discard();
+        status = SC_INTERNAL_SERVER_ERROR;
+        headerNames.clear();
+        headerValues.clear();
+        contentType = null;
+        contentLength = -1;
+        written = 0;
+        complete();
+    }
+
+    private void discard() {
+        for (ByteBuffer buffer : buffered) {
+            bufferPool.release(buffer);
+        }
+        buffered.clear();
+        bufferPool.release(current);
+        current = null;
+    }
+
+    private boolean isBodyAllowed() {
+        return status >= 200 && status != 204 && status != 304;
+    }
+
+    /**
+     * 提交响应（第一次调用时），把缓冲区交给连接发送
+     * @param last 是否是响应的最后一部分
+     */
+    private void send(boolean last) throws IOException {
+        if (current != null) {
+            if (current.position() > 0) {
+                current.flip();
+                buffered.add(current);
+            } else {
+                bufferPool.release(current);
+            }
+            current = null;
+        }
+        if (head || !isBodyAllowed()) {
+            discard();
+        }
+        long size = 0;
+        for (ByteBuffer buffer : buffered) {
+            size += buffer.remaining();
+        }
+        List<ByteBuffer> out = new ArrayList<>(buffered.size() + 3);
+        if (!committed) {
+            if (last && contentLength < 0 && isBodyAllowed()) {
+                contentLength = written;
+            }
+            out.add(commit());
+        }
+        if (chunked && size > 0) {
+            out.add(ByteBuffer.wrap((Long.toHexString(size) + "\r\n").getBytes(StandardCharsets.US_ASCII)));
+        }
+        out.addAll(buffered);
+        buffered.clear();
+        if (chunked) {
+            if (size > 0) {
+                out.add(ByteBuffer.wrap(last ? CRLF_LAST_CHUNK : CRLF));
+            } else if (last) {
+                out.add(ByteBuffer.wrap(LAST_CHUNK));
+            }
+        }
+        connection.send(out, last);
+    }
+
+    private ByteBuffer commit() {
+        committed = true;
+        StringBuilder header = new StringBuilder(256);
+        header.append("HTTP/1.1 ").append(status).append(' ').append(reason(status)).append("\r\n");
+        header.append("Date: ").append(HttpDates.now()).append("\r\n");
+        if (contentType != null) {
+            header.append("Content-Type: ").append(contentType).append("\r\n");
+        }
+        if (isBodyAllowed()) {
+            if (contentLength >= 0) {
+                header.append("Content-Length: ").append(contentLength).append("\r\n");
+            } else if (http10) {
+                keepAlive = false;
+            } else {
+                chunked = true;
+                header.append("Transfer-Encoding: chunked\r\n");
+            }
+        }
+        for (int i = 0; i < headerNames.size(); i++) {
+            header.append(headerNames.get(i)).append(": ").append(headerValues.get(i)).append("\r\n");
+        }
+        if (!keepAlive) {
+            header.append("Connection: close\r\n");
+        } else if (http10) {
+            header.append("Connection: keep-alive\r\n");
+        }
+        header.append("\r\n");
+
+        if (header.length() > bufferPool.getBufferSize()) {
+            return ByteBuffer.wrap(header.toString().getBytes(StandardCharsets.ISO_8859_1));
+        }
+        ByteBuffer buffer = bufferPool.acquire();
+        for (int i = 0; i < header.length(); i++) {
+            char c = header.charAt(i);
+            buffer.put(c < 256 ? (byte) c : (byte) '?');
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static String reason(int status) {
+        switch (status) {
+            case 100: return "Continue";
+            case 200: return "OK";
+            case 201: return "Created";
+            case 202: return "Accepted";
+            case 204: return "No Content";
+            case 206: return "Partial Content";
+            case 301: return "Moved Permanently";
+            case 302: return "Found";
+            case 304: return "Not Modified";
+            case 400: return "Bad Request";
+            case 401: return "Unauthorized";
+            case 403: return "Forbidden";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 406: return "Not Acceptable";
+            case 408: return "Request Timeout";
+            case 409: return "Conflict";
+            case 410: return "Gone";
+            case 411: return "Length Required";
+            case 413: return "Payload Too Large";
+            case 415: return "Unsupported Media Type";
+            case 416: return "Range Not Satisfiable";
+            case 422: return "Unprocessable Entity";
+            case 429: return "Too Many Requests";
+            case 431: return "Request Header Fields Too Large";
+            case 500: return "Internal Server Error";
+            case 501: return "Not Implemented";
+            case 503: return "Service Unavailable";
+            case 504: return "Gateway Timeout";
+            default: return "Unknown";
+        }
+    }
+
+    /**
+     * 响应体输出流
+     * 除OutputStream的方法外提供public的write(ByteBuffer)，StaticResourceHandler通过它直接写出映射的文件：
+     * 只读的缓冲区不复制，直接排队发送，调用方不能再修改其中的内容
+     */
+    public final class Output extends OutputStream {
+
+        private Output() {
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureOpen();
+            written++;
+            if (head) {
+                return;
+            }
+            if (current == null) {
+                current = bufferPool.acquire();
+            }
+            current.put((byte) b);
+            if (!current.hasRemaining()) {
+                sendFull();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ensureOpen();
+            written += len;
+            if (head) {
+                return;
+            }
+            while (len > 0) {
+                if (current == null) {
+                    current = bufferPool.acquire();
+                }
+                int n = Math.min(len, current.remaining());
+                current.put(b, off, n);
+                off += n;
+                len -= n;
+                if (!current.hasRemaining()) {
+                    sendFull();
+                }
+            }
+        }
+
+        public void write(ByteBuffer src) throws IOException {
+            ensureOpen();
+            int len = src.remaining();
+            written += len;
+            if (head) {
+                src.position(src.limit());
+                return;
+            }
+            if (src.isReadOnly() && len >= bufferPool.getBufferSize()) {
+                if (current != null && current.position() > 0) {
+                    current.flip();
+                    buffered.add(current);
+                    current = null;
+                }
+                buffered.add(src.slice());
+                src.position(src.limit());
+                send(false);
+                return;
+            }
+            while (src.hasRemaining()) {
+                if (current == null) {
+                    current = bufferPool.acquire();
+                }
+                int n = Math.min(src.remaining(), current.remaining());
+                ByteBuffer slice = src.duplicate();
+                slice.limit(slice.position() + n);
+                current.put(slice);
+                src.position(src.position() + n);
+                if (!current.hasRemaining()) {
+                    sendFull();
+                }
+            }
+        }
+
+        /**
+         * 提交响应并发送已写入的内容
+         */
+        @Override
+        public void flush() throws IOException {
+            if (!completed && !head) {
+                send(false);
+            }
+        }
+
+        private void sendFull() throws IOException {
+            current.flip();
+            buffered.add(current);
+            current = null;
+            send(false);
+        }
+
+        private void ensureOpen() throws IOException {
+            if (completed) {
+                throw new IOException("Response already completed");
+            }
+        }
+    }
+}
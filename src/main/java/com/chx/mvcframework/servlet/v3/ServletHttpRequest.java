@@ -0,0 +1,152 @@
+package com.chx.mvcframework.servlet.v3;
+
+import com.chx.mvcframework.http.GPAsyncContext;
+import com.chx.mvcframework.http.GPHttpRequest;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * HttpServletRequest到GPHttpRequest的适配，所有方法直接委托，不缓存状态
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+class ServletHttpRequest implements GPHttpRequest {
+
+    private final HttpServletRequest req;
+
+    /**
+     * startAsync时需要同时传入响应，Filter包装过的响应才能在异步线程中使用
+     */
+    private final HttpServletResponse resp;
+
+    ServletHttpRequest(HttpServletRequest req, HttpServletResponse resp) {
+        this.req = req;
+        this.resp = resp;
+    }
+
+    @Override
+    public String getMethod() {
+        return req.getMethod();
+    }
+
+    @Override
+    public String getRequestURI() {
+        return req.getRequestURI();
+    }
+
+    @Override
+    public String getContextPath() {
+        return req.getContextPath();
+    }
+
+    @Override
+    public String getQueryString() {
+        return req.getQueryString();
+    }
+
+    @Override
+    public String getParameter(String name) {
+        return req.getParameter(name);
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        return req.getParameterValues(name);
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        return req.getParameterMap();
+    }
+
+    /**
+     * 表单请求体在输入流中，自己读取后容器的getParameter就读不到表单参数了，只能交给容器解析
+     */
+    @Override
+    public String getFormBody() {
+        String contentType = req.getContentType();
+        return contentType != null && contentType.regionMatches(true, 0, "application/x-www-form-urlencoded", 0, 33)
+                ? null : "";
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return req.getHeader(name);
+    }
+
+    @Override
+    public long getDateHeader(String name) {
+        return req.getDateHeader(name);
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        return req.getReader();
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+        return req.isAsyncSupported();
+    }
+
+    @Override
+    public GPAsyncContext startAsync() {
+        return new ServletAsyncContext(req.startAsync(req, resp));
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> type) {
+        if (type.isInstance(req)) {
+            return type.cast(req);
+        }
+        return type.isInstance(this) ? type.cast(this) : null;
+    }
+
+    private static class ServletAsyncContext implements GPAsyncContext {
+        private final AsyncContext asyncContext;
+
+        ServletAsyncContext(AsyncContext asyncContext) {
+            this.asyncContext = asyncContext;
+        }
+
+        @Override
+        public void setTimeout(long timeout, Listener listener) {
+            asyncContext.setTimeout(timeout);
+            if (listener == null) {
+                return;
+            }
+            asyncContext.addListener(new AsyncListener() {
+                @Override
+                public void onTimeout(AsyncEvent event) {
+                    listener.onTimeout();
+                }
+
+                @Override
+                public void onError(AsyncEvent event) {
+                    listener.onError();
+                }
+
+                @Override
+                public void onComplete(AsyncEvent event) {
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event) {
+                }
+            });
+        }
+
+        @Override
+        public void complete() {
+            asyncContext.complete();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.chx.mvcframework.servlet.v3;
+
+import com.chx.mvcframework.http.GPHttpResponse;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * HttpServletResponse到GPHttpResponse的适配，所有方法直接委托，
+ * Controller通过原生响应写入的状态和响应头对框架可见
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+class ServletHttpResponse implements GPHttpResponse {
+
+    private final HttpServletResponse resp;
+
+    ServletHttpResponse(HttpServletResponse resp) {
+        this.resp = resp;
+    }
+
+    @Override
+    public int getStatus() {
+        return resp.getStatus();
+    }
+
+    @Override
+    public void setStatus(int status) {
+        resp.setStatus(status);
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        resp.setHeader(name, value);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        resp.addHeader(name, value);
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        resp.setDateHeader(name, date);
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+        return resp.containsHeader(name);
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return resp.getHeader(name);
+    }
+
+    @Override
+    public void setContentType(String type) {
+        resp.setContentType(type);
+    }
+
+    @Override
+    public void setContentLength(long length) {
+        resp.setContentLengthLong(length);
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return resp.getOutputStream();
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return resp.isCommitted();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> type) {
+        if (type.isInstance(resp)) {
+            return type.cast(resp);
+        }
+        return type.isInstance(this) ? type.cast(this) : null;
+    }
+}
@@ -1,13 +1,35 @@
 package com.chx.springdemo;
 
-//import org.springframework.boot.SpringApplication;
-//import org.springframework.boot.autoconfigure.SpringBootApplication;
-
-//@SpringBootApplication
-//public class SpringdemoApplication {
-//
-//    public static void main(String[] args) {
-//        SpringApplication.run(SpringdemoApplication.class, args);
-//    }
-//
-//}
+import com.chx.mvcframework.dispatch.GPDispatcher;
+import com.chx.mvcframework.server.GPHttpServer;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 不使用servlet容器，用内嵌的GPHttpServer启动，类路径中不需要servlet API：
+ * java -cp target/classes com.chx.springdemo.SpringdemoApplication [配置文件]
+ *
+ * @author cheng.huaxing
+ * @date 2019-04-20
+ */
+public class SpringdemoApplication {
+
+    public static void main(String[] args) throws IOException {
+        long start = System.currentTimeMillis();
+        String contextConfigLocation = args.length > 0 ? args[0] : "application.properties";
+        // 在项目目录下启动时与jetty:run使用相同的web应用根目录，否则静态资源只从staticLocation读取
+        File webapp = new File("src/main/webapp");
+        GPDispatcher dispatcher = new GPDispatcher();
+        dispatcher.init(contextConfigLocation, webapp.isDirectory() ? webapp.getAbsolutePath() : null);
+
+        GPHttpServer server = new GPHttpServer(dispatcher, dispatcher.getConfig());
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            dispatcher.destroy();
+        }, "gp-shutdown"));
+        System.out.println("GP HTTP server started on port " + server.getPort() + " in "
+                + (System.currentTimeMillis() - start) + "ms");
+    }
+}
@@ -6,10 +6,6 @@ import com.chx.mvcframework.annotation.GPRequestMapping;
 import com.chx.mvcframework.annotation.GPRequestParam;
 import com.chx.springdemo.service.DemoService;
 
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
-import java.io.IOException;
-
 /**
  * @author cheng.huaxing
  * @date 2019-04-20
@@ -22,12 +18,7 @@ public class DemoController {
     private DemoService demoService;
 
     @GPRequestMapping("/query")
-    public void query(HttpServletRequest request, HttpServletResponse response, @GPRequestParam("name") String name) {
-        String result = demoService.get(name);
-        try {
-            response.getWriter().write(result);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    public String query(@GPRequestParam("name") String name) {
+        return demoService.get(name);
     }
 }